@@ -1,8 +1,11 @@
+import ime.controller.BatchRunner;
 import ime.controller.ControllerImpl;
 import ime.controller.FileHandlerProvider;
 import ime.controller.FileHandlerProviderImpl;
 import ime.controller.GUIController;
 import ime.controller.ImageProcessingController;
+import ime.controller.ImageServer;
+import ime.controller.RawImageCache;
 import ime.model.ImageRepository;
 import ime.model.ImageRepositoryImpl;
 import ime.view.JFrameView;
@@ -10,6 +13,12 @@ import ime.view.View;
 import ime.view.ViewImpl;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -17,27 +26,97 @@ import java.util.Scanner;
  */
 public class ProgramRunner {
 
+  private static final long CACHE_SIZE = 1L << 30;
+  private static final int SERVER_QUEUE_PER_WORKER = 16;
+
   /**
    * This main method requires no arguments to be run and passes the program execution control to
-   * the controller after providing it the Model and View classes for its instantiation.
+   * the controller after providing it the Model and View classes for its instantiation. The
+   * arguments may begin with '-cache directory' to keep decoded JPG and PNG images in the given
+   * directory, so that loading them again is faster. The arguments '-batch script -in directory
+   * -out directory' with an optional '-workers n' run the script over every image in the input
+   * directory, and '-dry-run script' shows what running the script would do without running it.
+   * The arguments may also begin with '-memory megabytes' to keep the images held in memory within
+   * the given number of megabytes, spilling the least recently used ones to a scratch file, or with
+   * '-png-encoder parallel' to save PNG images with an encoder that compresses them in parallel.
+   * The arguments '-serve port' with an optional '-workers n', '-queue n' and '-root directory'
+   * serve the commands over HTTP on the given port of the loopback address until the program is
+   * stopped, loading and saving files only within the root directory, the working directory by
+   * default.
    */
   public static void main(String[] args) {
+    RawImageCache cache = null;
+    long memoryBudget = Long.MAX_VALUE;
+    boolean parallelPngEncoding = false;
+    while (args.length >= 2 && Arrays.asList("-cache", "-memory", "-png-encoder")
+        .contains(args[0])) {
+      if (args[0].equals("-png-encoder")) {
+        if (!args[1].equals("parallel") && !args[1].equals("imageio")) {
+          System.out.println("Invalid PNG encoder provided. Use 'parallel' or 'imageio'. Exiting.");
+          return;
+        }
+        parallelPngEncoding = args[1].equals("parallel");
+      } else if (args[0].equals("-cache")) {
+        try {
+          cache = new RawImageCache(Paths.get(args[1]), CACHE_SIZE);
+        } catch (IOException e) {
+          System.out.println("Invalid cache directory provided. Exiting.");
+          return;
+        }
+      } else {
+        try {
+          memoryBudget = Math.multiplyExact(Long.parseLong(args[1]), 1L << 20);
+        } catch (NumberFormatException | ArithmeticException e) {
+          memoryBudget = -1;
+        }
+        if (memoryBudget < 0) {
+          System.out.println("Invalid memory budget provided. Exiting.");
+          return;
+        }
+      }
+      args = Arrays.copyOfRange(args, 2, args.length);
+    }
+    FileHandlerProvider fileHandlerProvider = new FileHandlerProviderImpl(cache,
+        parallelPngEncoding);
+    if (args.length > 0 && args[0].equals("-batch")) {
+      runBatch(args, fileHandlerProvider, memoryBudget);
+      return;
+    }
+    if (args.length > 0 && args[0].equals("-serve")) {
+      runServer(args, createImageRepository(memoryBudget), fileHandlerProvider);
+      return;
+    }
+    if (args.length == 2 && args[0].equals("-dry-run")) {
+      try {
+        new ControllerImpl(new Scanner(new File(args[1])), new ViewImpl(System.out),
+            new ImageRepositoryImpl(), fileHandlerProvider, false).dryRun();
+      } catch (FileNotFoundException e) {
+        System.out.println("Invalid file provided. Exiting.");
+      }
+      return;
+    }
     if (!isValidInput(args)) {
       return;
     }
-    FileHandlerProvider fileHandlerProvider = new FileHandlerProviderImpl();
     if (args.length == 0) {
       JFrameView frame = new JFrameView();
-      ImageRepository imageRepository = new ImageRepositoryImpl();
+      ImageRepository imageRepository = createImageRepository(memoryBudget);
       new GUIController(imageRepository, frame, fileHandlerProvider).execute();
     } else {
       View view = new ViewImpl(System.out);
-      ImageRepository imageRepository = new ImageRepositoryImpl();
-      runController(args, view, imageRepository, fileHandlerProvider);
+      try (ImageRepository imageRepository = createImageRepository(memoryBudget)) {
+        runController(args, view, imageRepository, fileHandlerProvider);
+      } catch (IOException e) {
+        System.out.println("The scratch file of the images could not be closed.");
+      }
     }
 
   }
 
+  private static ImageRepository createImageRepository(long memoryBudget) {
+    return new ImageRepositoryImpl(memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
   private static void runController(String[] args, View view, ImageRepository imageRepository,
       FileHandlerProvider fileHandlerProvider) {
     try {
@@ -51,6 +130,80 @@ public class ProgramRunner {
     }
   }
 
+  /* Runs a script over a directory of images, given '-batch script' followed by the options -in,
+   -out and -workers in any order. */
+  private static void runBatch(String[] args, FileHandlerProvider fileHandlerProvider,
+      long memoryBudget) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 2; i < args.length - 1; i += 2) {
+      options.put(args[i], args[i + 1]);
+    }
+    if (args.length % 2 != 0 || !options.containsKey("-in") || !options.containsKey("-out")
+        || options.keySet().stream().anyMatch(
+            option -> !Arrays.asList("-in", "-out", "-workers").contains(option))) {
+      System.out.println("Invalid batch arguments provided. Provide '-batch script -in directory "
+          + "-out directory' and optionally '-workers n'");
+      return;
+    }
+    try {
+      int workers = options.containsKey("-workers") ? Integer.parseInt(options.get("-workers"))
+          : Runtime.getRuntime().availableProcessors();
+      BatchRunner batchRunner = new BatchRunner(Files.readAllLines(Paths.get(args[1])),
+          fileHandlerProvider, workers, memoryBudget,
+          Paths.get(System.getProperty("java.io.tmpdir")));
+      batchRunner.run(Paths.get(options.get("-in")), Paths.get(options.get("-out")),
+          new ViewImpl(System.out));
+    } catch (NumberFormatException e) {
+      System.out.println("The number of workers should be a number");
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    } catch (IOException e) {
+      System.out.println("Invalid file provided. Exiting.");
+    }
+  }
+
+  /* Serves commands over HTTP, given '-serve port' followed by the options -workers and -queue in
+   any order. The server keeps the program running once this method returns. */
+  private static void runServer(String[] args, ImageRepository imageRepository,
+      FileHandlerProvider fileHandlerProvider) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 2; i < args.length - 1; i += 2) {
+      options.put(args[i], args[i + 1]);
+    }
+    if (args.length < 2 || args.length % 2 != 0 || options.keySet().stream().anyMatch(
+        option -> !Arrays.asList("-workers", "-queue", "-root").contains(option))) {
+      System.out.println("Invalid server arguments provided. Provide '-serve port' and optionally "
+          + "'-workers n', '-queue n' and '-root directory'");
+      return;
+    }
+    try {
+      int workers = options.containsKey("-workers") ? Integer.parseInt(options.get("-workers"))
+          : Runtime.getRuntime().availableProcessors();
+      int queueCapacity = options.containsKey("-queue") ? Integer.parseInt(options.get("-queue"))
+          : SERVER_QUEUE_PER_WORKER * workers;
+      ImageServer server = new ImageServer(Integer.parseInt(args[1]), imageRepository,
+          fileHandlerProvider, workers, queueCapacity,
+          Paths.get(System.getProperty("java.io.tmpdir")),
+          Paths.get(options.getOrDefault("-root", ".")));
+      server.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          server.close();
+        } catch (IOException e) {
+          System.out.println("The scratch file of the images could not be closed.");
+        }
+      }));
+      System.out.println("Serving on http://localhost:" + server.getPort());
+    } catch (NumberFormatException e) {
+      System.out.println("The port, number of workers and capacity of the queue should be numbers");
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    } catch (IOException e) {
+      System.out.println("The port could not be listened on or the root directory does not exist. "
+          + "Exiting.");
+    }
+  }
+
   private static boolean isValidInput(String[] args) {
     if ((args.length == 2 && args[0].equals("-file") || (args.length == 0)
         || (args.length == 1 && args[0].equals("-text")))) {
@@ -7,11 +7,13 @@ import ime.controller.commands.ColorCorrect;
 import ime.controller.commands.Combine;
 import ime.controller.commands.Command;
 import ime.controller.commands.Compress;
+import ime.controller.commands.CompressToPsnr;
 import ime.controller.commands.GreenComponent;
 import ime.controller.commands.Histogram;
 import ime.controller.commands.HorizontalFlip;
 import ime.controller.commands.IntensityGreyscale;
 import ime.controller.commands.LevelsAdjust;
+import ime.controller.commands.Info;
 import ime.controller.commands.Load;
 import ime.controller.commands.LumaGreyscale;
 import ime.controller.commands.RedComponent;
@@ -25,6 +27,7 @@ import ime.controller.commands.VerticaFlip;
 import ime.model.ImageRepository;
 import ime.view.View;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,40 +58,72 @@ public abstract class AbstractController implements ImageProcessingController {
   }
 
   private static CommandEnum getCommandEnum(String commandStr) throws IllegalArgumentException {
-    for (CommandEnum cmd : CommandEnum.values()) {
-      if (cmd.getRepresentation().equals(commandStr)) {
-        return cmd;
-      }
-    }
-    throw new IllegalArgumentException("Command not found"); // Command not found
+    return CommandEnum.fromRepresentation(commandStr);
   }
 
   /**
    * Initializes the mapping of command enums to their corresponding command objects.
    */
   private void initializeKnownCommands() {
-    knownCommands = new HashMap<>();
-    knownCommands.put(CommandEnum.blur, new Blur());
-    knownCommands.put(CommandEnum.sharpen, new Sharpen());
-    knownCommands.put(CommandEnum.brighten, new Brighten());
-    knownCommands.put(CommandEnum.load, new Load(fileHandlerProvider));
-    knownCommands.put(CommandEnum.save, new Save(fileHandlerProvider));
-    knownCommands.put(CommandEnum.horizontalFlip, new HorizontalFlip());
-    knownCommands.put(CommandEnum.verticalFlip, new VerticaFlip());
-    knownCommands.put(CommandEnum.rgb_combine, new Combine());
-    knownCommands.put(CommandEnum.rgb_split, new RgbSplit());
-    knownCommands.put(CommandEnum.value_component, new ValueGreyscale());
-    knownCommands.put(CommandEnum.luma_component, new LumaGreyscale());
-    knownCommands.put(CommandEnum.intensity_component, new IntensityGreyscale());
-    knownCommands.put(CommandEnum.sepia, new Sepia());
-    knownCommands.put(CommandEnum.red_component, new RedComponent());
-    knownCommands.put(CommandEnum.green_component, new GreenComponent());
-    knownCommands.put(CommandEnum.blue_component, new BlueComponent());
-    knownCommands.put(CommandEnum.run, new Run(view, fileHandlerProvider));
-    knownCommands.put(CommandEnum.compress, new Compress());
-    knownCommands.put(CommandEnum.histogram, new Histogram());
-    knownCommands.put(CommandEnum.color_correct, new ColorCorrect());
-    knownCommands.put(CommandEnum.levels_adjust, new LevelsAdjust());
+    knownCommands = createCommands(fileHandlerProvider, view, null, false);
+  }
+
+  /**
+   * Creates the mapping of command enums to their corresponding command objects, which scripts are
+   * compiled against. The mapping is created anew on every call, so that it may be changed by the
+   * caller.
+   *
+   * @param fileHandlerProvider the provider of the handlers that load and save images
+   * @param view                the view that scripts run by the run command display their
+   *                            messages on, or null to leave out the run command
+   * @param saveQueue           the queue that saves are submitted to, or null to save images
+   *                            before the save command returns
+   * @param failOnIoError       true for the commands reading and writing files to throw an
+   *                            IllegalArgumentException for a file that could not be read or
+   *                            written, rather than return a message saying so
+   * @return the commands by their enums
+   */
+  public static Map<CommandEnum, Command> createCommands(FileHandlerProvider fileHandlerProvider,
+      View view, SaveQueue saveQueue, boolean failOnIoError) {
+    Map<CommandEnum, Command> commands = new HashMap<>();
+    commands.put(CommandEnum.blur, new Blur());
+    commands.put(CommandEnum.sharpen, new Sharpen());
+    commands.put(CommandEnum.brighten, new Brighten());
+    commands.put(CommandEnum.load, new Load(fileHandlerProvider, saveQueue, failOnIoError));
+    commands.put(CommandEnum.save, new Save(fileHandlerProvider, saveQueue, failOnIoError));
+    commands.put(CommandEnum.info, new Info(fileHandlerProvider, saveQueue, failOnIoError));
+    commands.put(CommandEnum.horizontalFlip, new HorizontalFlip());
+    commands.put(CommandEnum.verticalFlip, new VerticaFlip());
+    commands.put(CommandEnum.rgb_combine, new Combine());
+    commands.put(CommandEnum.rgb_split, new RgbSplit());
+    commands.put(CommandEnum.value_component, new ValueGreyscale());
+    commands.put(CommandEnum.luma_component, new LumaGreyscale());
+    commands.put(CommandEnum.intensity_component, new IntensityGreyscale());
+    commands.put(CommandEnum.sepia, new Sepia());
+    commands.put(CommandEnum.red_component, new RedComponent());
+    commands.put(CommandEnum.green_component, new GreenComponent());
+    commands.put(CommandEnum.blue_component, new BlueComponent());
+    if (view != null) {
+      commands.put(CommandEnum.run, new Run(view, fileHandlerProvider));
+    }
+    commands.put(CommandEnum.compress, new Compress());
+    commands.put(CommandEnum.compress_psnr, new CompressToPsnr());
+    commands.put(CommandEnum.histogram, new Histogram());
+    commands.put(CommandEnum.color_correct, new ColorCorrect());
+    commands.put(CommandEnum.levels_adjust, new LevelsAdjust());
+    return commands;
+  }
+
+  /**
+   * Compiles the lines of a script into a plan of the commands known to this controller, which can
+   * be run many times.
+   *
+   * @param lines the lines of the script
+   * @return the plan of the script
+   * @throws IllegalArgumentException if a line is not a valid command
+   */
+  protected ScriptPlan compileScript(List<String> lines) throws IllegalArgumentException {
+    return ScriptPlan.compile(lines, knownCommands);
   }
 
   /**
@@ -114,7 +149,7 @@ public abstract class AbstractController implements ImageProcessingController {
       Command commandObject = knownCommands.get(commandKeyword);
       runCommandObject(commandObject, tokens);
     } catch (IllegalArgumentException e) {
-      view.displayMessage(e.getMessage());
+      displayMessage(e.getMessage());
       return returnValueError();
     }
     return returnValueNoError();
@@ -149,6 +184,16 @@ public abstract class AbstractController implements ImageProcessingController {
     return false;
   }
 
+  /**
+   * Displays a message about a command that could not be run. This method has to be overridden by
+   * the Controller Implementations that display the messages of commands in some other way.
+   *
+   * @param message the message to be displayed
+   */
+  protected void displayMessage(String message) {
+    view.displayMessage(message);
+  }
+
   /**
    * Runs the provided command object with the given tokens and updates the view with the result.
    *
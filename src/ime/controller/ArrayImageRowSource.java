@@ -0,0 +1,66 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+
+/**
+ * This package-private class supplies the rows of an image whose values have already been loaded
+ * into a 3D float array. It lets file handlers that decode a whole image at once be used wherever
+ * an {@link ImageRowSource} is expected.
+ */
+class ArrayImageRowSource implements ImageRowSource {
+
+  private final float[][][] pixelValues;
+  private int nextRow;
+
+  /**
+   * Constructs a source for the given pixel values.
+   *
+   * @param pixelValues the values of the image, indexed by row, column and channel
+   */
+  ArrayImageRowSource(float[][][] pixelValues) {
+    this.pixelValues = pixelValues;
+  }
+
+  /**
+   * Reads all the rows of the given source into a 3D float array.
+   *
+   * @param source the source to be read
+   * @return the values of the image, indexed by row, column and channel
+   * @throws IOException if a row could not be read from the source
+   */
+  static float[][][] readAll(ImageRowSource source) throws IOException {
+    float[][][] pixelValues = new float[source.getHeight()][source.getWidth()][3];
+    float[] rowValues = new float[source.getWidth() * 3];
+    for (float[][] row : pixelValues) {
+      source.readRow(rowValues);
+      for (int j = 0; j < row.length; j++) {
+        System.arraycopy(rowValues, 3 * j, row[j], 0, 3);
+      }
+    }
+    return pixelValues;
+  }
+
+  @Override
+  public int getWidth() {
+    return pixelValues.length == 0 ? 0 : pixelValues[0].length;
+  }
+
+  @Override
+  public int getHeight() {
+    return pixelValues.length;
+  }
+
+  @Override
+  public void readRow(float[] rowValues) {
+    float[][] row = pixelValues[nextRow++];
+    for (int j = 0; j < row.length; j++) {
+      System.arraycopy(row[j], 0, rowValues, j * row[j].length, row[j].length);
+    }
+  }
+
+  @Override
+  public void close() {
+    // nothing to release, the values are held in memory
+  }
+}
@@ -0,0 +1,184 @@
+package ime.controller;
+
+import ime.model.ImageRepositoryImpl;
+import ime.view.View;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class runs a script over every image in a directory. The script is a template in which
+ * ${input} stands for the path of the image, ${output} for the path of a file of the same name in
+ * the output directory, ${name} for the name of the image without its extension and ${outdir} for
+ * the output directory. The script is compiled once, so that an invalid script is rejected before
+ * any image is touched, the commands whose results are never used are left out and every image is
+ * dropped after its last use. Every image is then processed on a pool of worker threads with a
+ * repository of its own, so images never see each other's results. The memory budget of the run is
+ * shared out evenly between the repositories of the workers. The images that could not be
+ * processed are reported along with the number of images and bytes processed per second. A batch
+ * script may use every command apart from run.
+ */
+public class BatchRunner {
+
+  private static final String INPUT = "${input}";
+
+  private final ScriptPlan plan;
+  private final int workers;
+  private final long workerMemoryBudget;
+  private final Path scratchDirectory;
+
+  /**
+   * Constructs a runner of the given script template that keeps all the images of a run in
+   * memory.
+   *
+   * @param template            the lines of the script, which should refer to ${input}
+   * @param fileHandlerProvider the provider of the handlers that load and save images
+   * @param workers             the number of images that are processed at the same time
+   * @throws IllegalArgumentException if the script is invalid or does not refer to its input, or
+   *                                  the number of workers is not positive
+   */
+  public BatchRunner(List<String> template, FileHandlerProvider fileHandlerProvider,
+      int workers) throws IllegalArgumentException {
+    this(template, fileHandlerProvider, workers, Long.MAX_VALUE,
+        Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Constructs a runner of the given script template that keeps the pixel bytes of the images held
+   * in memory by a run within a budget, spilling the least recently used images of a worker to a
+   * scratch file in the given directory.
+   *
+   * @param template            the lines of the script, which should refer to ${input}
+   * @param fileHandlerProvider the provider of the handlers that load and save images
+   * @param workers             the number of images that are processed at the same time
+   * @param memoryBudget        the most pixel bytes that the images in memory may take up, or
+   *                            Long.MAX_VALUE to keep all of them in memory
+   * @param scratchDirectory    the directory of the scratch files of spilled images
+   * @throws IllegalArgumentException if the script is invalid or does not refer to its input, the
+   *                                  number of workers is not positive or the budget is negative
+   */
+  public BatchRunner(List<String> template, FileHandlerProvider fileHandlerProvider,
+      int workers, long memoryBudget, Path scratchDirectory) throws IllegalArgumentException {
+    if (template.stream().noneMatch(line -> line.contains(INPUT))) {
+      throw new IllegalArgumentException("The batch script should refer to its input as "
+          + INPUT);
+    }
+    if (workers <= 0) {
+      throw new IllegalArgumentException("The number of workers should be positive");
+    }
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("The memory budget should not be negative");
+    }
+    this.plan = ScriptPlan.compile(template,
+        AbstractController.createCommands(fileHandlerProvider, null, null, true))
+        .withoutDeadResults().releasingImagesAfterLastUse();
+    this.workers = workers;
+    this.workerMemoryBudget = memoryBudget == Long.MAX_VALUE ? memoryBudget
+        : memoryBudget / workers;
+    this.scratchDirectory = scratchDirectory;
+  }
+
+  /**
+   * Runs the script over every image in the input directory whose format is supported, and displays
+   * the images that failed along with the throughput of the run.
+   *
+   * @param inputDirectory  the directory of the images to be processed
+   * @param outputDirectory the directory that results are saved to, which is created if needed
+   * @param view            the view that the results of the run are displayed on
+   * @throws IOException if the input directory could not be listed or the output directory could
+   *                     not be created
+   */
+  public void run(Path inputDirectory, Path outputDirectory, View view) throws IOException {
+    List<Path> images;
+    try (Stream<Path> files = Files.list(inputDirectory)) {
+      images = files.filter(Files::isRegularFile).filter(BatchRunner::isSupported).sorted()
+          .collect(Collectors.toList());
+    }
+    Files.createDirectories(outputDirectory);
+
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "batch-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    List<Future<String>> results = new ArrayList<>();
+    for (Path image : images) {
+      results.add(executor.submit(() -> process(image, outputDirectory)));
+    }
+    int failures = 0;
+    long bytes = 0;
+    try {
+      for (int i = 0; i < images.size(); i++) {
+        String failure = getResult(results.get(i));
+        if (failure != null) {
+          failures++;
+          view.displayMessage(images.get(i).getFileName() + ": " + failure);
+        } else {
+          bytes += Files.size(images.get(i));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    view.displayMessage(String.format(Locale.ROOT,
+        "Processed %d images (%d failed) in %.2f s: %.2f images/s, %.2f MB/s",
+        images.size() - failures, failures, seconds, (images.size() - failures) / seconds,
+        bytes / seconds / (1 << 20)));
+  }
+
+  /* Runs the script over a single image with a repository of its own, returning why it failed or
+   null if it succeeded. The commands of the plan fail on files that could not be read or
+   written. */
+  private String process(Path image, Path outputDirectory) {
+    String fileName = image.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    Map<String, String> parameters = Map.of("input", image.toString(),
+        "output", outputDirectory.resolve(fileName).toString(),
+        "name", dot > 0 ? fileName.substring(0, dot) : fileName,
+        "outdir", outputDirectory.toString());
+    try (ImageRepositoryImpl imageRepository = new ImageRepositoryImpl(workerMemoryBudget,
+        scratchDirectory)) {
+      plan.run(imageRepository, parameters, message -> { });
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    } catch (IOException e) {
+      return "The scratch file of the images could not be closed";
+    }
+  }
+
+  private static String getResult(Future<String> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Interrupted";
+    } catch (ExecutionException e) {
+      return String.valueOf(e.getCause().getMessage());
+    }
+  }
+
+  private static boolean isSupported(Path file) {
+    String fileName = file.getFileName().toString();
+    String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+    for (FileFormatEnum format : FileFormatEnum.values()) {
+      if (format.name().equalsIgnoreCase(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
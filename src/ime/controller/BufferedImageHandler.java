@@ -1,15 +1,21 @@
 package ime.controller;
 
 
-import java.awt.Color;
+import ime.model.ImageRowSource;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.Raster;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
 
 /**
  * The BufferedImageHandler class provides methods to convert between BufferedImage and a 3D array
  * of floating-point pixel values , as well as create a BufferedImage from such an array.. It
  * implements the ImageHandler interface, defining methods for working with BufferedImage objects.
+ * The pixels of the common packed int and interleaved byte image types are accessed directly in the
+ * arrays backing the image, while other types go through bulk getRGB/setRGB calls a row at a time.
  **/
 public class BufferedImageHandler implements ImageHandler<BufferedImage> {
 
@@ -21,25 +27,80 @@ public class BufferedImageHandler implements ImageHandler<BufferedImage> {
    */
   @Override
   public float[][][] getImagePixels(BufferedImage image) {
-    ColorModel colorModel = image.getColorModel();
     int height = image.getHeight();
     int width = image.getWidth();
-    int channelCount = colorModel.getNumColorComponents();
-    float[][][] resultPixels = new float[height][width][channelCount];
-    Raster raster = image.getData();
-    //Using numComponents as the pixel could contain alpha value, which we ignore
-    int[] pixelValues = new int[colorModel.getNumComponents()];
-
+    float[][][] resultPixels = new float[height][width][3];
+    float[] rowValues = new float[width * 3];
+    int[] rgbScratch = new int[width];
     for (int i = 0; i < height; i++) {
+      readRow(image, i, rowValues, rgbScratch);
       for (int j = 0; j < width; j++) {
-        raster.getPixel(j, i, pixelValues);
+        System.arraycopy(rowValues, 3 * j, resultPixels[i][j], 0, 3);
+      }
+    }
+    return resultPixels;
+  }
 
-        for (int k = 0; k < channelCount; k++) {
-          resultPixels[i][j][k] = pixelValues[k];
+  /**
+   * Copies the red, green and blue values of every pixel in the given row of the image into the
+   * given array, three values per pixel. Greyscale images give equal values for the three channels
+   * and any alpha channel is ignored.
+   *
+   * @param image      the image to read from
+   * @param row        the index of the row to read
+   * @param rowValues  the array to fill, of length at least three times the width of the image
+   * @param rgbScratch an array of length at least the width of the image, used for image types that
+   *                   are not accessed directly
+   */
+  void readRow(BufferedImage image, int row, float[] rowValues, int[] rgbScratch) {
+    int width = image.getWidth();
+    WritableRaster raster = image.getRaster();
+    int x = -raster.getSampleModelTranslateX();
+    int y = row - raster.getSampleModelTranslateY();
+    switch (image.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB: {
+        SinglePixelPackedSampleModel sampleModel =
+            (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = dataBuffer.getData();
+        int offset = dataBuffer.getOffset() + sampleModel.getOffset(x, y);
+        for (int j = 0; j < width; j++) {
+          int rgb = data[offset + j];
+          rowValues[3 * j] = (rgb >> 16) & 0xff;
+          rowValues[3 * j + 1] = (rgb >> 8) & 0xff;
+          rowValues[3 * j + 2] = rgb & 0xff;
+        }
+        return;
+      }
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+      case BufferedImage.TYPE_BYTE_GRAY: {
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = dataBuffer.getData();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int pixelStride = sampleModel.getPixelStride();
+        int offset = dataBuffer.getOffset() + y * sampleModel.getScanlineStride()
+            + x * pixelStride;
+        boolean grey = bandOffsets.length == 1;
+        for (int j = 0; j < width; j++) {
+          int pixel = offset + j * pixelStride;
+          for (int k = 0; k < 3; k++) {
+            rowValues[3 * j + k] = data[pixel + bandOffsets[grey ? 0 : k]] & 0xff;
+          }
         }
+        return;
       }
+      default:
+        image.getRGB(0, row, width, 1, rgbScratch, 0, width);
+        for (int j = 0; j < width; j++) {
+          int rgb = rgbScratch[j];
+          rowValues[3 * j] = (rgb >> 16) & 0xff;
+          rowValues[3 * j + 1] = (rgb >> 8) & 0xff;
+          rowValues[3 * j + 2] = rgb & 0xff;
+        }
     }
-    return resultPixels;
   }
 
   /**
@@ -54,19 +115,48 @@ public class BufferedImageHandler implements ImageHandler<BufferedImage> {
     int height = pixelValues.length;
     BufferedImage bufferedImageResult = new BufferedImage(width, height,
         BufferedImage.TYPE_INT_RGB);
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        float[] pixel = pixelValues[y][x];
-        int red = (int) pixel[0];
-        int green = (int) pixel[1];
-        int blue = (int) pixel[2];
-        Color color = new Color(red, green, blue);
+    // A newly created image is backed by a single array of packed RGB values, one row after another
+    int[] data = ((DataBufferInt) bufferedImageResult.getRaster().getDataBuffer()).getData();
+    for (int y = 0; y < height; y++) {
+      float[][] row = pixelValues[y];
+      for (int x = 0; x < width; x++) {
+        data[y * width + x] = toRgb(row[x][0], row[x][1], row[x][2]);
+      }
+    }
+    return bufferedImageResult;
 
-        // Set the pixel in the BufferedImage
-        bufferedImageResult.setRGB(x, y, color.getRGB());
+  }
+
+  /**
+   * Creates a BufferedImage whose pixels are read from the given source a row at a time, straight
+   * into the array backing the image.
+   *
+   * @param source the source of the rows of the image
+   * @return BufferedImage created from the rows of the source.
+   * @throws IOException if a row could not be read from the source
+   */
+  public BufferedImage convertIntoImage(ImageRowSource source) throws IOException {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    BufferedImage bufferedImageResult = new BufferedImage(width, height,
+        BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt) bufferedImageResult.getRaster().getDataBuffer()).getData();
+    float[] rowValues = new float[width * 3];
+    for (int y = 0; y < height; y++) {
+      source.readRow(rowValues);
+      for (int x = 0; x < width; x++) {
+        data[y * width + x] = toRgb(rowValues[3 * x], rowValues[3 * x + 1], rowValues[3 * x + 2]);
       }
     }
     return bufferedImageResult;
+  }
+
+  /* Packs the given channel values, clamped to 0-255, into a single RGB value. */
+  private static int toRgb(float red, float green, float blue) {
+    return (toChannel(red) << 16) | (toChannel(green) << 8) | toChannel(blue);
+  }
 
+  private static int toChannel(float value) {
+    return Math.max(0, Math.min(255, (int) value));
   }
 }
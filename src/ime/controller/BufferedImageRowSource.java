@@ -0,0 +1,48 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.awt.image.BufferedImage;
+
+/**
+ * This package-private class supplies the rows of a decoded BufferedImage, reading each row from
+ * the image only when it is asked for.
+ */
+class BufferedImageRowSource implements ImageRowSource {
+
+  private final BufferedImage image;
+  private final BufferedImageHandler imageHandler;
+  private final int[] rgbScratch;
+  private int nextRow;
+
+  /**
+   * Constructs a source for the rows of the given image.
+   *
+   * @param image        the image to be read
+   * @param imageHandler the handler used to read the rows of the image
+   */
+  BufferedImageRowSource(BufferedImage image, BufferedImageHandler imageHandler) {
+    this.image = image;
+    this.imageHandler = imageHandler;
+    this.rgbScratch = new int[image.getWidth()];
+  }
+
+  @Override
+  public int getWidth() {
+    return image.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return image.getHeight();
+  }
+
+  @Override
+  public void readRow(float[] rowValues) {
+    imageHandler.readRow(image, nextRow++, rowValues, rgbScratch);
+  }
+
+  @Override
+  public void close() {
+    // the image is released along with this source
+  }
+}
@@ -0,0 +1,85 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+
+/**
+ * This file handler loads images through another handler, keeping every image that it decodes in a
+ * {@link RawImageCache} so that loading the same file again reads the cached image instead of
+ * decoding the file. An image that could not be written to the cache is loaded all the same.
+ * Saving and probing are left to the other handler.
+ */
+public class CachingFileHandler implements FileHandler {
+
+  private final FileHandler fileHandler;
+  private final RawImageCache cache;
+
+  /**
+   * Constructs a handler that caches the images loaded by the given handler.
+   *
+   * @param fileHandler the handler that decodes and saves images
+   * @param cache       the cache that decoded images are kept in
+   */
+  public CachingFileHandler(FileHandler fileHandler, RawImageCache cache) {
+    this.fileHandler = fileHandler;
+    this.cache = cache;
+  }
+
+  @Override
+  public float[][][] loadImage(String filename) throws IOException {
+    try (ImageRowSource source = openImage(filename)) {
+      return ArrayImageRowSource.readAll(source);
+    }
+  }
+
+  @Override
+  public ImageRowSource openImage(String filename) throws IOException {
+    ImageRowSource cached = cache.open(filename);
+    if (cached != null) {
+      return cached;
+    }
+    ImageRowSource decoded = fileHandler.openImage(filename);
+    try {
+      return cache.store(filename, decoded);
+    } catch (IOException e) {
+      // the image can still be loaded, it is only not cached
+      return decoded;
+    }
+  }
+
+  /* A region or subsampled image is only cut out of an image that is already cached, since
+   decoding the whole image to cache it would defeat the purpose of the options. */
+  @Override
+  public ImageRowSource openImage(String filename, LoadOptions options)
+      throws IOException, IllegalArgumentException {
+    if (options.isFullImage()) {
+      return openImage(filename);
+    }
+    ImageRowSource cached = cache.open(filename);
+    if (cached != null) {
+      return new SubsampledImageRowSource(cached, options);
+    }
+    return fileHandler.openImage(filename, options);
+  }
+
+  @Override
+  public ImageInfo probeImage(String filename) throws IOException {
+    return fileHandler.probeImage(filename);
+  }
+
+  @Override
+  public void saveImage(float[][][] image, String filename) throws IOException {
+    fileHandler.saveImage(image, filename);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename) throws IOException {
+    fileHandler.saveImage(source, filename);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    fileHandler.saveImage(source, filename, options);
+  }
+}
@@ -1,10 +1,16 @@
 package ime.controller;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * enum command to save the commands possible from the script.
  */
 public enum CommandEnum {
   load("load"),
+  info("info"),
   save("save"),
   brighten("brighten"),
   blur("blur"),
@@ -22,12 +28,16 @@ public enum CommandEnum {
   rgb_combine("rgb-combine"),
   run("run"),
   compress("compress"),
+  compress_psnr("compress-psnr"),
   levels_adjust("levels-adjust"),
 
   histogram("histogram"),
   color_correct("color-correct"),
   exit("exit");
 
+  private static final Map<String, CommandEnum> BY_REPRESENTATION = Arrays.stream(values())
+      .collect(Collectors.toMap(CommandEnum::getRepresentation, Function.identity()));
+
   private final String command;
 
   /**
@@ -48,4 +58,20 @@ public enum CommandEnum {
     return command;
   }
 
+  /**
+   * Returns the command with the given representation.
+   *
+   * @param representation the command as it is written in a script
+   * @return the command
+   * @throws IllegalArgumentException if no command has the given representation
+   */
+  public static CommandEnum fromRepresentation(String representation)
+      throws IllegalArgumentException {
+    CommandEnum command = BY_REPRESENTATION.get(representation);
+    if (command == null) {
+      throw new IllegalArgumentException("Command not found");
+    }
+    return command;
+  }
+
 }
@@ -1,18 +1,35 @@
 package ime.controller;
 
+import ime.model.ImageRowSource;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 /**
  * The CommonFileHandler class is responsible for loading and saving RGB images in JPG and PNG
  * formats. It implements the FileHandler interface, This class uses a BufferedImageHandler to
- * handle the conversion between image data and BufferedImage objects.
+ * handle the conversion between image data and BufferedImage objects. The ImageIO writer of each
+ * format is created once per thread and reused for every image that thread saves.
  **/
 public class CommonFileHandler implements FileHandler {
 
-  private ImageHandler<BufferedImage> bufferedImageHandler;
+  private final BufferedImageHandler bufferedImageHandler;
+  private final ThreadLocal<Map<String, ImageWriter>> imageWriters =
+      ThreadLocal.withInitial(HashMap::new);
 
   /**
    * constructor to initialise bufferedImageHandler class.
@@ -30,8 +47,35 @@ public class CommonFileHandler implements FileHandler {
    */
   @Override
   public void saveImage(float[][][] image, String filename) throws IOException {
-    BufferedImage bufferedImage = bufferedImageHandler.convertIntoImage(image);
-    ImageIO.write(bufferedImage, filename.split("\\.")[1], new File(filename));
+    writeImage(bufferedImageHandler.convertIntoImage(image), filename, SaveOptions.DEFAULT);
+  }
+
+  /**
+   * Saves the image whose rows are read from the given source to a file in JPG or PNG format. The
+   * rows are written straight into the image that is encoded.
+   *
+   * @param source   the source of the rows of the image to be saved.
+   * @param filename the filename (or path) that the image will be saved in.
+   * @throws IOException If an error occurs while saving the image to the file.
+   */
+  @Override
+  public void saveImage(ImageRowSource source, String filename) throws IOException {
+    saveImage(source, filename, SaveOptions.DEFAULT);
+  }
+
+  /**
+   * Saves the image whose rows are read from the given source to a file in JPG or PNG format, with
+   * the quality given in the options for JPG files and the compression level for PNG files.
+   *
+   * @param source   the source of the rows of the image to be saved.
+   * @param filename the filename (or path) that the image will be saved in.
+   * @param options  the encoder settings to save the image with.
+   * @throws IOException If an error occurs while saving the image to the file.
+   */
+  @Override
+  public void saveImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    writeImage(bufferedImageHandler.convertIntoImage(source), filename, options);
   }
 
   /**
@@ -44,7 +88,142 @@ public class CommonFileHandler implements FileHandler {
    */
   @Override
   public float[][][] loadImage(String filename) throws IOException {
+    return bufferedImageHandler.getImagePixels(readImage(filename));
+  }
+
+  /**
+   * Loads an image from a file in JPG or PNG format and supplies its rows straight from the decoded
+   * image.
+   *
+   * @param filename the filename to be loaded.
+   * @return a source of the rows of the image.
+   * @throws IOException If an error occurs while reading the image from the file.
+   */
+  @Override
+  public ImageRowSource openImage(String filename) throws IOException {
+    return new BufferedImageRowSource(readImage(filename), bufferedImageHandler);
+  }
+
+  /**
+   * Reads the format, dimensions and channel count of an image in JPG or PNG format from its header
+   * through an ImageIO reader, without decoding any pixels.
+   *
+   * @param filename the filename to be probed.
+   * @return the information in the header of the image.
+   * @throws IOException If an error occurs while reading the header from the file.
+   */
+  @Override
+  public ImageInfo probeImage(String filename) throws IOException {
+    try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+      ImageReader reader = getReader(input, filename);
+      try {
+        reader.setInput(input, true, true);
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+          type = reader.getImageTypes(0).next();
+        }
+        return new ImageInfo(reader.getFormatName().toLowerCase(), reader.getWidth(0),
+            reader.getHeight(0), type.getColorModel().getNumColorComponents());
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Loads the part of an image in a file in JPG or PNG format that the given options select. Only
+   * the selected region is decoded, and pixels dropped by subsampling are skipped by the decoder,
+   * so a small preview of a large image never needs the whole image in memory.
+   *
+   * @param filename the filename to be loaded.
+   * @param options  the region and subsampling of the image to be loaded.
+   * @return a source of the rows of the selected part of the image.
+   * @throws IOException              If an error occurs while reading the image from the file.
+   * @throws IllegalArgumentException if the selected region lies outside the image.
+   */
+  @Override
+  public ImageRowSource openImage(String filename, LoadOptions options)
+      throws IOException, IllegalArgumentException {
+    if (options.isFullImage()) {
+      return openImage(filename);
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+      ImageReader reader = getReader(input, filename);
+      try {
+        reader.setInput(input, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(options.getRegionWithin(reader.getWidth(0), reader.getHeight(0)));
+        param.setSourceSubsampling(options.getSubsampling(), options.getSubsampling(), 0, 0);
+        return new BufferedImageRowSource(reader.read(0, param), bufferedImageHandler);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /* The format is taken from the extension after the last dot of the filename. The file is
+   truncated before writing, since the writer only overwrites the bytes it writes. */
+  private void writeImage(BufferedImage image, String filename, SaveOptions options)
+      throws IOException {
+    String format = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+    ImageWriter writer = getWriter(format);
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    if (param.canWriteCompressed()) {
+      if (format.equals("png") && options.hasCompressionLevel()) {
+        // the PNG writer derives its deflate level as (int) ((1 - quality) * 9)
+        setCompressionQuality(param,
+            Math.max(0f, 1f - (options.getCompressionLevel() + 0.5f) / 9));
+      } else if (!format.equals("png") && options.hasQuality()) {
+        setCompressionQuality(param, options.getQuality() / 100f);
+      }
+    }
+    RandomAccessFile file = new RandomAccessFile(filename, "rw");
+    try (ImageOutputStream output = new FileImageOutputStream(file)) {
+      file.setLength(0);
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.reset();
+    }
+  }
+
+  private static void setCompressionQuality(ImageWriteParam param, float quality) {
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    if (param.getCompressionType() == null) {
+      param.setCompressionType(param.getCompressionTypes()[0]);
+    }
+    param.setCompressionQuality(quality);
+  }
+
+  /* Returns the writer of the given format for the calling thread, creating it on first use. */
+  private ImageWriter getWriter(String format) throws IOException {
+    Map<String, ImageWriter> writers = imageWriters.get();
+    ImageWriter writer = writers.get(format);
+    if (writer == null) {
+      Iterator<ImageWriter> available = ImageIO.getImageWritersByFormatName(format);
+      if (!available.hasNext()) {
+        throw new IOException("No image writer is available for " + format);
+      }
+      writer = available.next();
+      writers.put(format, writer);
+    }
+    return writer;
+  }
+
+  /* Returns a reader for the format of the image in the given stream. */
+  private ImageReader getReader(ImageInputStream input, String filename) throws IOException {
+    Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+    if (readers == null || !readers.hasNext()) {
+      throw new IOException("No image could be decoded from " + filename);
+    }
+    return readers.next();
+  }
+
+  private BufferedImage readImage(String filename) throws IOException {
     BufferedImage bufferedImage = ImageIO.read(new File(filename));
-    return bufferedImageHandler.getImagePixels(bufferedImage);
+    if (bufferedImage == null) {
+      throw new IOException("No image could be decoded from " + filename);
+    }
+    return bufferedImage;
   }
 }
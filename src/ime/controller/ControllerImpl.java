@@ -1,20 +1,34 @@
 package ime.controller;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
+import ime.controller.commands.Command;
+import ime.controller.commands.CommandDependencies;
 import ime.model.ImageRepository;
 import ime.view.View;
 
 /**
  * The `controller` class implements the ImageProcessingController interface and provides
- * functionality to execute image processing commands specified in a script file.
+ * functionality to execute image processing commands specified in a script file. When running a
+ * script (without user prompts), commands that do not depend on each other run concurrently, images
+ * are saved in the background and every outstanding save is completed, with its failures reported
+ * in order, once the script ends. The messages of a script are displayed in the order of its
+ * commands. The script is read in advance, and every image is removed from the repository once
+ * the last command of the script that uses it has run, unless the script is run from another one.
  */
 
 public class ControllerImpl extends AbstractController {
 
   private final boolean userPrompt;
   private final Scanner in;
+  private final SaveQueue saveQueue;
+  private final ScriptScheduler scheduler;
+  private final boolean releaseImages;
 
   /**
    * Constructs a new controller instance that does not require user prompt with the given image
@@ -22,9 +36,36 @@ public class ControllerImpl extends AbstractController {
    */
   public ControllerImpl(Scanner in, View view, ImageRepository imgRepo,
                         FileHandlerProvider fileHandlerProvider, Boolean userPrompt) {
+    this(in, view, imgRepo, fileHandlerProvider, userPrompt, true);
+  }
+
+  /**
+   * Constructs a new controller instance, which may be kept from removing the images of its script
+   * after their last use. A script run from another script should keep them, since the other
+   * script may go on to use them.
+   *
+   * @param in                  the source of the commands
+   * @param view                the view that the messages of the commands are displayed on
+   * @param imgRepo             the repository that the commands are run against
+   * @param fileHandlerProvider the provider of the handlers that load and save images
+   * @param userPrompt          true to prompt for every command, false to run a script
+   * @param releaseImages       true for a script to remove every image after its last use
+   */
+  public ControllerImpl(Scanner in, View view, ImageRepository imgRepo,
+      FileHandlerProvider fileHandlerProvider, boolean userPrompt, boolean releaseImages) {
     super(fileHandlerProvider, imgRepo, view);
     this.in = in;
     this.userPrompt = userPrompt;
+    this.releaseImages = releaseImages;
+    if (userPrompt) {
+      saveQueue = null;
+      scheduler = null;
+    } else {
+      int workers = Runtime.getRuntime().availableProcessors();
+      saveQueue = new SaveQueue(workers);
+      scheduler = new ScriptScheduler(workers, view::displayMessage);
+      knownCommands = createCommands(fileHandlerProvider, view, saveQueue, false);
+    }
   }
 
   /**
@@ -33,19 +74,148 @@ public class ControllerImpl extends AbstractController {
    */
   @Override
   public void execute() {
+    if (scheduler != null) {
+      executeScript();
+      return;
+    }
     boolean endFlag = false;
     try {
       while (!endFlag) {
-        if (userPrompt) {
-          view.displayMessage("Please enter the command to run: ");
-        }
+        view.displayMessage("Please enter the command to run: ");
         String command = in.nextLine();
         endFlag = executeCommand(command);
       }
     } catch (NoSuchElementException e) {
       view.displayMessage("Exiting with no more commands");
     }
+  }
+
+  /* Runs the whole script, which is read in advance so that every image can be removed from the
+   repository right after the last command of the script that uses it. */
+  private void executeScript() {
+    List<String> lines = readLines();
+    List<List<String>> lastUses = releaseImages ? findLastUses(lines) : null;
+    boolean endFlag = false;
+    for (int i = 0; i < lines.size() && !endFlag; i++) {
+      endFlag = executeCommand(lines.get(i));
+      if (lastUses != null) {
+        release(lastUses.get(i));
+      }
+    }
+    scheduler.finish();
+    scheduler.close();
+    for (String error : saveQueue.flush()) {
+      view.displayMessage(error);
+    }
+    saveQueue.close();
+    if (!endFlag) {
+      view.displayMessage("Exiting with no more commands");
+    }
+  }
+
+  /**
+   * Compiles the script read by this controller without running it, and displays every command of
+   * the script, marking those that would be skipped because their results are never used and the
+   * images that would be removed after their last use. An invalid script is reported along with
+   * its first invalid line.
+   */
+  public void dryRun() {
+    List<String> lines = readLines();
+    try {
+      for (String line : compileScript(lines).withoutDeadResults().releasingImagesAfterLastUse()
+          .getReport()) {
+        view.displayMessage(line);
+      }
+    } catch (IllegalArgumentException e) {
+      view.displayMessage(e.getMessage());
+    } finally {
+      if (scheduler != null) {
+        scheduler.close();
+        saveQueue.close();
+      }
+    }
+  }
+
+  private List<String> readLines() {
+    List<String> lines = new ArrayList<>();
+    while (in.hasNextLine()) {
+      lines.add(in.nextLine());
+    }
+    return lines;
+  }
+
+  /* Finds the images last used by every line of the script. A line that is not a valid command
+   fails without using any image, and the lines after an exit are never run. */
+  private List<List<String>> findLastUses(List<String> lines) {
+    List<CommandDependencies> dependencies = new ArrayList<>();
+    boolean exited = false;
+    for (String line : lines) {
+      String[] tokens = line.trim().split(" ");
+      CommandDependencies lineDependencies = CommandDependencies.NONE;
+      try {
+        CommandEnum commandEnum = exited || line.trim().isEmpty() || line.trim().startsWith("#")
+            ? null : CommandEnum.fromRepresentation(tokens[0]);
+        exited |= commandEnum == CommandEnum.exit;
+        Command command = commandEnum == null ? null : knownCommands.get(commandEnum);
+        if (command != null) {
+          command.bind(tokens);
+          lineDependencies = command.getDependencies(tokens);
+        }
+      } catch (IllegalArgumentException e) {
+        // the line is reported when it is run
+      }
+      dependencies.add(lineDependencies);
+    }
+    return ScriptPlan.findLastUses(dependencies);
+  }
+
+  /* Removes images from the repository once every command scheduled before that uses them has
+   finished, since removing them counts as writing them. */
+  private void release(List<String> imageNames) {
+    if (imageNames.isEmpty()) {
+      return;
+    }
+    scheduler.schedule(new CommandDependencies(Collections.emptyList(), imageNames,
+        Collections.emptyList(), Collections.emptyList()), () -> {
+          imageNames.forEach(imgRepo::removeImage);
+          return null;
+        });
+  }
 
+  /* In a script, the command is scheduled to run once the commands it depends on have finished,
+   and its message is displayed after those of the commands before it. A command saving files in
+   the background is reported once the saves it queued are written, in place of its message if
+   one of them fails. */
+  @Override
+  protected void runCommandObject(Command command, String[] tokens) {
+    if (scheduler == null) {
+      super.runCommandObject(command, tokens);
+      return;
+    }
+    CommandDependencies dependencies = command.getDependencies(tokens);
+    scheduler.scheduleDeferred(dependencies, () -> {
+      String message;
+      try {
+        message = command.proceed(tokens, imgRepo);
+      } catch (IllegalArgumentException e) {
+        message = e.getMessage();
+      }
+      CompletableFuture<String> report = CompletableFuture.completedFuture(message);
+      for (String file : dependencies.getFilesWritten()) {
+        report = report.thenCombine(saveQueue.whenSaved(file),
+            (reported, failure) -> failure == null ? reported : failure);
+      }
+      return report;
+    });
+  }
+
+  @Override
+  protected void displayMessage(String message) {
+    if (scheduler == null) {
+      super.displayMessage(message);
+      return;
+    }
+    scheduler.schedule(CommandDependencies.NONE, () -> message);
   }
 
 }
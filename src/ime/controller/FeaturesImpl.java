@@ -132,7 +132,7 @@ public class FeaturesImpl implements Features {
       int compressPercent = getValueWithConstraint("compression factor", 0, 100);
       setCommandTokens(CommandEnum.compress,
           Arrays.asList(String.valueOf(compressPercent), activeImage));
-      controller.setupOperation(true, false);
+      controller.setupOperation(true, true);
     } catch (IllegalStateException e) {
       controller.setupOperation(false, false);
     }
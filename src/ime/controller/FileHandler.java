@@ -1,5 +1,6 @@
 package ime.controller;
 
+import ime.model.ImageRowSource;
 import java.io.IOException;
 
 /**
@@ -18,6 +19,61 @@ public interface FileHandler {
    */
   float[][][] loadImage(String filename) throws IOException;
 
+  /**
+   * This method opens the file path passed as argument for reading the image in it one row at a
+   * time, so that it can be loaded without holding all of its values in a 3D float array. The
+   * returned source should be closed once the image has been read. Handlers that can not decode an
+   * image row by row load it whole and supply the rows from memory.
+   *
+   * @param filename the filename to be loaded.
+   * @return a source of the rows of the image.
+   * @throws IOException if any error occurs during file loading or if the file does not exist.
+   */
+  default ImageRowSource openImage(String filename) throws IOException {
+    return new ArrayImageRowSource(loadImage(filename));
+  }
+
+  /**
+   * This method reads the format, dimensions and channel count of the image in the file path passed
+   * as argument. Handlers that can not read just the header of a file open the whole image.
+   *
+   * @param filename the filename to be probed.
+   * @return the information in the header of the image.
+   * @throws IOException if any error occurs during file reading or if the file does not exist.
+   */
+  default ImageInfo probeImage(String filename) throws IOException {
+    try (ImageRowSource source = openImage(filename)) {
+      String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+      return new ImageInfo(extension, source.getWidth(), source.getHeight(), 3);
+    }
+  }
+
+  /**
+   * This method opens the file path passed as argument for reading the part of the image in it that
+   * the given options select, one row at a time. Handlers that can not decode just a region or a
+   * subsampled image read the rows of the whole image and keep only the selected pixels.
+   *
+   * @param filename the filename to be loaded.
+   * @param options  the region and subsampling of the image to be loaded.
+   * @return a source of the rows of the selected part of the image.
+   * @throws IOException              if any error occurs during file loading or if the file
+   *                                  does not exist.
+   * @throws IllegalArgumentException if the selected region lies outside the image.
+   */
+  default ImageRowSource openImage(String filename, LoadOptions options)
+      throws IOException, IllegalArgumentException {
+    ImageRowSource source = openImage(filename);
+    if (options.isFullImage()) {
+      return source;
+    }
+    try {
+      return new SubsampledImageRowSource(source, options);
+    } catch (IllegalArgumentException e) {
+      source.close();
+      throw e;
+    }
+  }
+
   /**
    * This method saves the given image into the file path passed as parameter.
    *
@@ -27,4 +83,32 @@ public interface FileHandler {
    */
   void saveImage(float[][][] image, String filename) throws IOException;
 
+  /**
+   * This method saves the image whose rows are read from the given source into the file path
+   * passed as parameter. Handlers that can not encode an image row by row read it whole into a 3D
+   * array and save that.
+   *
+   * @param source   the source of the rows of the image to be saved
+   * @param filename the filename (or path) that the image will be saved in
+   * @throws IOException if any error occurs during file saving
+   */
+  default void saveImage(ImageRowSource source, String filename) throws IOException {
+    saveImage(ArrayImageRowSource.readAll(source), filename);
+  }
+
+  /**
+   * This method saves the image whose rows are read from the given source into the file path
+   * passed as parameter, with the given encoder settings. Handlers whose formats have no such
+   * settings ignore them.
+   *
+   * @param source   the source of the rows of the image to be saved
+   * @param filename the filename (or path) that the image will be saved in
+   * @param options  the encoder settings to save the image with
+   * @throws IOException if any error occurs during file saving
+   */
+  default void saveImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    saveImage(source, filename);
+  }
+
 }
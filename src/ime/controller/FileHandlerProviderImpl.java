@@ -1,20 +1,64 @@
 package ime.controller;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * This implementation of the FileHandlerProvider uses a static map to keep track of the specific
- * {@link FileHandler} implementations to be used for specific input string.
+ * {@link FileHandler} implementations to be used for specific input string. A provider may be
+ * given a {@link RawImageCache}, in which case JPG and PNG images are loaded through it. PNG images
+ * are saved through ImageIO unless the provider is asked to encode them in parallel with the
+ * {@link PngFileHandler}.
  */
 public class FileHandlerProviderImpl implements FileHandlerProvider {
 
   private static final Map<FileFormatEnum, FileHandler> FILE_FORMAT_ENUM_MAP =
       generateFileHandlerClassMap();
 
+  private final Map<FileFormatEnum, FileHandler> fileHandlers;
+
+  /**
+   * Constructs a provider of the handlers of every supported format.
+   */
+  public FileHandlerProviderImpl() {
+    fileHandlers = FILE_FORMAT_ENUM_MAP;
+  }
+
+  /**
+   * Constructs a provider whose JPG and PNG handlers keep the images they decode in the given
+   * cache.
+   *
+   * @param cache the cache of decoded images
+   */
+  public FileHandlerProviderImpl(RawImageCache cache) {
+    this(cache, false);
+  }
+
+  /**
+   * Constructs a provider that may keep the images it decodes in a cache, and may encode PNG images
+   * in parallel.
+   *
+   * @param cache               the cache of decoded JPG and PNG images, or null to not cache them
+   * @param parallelPngEncoding true to save PNG images with the {@link PngFileHandler}, which
+   *                            compresses chunks of rows in parallel, rather than through ImageIO
+   */
+  public FileHandlerProviderImpl(RawImageCache cache, boolean parallelPngEncoding) {
+    fileHandlers = new EnumMap<>(FILE_FORMAT_ENUM_MAP);
+    if (parallelPngEncoding) {
+      fileHandlers.put(FileFormatEnum.png, new PngFileHandler());
+    }
+    if (cache != null) {
+      for (FileFormatEnum format : new FileFormatEnum[]{FileFormatEnum.jpg, FileFormatEnum.png}) {
+        fileHandlers.put(format, new CachingFileHandler(fileHandlers.get(format), cache));
+      }
+    }
+  }
+
   private static Map<FileFormatEnum, FileHandler> generateFileHandlerClassMap() {
     Map<FileFormatEnum, FileHandler> fileHandlers = new HashMap<>();
-    fileHandlers.put(FileFormatEnum.ppm, new PpmFileHandler());
+    fileHandlers.put(FileFormatEnum.ppm, new PpmFileHandler(PpmFormat.P3));
+    fileHandlers.put(FileFormatEnum.pgm, new PpmFileHandler(PpmFormat.P2));
     fileHandlers.put(FileFormatEnum.jpg, new CommonFileHandler());
     fileHandlers.put(FileFormatEnum.png, new CommonFileHandler());
     return fileHandlers;
@@ -28,14 +72,12 @@ public class FileHandlerProviderImpl implements FileHandlerProvider {
    * @return object of {@link FileHandler}
    */
   public FileHandler getFileHandler(String fileName) {
-    try {
-      String[] filePathComponents = fileName.split("\\.");
+    String[] filePathComponents = fileName.split("\\.");
+    if (filePathComponents.length > 0) {
       fileName = filePathComponents[filePathComponents.length - 1];
-    } catch (Exception e) {
-      System.out.println("Extension directly provided.");
     }
     FileFormatEnum type = validateFileType(fileName);
-    return FILE_FORMAT_ENUM_MAP.get(type);
+    return fileHandlers.get(type);
   }
 
   /**
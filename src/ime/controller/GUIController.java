@@ -2,13 +2,17 @@ package ime.controller;
 
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import ime.controller.commands.Command;
 import ime.model.ImageRepository;
+import ime.model.ImageRowSource;
 import ime.view.GUIView;
 
 /**
@@ -19,6 +23,8 @@ import ime.view.GUIView;
 public class GUIController extends AbstractController {
 
   private final GUIView view;
+  private final BufferedImageHandler imageHandler;
+  private final Map<String, RenderedImage> renderedImages;
 
   /**
    * constructor to initialise and set the view and imageRepository objects.
@@ -31,6 +37,8 @@ public class GUIController extends AbstractController {
                        FileHandlerProvider fileHandlerProvider) {
     super(fileHandlerProvider, imageRepository, view);
     this.view = view;
+    this.imageHandler = new BufferedImageHandler();
+    this.renderedImages = new HashMap<>();
   }
 
   /**
@@ -68,14 +76,39 @@ public class GUIController extends AbstractController {
    */
   private void updateViewImage(String imageName, Consumer<Image> viewMethod) {
     try {
-      float[][][] image = imgRepo.getImage(imageName);
-      BufferedImage bufferedImage = new BufferedImageHandler().convertIntoImage(image);
-      viewMethod.accept(bufferedImage);
-    } catch (IllegalArgumentException e) {
+      viewMethod.accept(getRenderedImage(imageName));
+    } catch (IllegalArgumentException | IOException e) {
       view.displayMessage(e.getMessage());
     }
   }
 
+  /* Images are rendered straight from the rows of the stored image, and the rendering is reused
+   for as long as the same image stays tagged with the name, as when toggling a preview or
+   refreshing the view after a save. */
+  private BufferedImage getRenderedImage(String imageName) throws IOException {
+    long version = imgRepo.getImageVersion(imageName);
+    RenderedImage rendered = renderedImages.get(imageName);
+    if (rendered == null || rendered.version != version) {
+      try (ImageRowSource source = imgRepo.getImageRows(imageName)) {
+        rendered = new RenderedImage(version, imageHandler.convertIntoImage(source));
+      }
+      renderedImages.put(imageName, rendered);
+    }
+    return rendered.image;
+  }
+
+  /* A rendering of the image with the given version. */
+  private static final class RenderedImage {
+
+    private final long version;
+    private final BufferedImage image;
+
+    private RenderedImage(long version, BufferedImage image) {
+      this.version = version;
+      this.image = image;
+    }
+  }
+
   /**
    * gets the input from the user.
    *
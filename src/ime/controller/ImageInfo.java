@@ -0,0 +1,70 @@
+package ime.controller;
+
+/**
+ * This class holds what can be learnt about an image file from its header alone: the format it is
+ * stored in, its dimensions and the number of color channels it has.
+ */
+public final class ImageInfo {
+
+  private final String format;
+  private final int width;
+  private final int height;
+  private final int channelCount;
+
+  /**
+   * Constructs the information of an image file.
+   *
+   * @param format       the name of the format that the image is stored in
+   * @param width        the width of the image
+   * @param height       the height of the image
+   * @param channelCount the number of color channels of the image, 1 for greyscale images
+   */
+  public ImageInfo(String format, int width, int height, int channelCount) {
+    this.format = format;
+    this.width = width;
+    this.height = height;
+    this.channelCount = channelCount;
+  }
+
+  /**
+   * Returns the name of the format that the image is stored in.
+   *
+   * @return the name of the format
+   */
+  public String getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the width of the image.
+   *
+   * @return the number of pixels in each row
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the image.
+   *
+   * @return the number of rows
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the number of color channels of the image.
+   *
+   * @return 3 for color images, 1 for greyscale images
+   */
+  public int getChannelCount() {
+    return channelCount;
+  }
+
+  @Override
+  public String toString() {
+    return format + " " + width + "x" + height + ", " + channelCount
+        + (channelCount == 1 ? " channel" : " channels");
+  }
+}
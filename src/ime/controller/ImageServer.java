@@ -0,0 +1,317 @@
+package ime.controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ime.controller.commands.Command;
+import ime.model.ImageRepository;
+import ime.model.ImageRowSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class serves the commands of the program over HTTP on the loopback address, so that other
+ * programs on the same machine can use it without starting it for every image. All requests work
+ * on one repository, which is shared by the requests running at the same time.
+ *
+ * <ul>
+ *   <li>POST /commands runs the lines of the request body as a script, such as load, operation and
+ *   save commands, and responds with their messages. The script is checked before it is run, and
+ *   it stops at the first command that fails, which is reported with its line.</li>
+ *   <li>PUT /images/<i>name</i>?format=<i>png</i> loads the image in the request body under the
+ *   name, and GET /images/<i>name</i>?format=<i>png</i> responds with the image of the name in the
+ *   given format. Images are streamed through a scratch file rather than held in memory whole.</li>
+ * </ul>
+ *
+ * <p>Requests are run on a fixed number of worker threads, and at most a given number of them wait
+ * for a worker. A request arriving while all of them are taken is turned away at once with 503
+ * (Service Unavailable), so that a burst of requests cannot pile up without bound.
+ *
+ * <p>Since a web page open in a browser on the same machine could otherwise send requests to the
+ * server, requests whose Host or Origin header names another host are refused with 403
+ * (Forbidden), and scripts may only load, save and probe files within a root directory. The run
+ * command is not available to scripts.
+ */
+public class ImageServer implements Closeable {
+
+  private static final int MAX_SCRIPT_BYTES = 1 << 20;
+  private static final String IMAGES_PATH = "/images/";
+  private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+
+  private final HttpServer server;
+  private final ThreadPoolExecutor workers;
+  private final ImageRepository imageRepository;
+  private final FileHandlerProvider fileHandlerProvider;
+  private final Map<CommandEnum, Command> commands;
+  private final Path scratchDirectory;
+  private final Path rootDirectory;
+
+  /**
+   * Constructs a server listening on the given port of the loopback address. It accepts requests
+   * once it is started.
+   *
+   * @param port                the port to listen on, or 0 for any free port
+   * @param imageRepository     the repository that every request works on
+   * @param fileHandlerProvider the provider of the handlers that load and save images
+   * @param workerCount         the number of requests that are run at the same time
+   * @param queueCapacity       the number of requests that may wait for a worker
+   * @param scratchDirectory    the directory of the files that images are streamed through
+   * @param rootDirectory       the directory that the files loaded, saved and probed by scripts
+   *                            should be in
+   * @throws IOException              if the port could not be listened on, or the root directory
+   *                                  does not exist
+   * @throws IllegalArgumentException if the number of workers or the capacity of the queue is not
+   *                                  positive
+   */
+  public ImageServer(int port, ImageRepository imageRepository,
+      FileHandlerProvider fileHandlerProvider, int workerCount, int queueCapacity,
+      Path scratchDirectory, Path rootDirectory) throws IOException, IllegalArgumentException {
+    if (workerCount <= 0) {
+      throw new IllegalArgumentException("The number of workers should be positive");
+    }
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("The capacity of the queue should be positive");
+    }
+    this.imageRepository = imageRepository;
+    this.fileHandlerProvider = fileHandlerProvider;
+    this.scratchDirectory = scratchDirectory;
+    this.rootDirectory = rootDirectory.toRealPath();
+    FileHandlerProvider rootedProvider = fileName -> fileHandlerProvider.getFileHandler(
+        checkWithinRoot(fileName));
+    this.commands = AbstractController.createCommands(rootedProvider, null, null, true);
+    this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          Thread thread = new Thread(runnable, "server-worker");
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    // the server thread only hands requests over to the workers, or turns them away
+    server.createContext("/commands", exchange -> admit(exchange, this::handleCommands));
+    server.createContext(IMAGES_PATH, exchange -> admit(exchange, this::handleImage));
+  }
+
+  /**
+   * Starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Returns the port that the server listens on.
+   *
+   * @return the port of the server
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops accepting requests, waits for the requests that were accepted to finish and then closes
+   * the repository that they worked on.
+   *
+   * @throws IOException if the repository could not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    server.stop(0);
+    workers.shutdown();
+    boolean interrupted = false;
+    while (!workers.isTerminated()) {
+      try {
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    imageRepository.close();
+  }
+
+  /* Hands a request over to a worker, or responds right away if it does not come from this machine
+   or there is no room for it. */
+  private void admit(HttpExchange exchange, ExchangeHandler handler) throws IOException {
+    if (!isLocal(exchange.getRequestHeaders().getFirst("Host"))
+        || exchange.getRequestHeaders().containsKey("Origin")
+        && !isLocal(exchange.getRequestHeaders().getFirst("Origin"))) {
+      try (HttpExchange refused = exchange) {
+        respond(refused, 403, "Requests should come from this machine");
+      }
+      return;
+    }
+    try {
+      workers.execute(() -> handle(exchange, handler));
+    } catch (RejectedExecutionException e) {
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      try (HttpExchange rejected = exchange) {
+        respond(rejected, 503, "The server is busy, try again later");
+      }
+    }
+  }
+
+  private static void handle(HttpExchange exchange, ExchangeHandler handler) {
+    try (HttpExchange handled = exchange) {
+      try {
+        handler.handle(handled);
+      } catch (IllegalArgumentException e) {
+        respond(handled, 400, e.getMessage());
+      } catch (RuntimeException e) {
+        respond(handled, 500, String.valueOf(e.getMessage()));
+      }
+    } catch (IOException e) {
+      // the client has gone away or the response was already started, so the exchange is dropped
+    }
+  }
+
+  /* Runs the request body as a script, failing at the first command that fails. */
+  private void handleCommands(HttpExchange exchange) throws IOException {
+    if (!"POST".equals(exchange.getRequestMethod())) {
+      respond(exchange, 405, "Commands should be posted");
+      return;
+    }
+    byte[] body;
+    try (InputStream in = exchange.getRequestBody()) {
+      body = in.readNBytes(MAX_SCRIPT_BYTES + 1);
+    }
+    if (body.length > MAX_SCRIPT_BYTES) {
+      respond(exchange, 413, "The script should be at most " + MAX_SCRIPT_BYTES + " bytes");
+      return;
+    }
+    List<String> lines = Arrays.asList(new String(body, StandardCharsets.UTF_8).split("\r?\n"));
+    List<String> messages = new ArrayList<>();
+    ScriptPlan.compile(lines, commands).run(imageRepository, Map.of(), messages::add);
+    respond(exchange, 200, String.join("\n", messages));
+  }
+
+  /* Loads an uploaded image or sends an image back, streaming it through a scratch file. */
+  private void handleImage(HttpExchange exchange) throws IOException {
+    String imageName = exchange.getRequestURI().getPath().substring(IMAGES_PATH.length());
+    if (imageName.isEmpty() || imageName.contains("/")) {
+      respond(exchange, 404, "Images are at " + IMAGES_PATH + "name");
+      return;
+    }
+    String format = getFormat(exchange.getRequestURI().getQuery());
+    Path file = Files.createTempFile(scratchDirectory, "image", "." + format);
+    try {
+      switch (exchange.getRequestMethod()) {
+        case "PUT":
+          try (InputStream in = exchange.getRequestBody()) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+          }
+          try (ImageRowSource source = fileHandlerProvider.getFileHandler(file.toString())
+              .openImage(file.toString())) {
+            imageRepository.loadImage(source, imageName);
+          } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid file");
+          }
+          respond(exchange, 200, "Loaded successfully.");
+          break;
+        case "GET":
+          if (!imageRepository.isImagePresent(imageName)) {
+            respond(exchange, 404, "image name invalid");
+            return;
+          }
+          try (ImageRowSource source = imageRepository.getImageRows(imageName)) {
+            fileHandlerProvider.getFileHandler(file.toString()).saveImage(source, file.toString());
+          }
+          exchange.getResponseHeaders().set("Content-Type", "image/" + format);
+          exchange.sendResponseHeaders(200, Files.size(file));
+          try (OutputStream out = exchange.getResponseBody()) {
+            Files.copy(file, out);
+          }
+          break;
+        default:
+          respond(exchange, 405, "Images should be put or got");
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /* Returns the given path if it is within the root directory, going by the real path of the
+   directory it is in so that links cannot lead out of the root. */
+  private String checkWithinRoot(String fileName) throws IOException, IllegalArgumentException {
+    Path file = Paths.get(fileName).toAbsolutePath().normalize();
+    Path parent = file.getParent();
+    if (parent != null && Files.isDirectory(parent)) {
+      file = parent.toRealPath().resolve(file.getFileName());
+    }
+    if (!file.startsWith(rootDirectory)) {
+      throw new IllegalArgumentException("Files should be within " + rootDirectory);
+    }
+    return fileName;
+  }
+
+  /* Checks whether a Host or Origin header names this machine. */
+  private static boolean isLocal(String header) {
+    if (header == null) {
+      return false;
+    }
+    try {
+      URI uri = URI.create(header.contains("://") ? header : "http://" + header);
+      return uri.getHost() != null && LOCAL_HOSTS.contains(uri.getHost().toLowerCase());
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /* Returns the format given as format=name in the query, which should be a supported one. */
+  private static String getFormat(String query) throws IllegalArgumentException {
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        if (parameter.startsWith("format=")) {
+          String format = parameter.substring("format=".length()).toLowerCase();
+          for (FileFormatEnum supported : FileFormatEnum.values()) {
+            if (supported.name().equals(format)) {
+              return format;
+            }
+          }
+          throw new IllegalArgumentException("Invalid file format " + format);
+        }
+      }
+    }
+    throw new IllegalArgumentException("Provide the format of the image as ?format=png");
+  }
+
+  private static void respond(HttpExchange exchange, int status, String message)
+      throws IOException {
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length > 0) {
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  /**
+   * Handles a request that has been given a worker.
+   */
+  private interface ExchangeHandler {
+
+    void handle(HttpExchange exchange) throws IOException;
+  }
+}
@@ -0,0 +1,89 @@
+package ime.controller;
+
+import java.awt.Rectangle;
+
+/**
+ * This class holds the options that an image is loaded with: a region of the image to load instead
+ * of the whole image, and a subsampling factor that keeps only every n-th pixel of every n-th row
+ * of that region. File handlers that support it decode only what the options ask for.
+ */
+public final class LoadOptions {
+
+  /**
+   * Options that load the whole image at its full size.
+   */
+  public static final LoadOptions FULL_IMAGE = new LoadOptions(1, null);
+
+  private final int subsampling;
+  private final Rectangle region;
+
+  /**
+   * Constructs the options for loading an image.
+   *
+   * @param subsampling the factor that the width and height of the region are divided by, 1 to load
+   *                    the region at its full size
+   * @param region      the region of the image to load, or null to load the whole image
+   * @throws IllegalArgumentException if the subsampling is not positive or the region is empty or
+   *                                  starts at a negative position
+   */
+  public LoadOptions(int subsampling, Rectangle region) throws IllegalArgumentException {
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("Scale should be of the form 1/n for a positive n");
+    }
+    if (region != null && (region.x < 0 || region.y < 0 || region.isEmpty())) {
+      throw new IllegalArgumentException(
+          "Region should be x,y,width,height with a non-negative position and a positive size");
+    }
+    this.subsampling = subsampling;
+    this.region = region == null ? null : new Rectangle(region);
+  }
+
+  /**
+   * Returns the factor that the width and height of the loaded region are divided by.
+   *
+   * @return the subsampling factor
+   */
+  public int getSubsampling() {
+    return subsampling;
+  }
+
+  /**
+   * Returns whether these options load the whole image at its full size.
+   *
+   * @return true if there is neither a region nor subsampling
+   */
+  public boolean isFullImage() {
+    return subsampling == 1 && region == null;
+  }
+
+  /**
+   * Returns the region to be loaded from an image of the given size, which is the requested region
+   * clipped to the image, or the whole image if no region was requested.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the region to be loaded
+   * @throws IllegalArgumentException if the requested region lies outside the image
+   */
+  public Rectangle getRegionWithin(int width, int height) throws IllegalArgumentException {
+    Rectangle bounds = new Rectangle(0, 0, width, height);
+    if (region == null) {
+      return bounds;
+    }
+    Rectangle clipped = bounds.intersection(region);
+    if (clipped.isEmpty()) {
+      throw new IllegalArgumentException("Region lies outside the image");
+    }
+    return clipped;
+  }
+
+  /**
+   * Returns the number of pixels that a run of the given length has once subsampled.
+   *
+   * @param length the number of pixels in the run
+   * @return the number of pixels kept
+   */
+  public int getSubsampledLength(int length) {
+    return (length + subsampling - 1) / subsampling;
+  }
+}
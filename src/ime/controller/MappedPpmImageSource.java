@@ -0,0 +1,92 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * This package-private class supplies the rows of a binary (P6 or P5) PPM file by memory-mapping
+ * its pixel data, so samples are decoded straight from the pages of the file without being copied
+ * into a heap buffer first. Files larger than a single mapping can address are mapped a window of
+ * whole rows at a time.
+ */
+class MappedPpmImageSource implements ImageRowSource {
+
+  private static final long MAX_WINDOW_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final PpmHeader header;
+  private final long dataOffset;
+  private final long rowBytes;
+  private final int rowsPerWindow;
+
+  private MappedByteBuffer window;
+  private int windowEnd;
+  private int nextRow;
+
+  /**
+   * Constructs a source for a binary PPM file whose header has already been read.
+   *
+   * @param channel    the channel of the file
+   * @param header     the header of the file
+   * @param dataOffset the offset of the first sample from the start of the file
+   * @throws IOException if the file is too short for its dimensions or its rows are too long
+   */
+  MappedPpmImageSource(FileChannel channel, PpmHeader header, long dataOffset)
+      throws IOException {
+    this.channel = channel;
+    this.header = header;
+    this.dataOffset = dataOffset;
+    this.rowBytes = (long) header.width * header.format.getChannelCount()
+        * (header.isWide() ? 2 : 1);
+    if (rowBytes > MAX_WINDOW_SIZE) {
+      throw new IOException("Invalid PPM file: rows are too long to be mapped");
+    }
+    if (channel.size() < dataOffset + rowBytes * header.height) {
+      throw new IOException("Invalid PPM file: pixel data is truncated");
+    }
+    this.rowsPerWindow = (int) Math.min(Integer.MAX_VALUE,
+        MAX_WINDOW_SIZE / Math.max(1, rowBytes));
+  }
+
+  @Override
+  public int getWidth() {
+    return header.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return header.height;
+  }
+
+  @Override
+  public void readRow(float[] rowValues) throws IOException {
+    if (nextRow >= header.height) {
+      throw new IOException("All rows of the image have been read");
+    }
+    if (window == null || nextRow >= windowEnd) {
+      int rows = Math.min(rowsPerWindow, header.height - nextRow);
+      window = channel.map(MapMode.READ_ONLY, dataOffset + nextRow * rowBytes, rows * rowBytes);
+      windowEnd = nextRow + rows;
+    }
+    int channelCount = header.format.getChannelCount();
+    boolean wide = header.isWide();
+    float scale = header.getScale();
+    for (int j = 0; j < header.width; j++) {
+      for (int k = 0; k < channelCount; k++) {
+        int sample = wide ? window.getShort() & 0xffff : window.get() & 0xff;
+        rowValues[3 * j + k] = sample * scale;
+      }
+    }
+    header.fillGreyChannels(rowValues);
+    nextRow++;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
@@ -0,0 +1,52 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+
+/**
+ * This package-private class supplies the rows of a plain (P3 or P2) PPM file, parsing each row
+ * from the file only when it is read.
+ */
+class PlainPpmImageSource implements ImageRowSource {
+
+  private final PpmTokenizer tokenizer;
+  private final PpmHeader header;
+
+  /**
+   * Constructs a source for a plain PPM file whose header has already been read.
+   *
+   * @param tokenizer the tokenizer of the file, positioned right before the first sample
+   * @param header    the header of the file
+   */
+  PlainPpmImageSource(PpmTokenizer tokenizer, PpmHeader header) {
+    this.tokenizer = tokenizer;
+    this.header = header;
+  }
+
+  @Override
+  public int getWidth() {
+    return header.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return header.height;
+  }
+
+  @Override
+  public void readRow(float[] rowValues) throws IOException {
+    int channelCount = header.format.getChannelCount();
+    float scale = header.getScale();
+    for (int j = 0; j < header.width; j++) {
+      for (int k = 0; k < channelCount; k++) {
+        rowValues[3 * j + k] = tokenizer.nextInt() * scale;
+      }
+    }
+    header.fillGreyChannels(rowValues);
+  }
+
+  @Override
+  public void close() throws IOException {
+    tokenizer.close();
+  }
+}
@@ -0,0 +1,306 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This file handler saves RGB images as PNG files with its own encoder, which compresses the image
+ * on all processors, while loading is left to ImageIO as in {@link CommonFileHandler}. Every row is
+ * given the PNG filter that suits it best, and the filtered rows are split into chunks that are
+ * deflated concurrently, each primed with the end of the chunk before it, and joined into a single
+ * zlib stream.
+ */
+public class PngFileHandler extends CommonFileHandler {
+
+  private static final int CHUNK_SIZE = 1 << 17;
+  private static final int WINDOW_SIZE = 1 << 15;
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+  @Override
+  public void saveImage(float[][][] image, String filename) throws IOException {
+    writeImage(new ArrayImageRowSource(image), filename, SaveOptions.DEFAULT);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename) throws IOException {
+    writeImage(source, filename, SaveOptions.DEFAULT);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    writeImage(source, filename, options);
+  }
+
+  /* Rows are read into a fixed set of reusable chunks, one per processor. The chunks are filtered
+   in parallel, then deflated in parallel, and finally written to the file in order as IDAT chunks,
+   so memory use does not grow with the size of the image. Every chunk but the last of the image is
+   ended with a sync flush, which leaves its output on a byte boundary so that the outputs can be
+   concatenated into one deflate stream. */
+  private void writeImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int level = options.hasCompressionLevel() ? options.getCompressionLevel()
+        : Deflater.DEFAULT_COMPRESSION;
+    int stride = width * 3;
+    int rowsPerChunk = Math.max(1, CHUNK_SIZE / Math.max(1, stride));
+    int chunkCount = Runtime.getRuntime().availableProcessors();
+    Chunk[] chunks = new Chunk[chunkCount];
+    for (int c = 0; c < chunkCount; c++) {
+      chunks[c] = new Chunk(rowsPerChunk, stride, level);
+    }
+    float[] rowValues = new float[stride];
+    Adler32 adler = new Adler32();
+
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, ByteBuffer.wrap(SIGNATURE));
+      ByteBuffer header = ByteBuffer.allocate(13);
+      header.putInt(width).putInt(height).put((byte) 8).put((byte) 2);
+      writeChunk(channel, "IHDR", header.array(), 0, 13, null, null);
+
+      byte[] previousRow = new byte[stride];
+      byte[] dictionary = new byte[0];
+      byte[] prefix = zlibHeader(level);
+      int row = 0;
+      while (row < height) {
+        int used = 0;
+        while (used < chunkCount && row < height) {
+          Chunk chunk = chunks[used++];
+          chunk.rows = Math.min(rowsPerChunk, height - row);
+          for (int r = 0; r < chunk.rows; r++) {
+            source.readRow(rowValues);
+            for (int i = 0; i < stride; i++) {
+              chunk.raw[r * stride + i] = (byte) Math.max(0, Math.min(255, (int) rowValues[i]));
+            }
+          }
+          row += chunk.rows;
+          chunk.last = row == height;
+        }
+        byte[] batchPreviousRow = previousRow;
+        byte[] batchDictionary = dictionary;
+        IntStream.range(0, used).parallel().forEach(c -> chunks[c].filter(
+            c == 0 ? batchPreviousRow : chunks[c - 1].getLastRow()));
+        IntStream.range(0, used).parallel().forEach(c -> chunks[c].deflate(
+            c == 0 ? batchDictionary : chunks[c - 1].getTail()));
+        for (int c = 0; c < used; c++) {
+          Chunk chunk = chunks[c];
+          adler.update(chunk.filtered, 0, chunk.rows * (stride + 1));
+          byte[] suffix = chunk.last
+              ? ByteBuffer.allocate(4).putInt((int) adler.getValue()).array() : null;
+          writeChunk(channel, "IDAT", chunk.compressed, 0, chunk.compressedLength, prefix,
+              suffix);
+          prefix = null;
+        }
+        previousRow = chunks[used - 1].getLastRow();
+        dictionary = chunks[used - 1].getTail();
+      }
+      writeChunk(channel, "IEND", new byte[0], 0, 0, null, null);
+    } finally {
+      for (Chunk chunk : chunks) {
+        chunk.deflater.end();
+      }
+    }
+  }
+
+  /* Returns the two bytes that begin a zlib stream of the given level: deflate with a 32K window,
+   along with the level that the stream was compressed with and a check making them a multiple of
+   31. */
+  private static byte[] zlibHeader(int level) {
+    int levelFlags;
+    if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+      levelFlags = 2;
+    } else if (level <= 1) {
+      levelFlags = 0;
+    } else if (level <= 5) {
+      levelFlags = 1;
+    } else {
+      levelFlags = 3;
+    }
+    int header = (0x78 << 8) | (levelFlags << 6);
+    header += (31 - header % 31) % 31;
+    return new byte[]{(byte) (header >> 8), (byte) header};
+  }
+
+  /* Writes a PNG chunk whose data is the given bytes, preceded and followed by the optional prefix
+   and suffix, along with the length and CRC of the chunk. */
+  private static void writeChunk(FileChannel channel, String type, byte[] data, int offset,
+      int length, byte[] prefix, byte[] suffix) throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    int prefixLength = prefix == null ? 0 : prefix.length;
+    int suffixLength = suffix == null ? 0 : suffix.length;
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    ByteBuffer start = ByteBuffer.allocate(8 + prefixLength);
+    start.putInt(prefixLength + length + suffixLength).put(typeBytes);
+    if (prefix != null) {
+      crc.update(prefix);
+      start.put(prefix);
+    }
+    start.flip();
+    writeFully(channel, start);
+    crc.update(data, offset, length);
+    writeFully(channel, ByteBuffer.wrap(data, offset, length));
+    ByteBuffer end = ByteBuffer.allocate(suffixLength + 4);
+    if (suffix != null) {
+      crc.update(suffix);
+      end.put(suffix);
+    }
+    end.putInt((int) crc.getValue()).flip();
+    writeFully(channel, end);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * A chunk of consecutive rows of the image, along with the buffers that they are filtered and
+   * compressed into. The buffers and the deflater are reused for every chunk of rows that passes
+   * through.
+   */
+  private static final class Chunk {
+
+    private final int stride;
+    private final byte[] raw;
+    private final byte[] filtered;
+    private final Deflater deflater;
+    private byte[] compressed;
+    private int compressedLength;
+    private int rows;
+    private boolean last;
+
+    private Chunk(int capacity, int stride, int level) {
+      this.stride = stride;
+      this.raw = new byte[capacity * stride];
+      this.filtered = new byte[capacity * (stride + 1)];
+      this.deflater = new Deflater(level, true);
+      this.compressed = new byte[filtered.length / 2 + 64];
+    }
+
+    /* Returns the last row of samples of the chunk, which the next chunk is filtered against. */
+    private byte[] getLastRow() {
+      return Arrays.copyOfRange(raw, (rows - 1) * stride, rows * stride);
+    }
+
+    /* Returns the end of the filtered data of the chunk, which the next chunk may refer back to. */
+    private byte[] getTail() {
+      int length = rows * (stride + 1);
+      return Arrays.copyOfRange(filtered, Math.max(0, length - WINDOW_SIZE), length);
+    }
+
+    /* Filters every row with the filter type that gives the smallest sum of absolute differences,
+     which is the heuristic suggested by the PNG specification. */
+    private void filter(byte[] previousRow) {
+      long[] costs = new long[5];
+      for (int r = 0; r < rows; r++) {
+        int rowStart = r * stride;
+        int priorStart = rowStart - stride;
+        byte[] prior = r == 0 ? previousRow : raw;
+        if (r == 0) {
+          priorStart = 0;
+        }
+        Arrays.fill(costs, 0);
+        for (int i = 0; i < stride; i++) {
+          int x = raw[rowStart + i] & 0xff;
+          int a = i >= 3 ? raw[rowStart + i - 3] & 0xff : 0;
+          int b = prior[priorStart + i] & 0xff;
+          int c = i >= 3 ? prior[priorStart + i - 3] & 0xff : 0;
+          costs[0] += Math.abs((byte) x);
+          costs[1] += Math.abs((byte) (x - a));
+          costs[2] += Math.abs((byte) (x - b));
+          costs[3] += Math.abs((byte) (x - ((a + b) >> 1)));
+          costs[4] += Math.abs((byte) (x - paeth(a, b, c)));
+        }
+        int type = 0;
+        for (int t = 1; t < 5; t++) {
+          if (costs[t] < costs[type]) {
+            type = t;
+          }
+        }
+        int out = r * (stride + 1);
+        filtered[out++] = (byte) type;
+        for (int i = 0; i < stride; i++) {
+          int x = raw[rowStart + i] & 0xff;
+          int a = i >= 3 ? raw[rowStart + i - 3] & 0xff : 0;
+          int b = prior[priorStart + i] & 0xff;
+          int c = i >= 3 ? prior[priorStart + i - 3] & 0xff : 0;
+          int predictor;
+          switch (type) {
+            case 1:
+              predictor = a;
+              break;
+            case 2:
+              predictor = b;
+              break;
+            case 3:
+              predictor = (a + b) >> 1;
+              break;
+            case 4:
+              predictor = paeth(a, b, c);
+              break;
+            default:
+              predictor = 0;
+          }
+          filtered[out + i] = (byte) (x - predictor);
+        }
+      }
+    }
+
+    /* Deflates the filtered rows as a continuation of the stream whose end is the dictionary. */
+    private void deflate(byte[] dictionary) {
+      deflater.reset();
+      if (dictionary.length > 0) {
+        deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(filtered, 0, rows * (stride + 1));
+      compressedLength = 0;
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          growIfFull();
+          compressedLength += deflater.deflate(compressed, compressedLength,
+              compressed.length - compressedLength);
+        }
+      } else {
+        int count;
+        do {
+          growIfFull();
+          count = deflater.deflate(compressed, compressedLength,
+              compressed.length - compressedLength, Deflater.SYNC_FLUSH);
+          compressedLength += count;
+        } while (compressedLength == compressed.length || !deflater.needsInput());
+      }
+    }
+
+    private void growIfFull() {
+      if (compressedLength == compressed.length) {
+        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+      }
+    }
+
+    private static int paeth(int a, int b, int c) {
+      int p = a + b - c;
+      int pa = Math.abs(p - a);
+      int pb = Math.abs(p - b);
+      int pc = Math.abs(p - c);
+      if (pa <= pb && pa <= pc) {
+        return a;
+      }
+      return pb <= pc ? b : c;
+    }
+  }
+}
@@ -1,98 +1,198 @@
 package ime.controller;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import ime.model.ImageRowSource;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
 
 /**
- * This file handler supports loading and saving of RGB files in PPM formats.
+ * This file handler supports loading and saving of RGB files in PPM formats. Files in any of the
+ * plain (P3, P2) or binary (P6, P5) variants can be loaded, greyscale ones being loaded with equal
+ * red, green and blue values, while images are saved in the variant the handler was created for,
+ * or in its binary counterpart when the save options ask for binary output.
  */
 public class PpmFileHandler implements FileHandler {
 
-  @Override
-  public float[][][] loadImage(String filename) throws FileNotFoundException {
+  private static final int CHUNK_SIZE = 1 << 16;
+
+  private final PpmFormat saveFormat;
 
-    Scanner sc = this.getScanner(filename);
-    String token;
+  /**
+   * Constructs a handler that saves images as plain RGB (P3) files.
+   */
+  public PpmFileHandler() {
+    this(PpmFormat.P3);
+  }
+
+  /**
+   * Constructs a handler that saves images in the given variant of the PPM format. Images saved in
+   * a greyscale variant store the luma of every pixel.
+   *
+   * @param saveFormat the variant used for saving images
+   */
+  public PpmFileHandler(PpmFormat saveFormat) {
+    this.saveFormat = saveFormat;
+  }
 
-    token = sc.next();
-    if (!token.equals("P3")) {
-      System.out.println("Invalid PPM file: plain RAW file should begin with P3");
+  @Override
+  public float[][][] loadImage(String filename) throws IOException {
+    try (ImageRowSource source = openImage(filename)) {
+      return ArrayImageRowSource.readAll(source);
     }
-    int width = sc.nextInt();
-    System.out.println("Width of image: " + width);
-    int height = sc.nextInt();
-    System.out.println("Height of image: " + height);
-    int maxValue = sc.nextInt();
-    System.out.println("Maximum value of a color in this file (usually 255): " + maxValue);
-    float[][][] pixelValues = new float[height][width][3];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        pixelValues[i][j][0] = sc.nextInt();
-        pixelValues[i][j][1] = sc.nextInt();
-        pixelValues[i][j][2] = sc.nextInt();
+  }
+
+  /* The header is tokenized straight from the file. The pixel data of plain files is then parsed
+   a row at a time as it is read, while that of binary files is memory-mapped and decoded from the
+   mapping. Samples of files whose maximum value is above 255 (16-bit files) are scaled down to the
+   0-255 range. */
+  @Override
+  public ImageRowSource openImage(String filename) throws IOException {
+    FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    try {
+      PpmTokenizer tokenizer = new PpmTokenizer(channel);
+      PpmHeader header = PpmHeader.read(tokenizer);
+      if (header.format.isBinary()) {
+        return new MappedPpmImageSource(channel, header, tokenizer.getPosition());
       }
+      return new PlainPpmImageSource(tokenizer, header);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /* Only the header tokens are read, through a tokenizer that reads the file a buffer at a time. */
+  @Override
+  public ImageInfo probeImage(String filename) throws IOException {
+    try (PpmTokenizer tokenizer = new PpmTokenizer(
+        FileChannel.open(Paths.get(filename), StandardOpenOption.READ))) {
+      PpmHeader header = PpmHeader.read(tokenizer);
+      return new ImageInfo(header.format.name(), header.width, header.height,
+          header.format.getChannelCount());
     }
-    return pixelValues;
   }
 
   @Override
   public void saveImage(float[][][] image, String filename) throws IOException {
-    StringBuilder builder = new StringBuilder();
-    builder.append("P3").append(System.lineSeparator());
-    builder.append(image[0].length).append(" ").append(image.length).append(System.lineSeparator());
-    builder.append(findMaxValue(image)).append(System.lineSeparator());
-    for (int i = 0; i < image.length; i++) {
-      for (int j = 0; j < image[0].length; j++) {
-        float[] channelValues = image[i][j];
-        for (int k = 0; k < image[i][j].length; k++) {
-          builder.append((int) channelValues[k]).append(" ");
+    writeImage(new ArrayImageRowSource(image), filename, saveFormat);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename) throws IOException {
+    writeImage(source, filename, saveFormat);
+  }
+
+  @Override
+  public void saveImage(ImageRowSource source, String filename, SaveOptions options)
+      throws IOException {
+    writeImage(source, filename, options.isBinary() ? saveFormat.toBinary() : saveFormat);
+  }
+
+  /* Rows are read into a fixed set of reusable chunks, one per processor, which are formatted in
+   parallel and then written to the file in order, so memory use does not grow with the size of the
+   image. Files are always saved with a maximum value of 255. */
+  private void writeImage(ImageRowSource source, String filename, PpmFormat format)
+      throws IOException {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    byte[] lineSeparator = (format.isBinary() ? "\n" : System.lineSeparator())
+        .getBytes(StandardCharsets.US_ASCII);
+    int rowCapacity = format.isBinary() ? width * format.getChannelCount()
+        : width * (format.getChannelCount() * 4 + 1) + lineSeparator.length;
+    int rowsPerChunk = Math.max(1, CHUNK_SIZE / Math.max(1, rowCapacity));
+    int chunkCount = Runtime.getRuntime().availableProcessors();
+    float[][] chunkValues = new float[chunkCount][rowsPerChunk * width * 3];
+    byte[][] chunkBytes = new byte[chunkCount][rowsPerChunk * rowCapacity];
+    int[] chunkRows = new int[chunkCount];
+    int[] chunkLengths = new int[chunkCount];
+    float[] rowValues = new float[width * 3];
+    String separator = new String(lineSeparator, StandardCharsets.US_ASCII);
+    String header = format.name() + separator + width + " " + height + separator + "255"
+        + separator;
+
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+      int row = 0;
+      while (row < height) {
+        int chunks = 0;
+        while (chunks < chunkCount && row < height) {
+          chunkRows[chunks] = Math.min(rowsPerChunk, height - row);
+          for (int r = 0; r < chunkRows[chunks]; r++) {
+            source.readRow(rowValues);
+            System.arraycopy(rowValues, 0, chunkValues[chunks], r * width * 3, width * 3);
+          }
+          row += chunkRows[chunks];
+          chunks++;
+        }
+        IntStream.range(0, chunks).parallel().forEach(c -> chunkLengths[c] =
+            formatRows(format, chunkValues[c], chunkRows[c], width, lineSeparator,
+                chunkBytes[c]));
+        for (int c = 0; c < chunks; c++) {
+          writeFully(channel, ByteBuffer.wrap(chunkBytes[c], 0, chunkLengths[c]));
         }
-        builder.append(" ");
       }
-      builder.append(System.lineSeparator());
     }
-    FileOutputStream fos = new FileOutputStream(filename);
-    fos.write(builder.toString().getBytes());
-    fos.close();
-
   }
 
-  private int findMaxValue(float[][][] image) {
-    int max = 0;
-    for (int i = 0; i < image.length; i++) {
-      for (int j = 0; j < image[0].length; j++) {
-
-        int red = (int) image[i][j][0];
-        int green = (int) image[i][j][1];
-        int blue = (int) image[i][j][2];
-        int pixelValue = Math.max(Math.max(red, green), blue);
-        if (pixelValue == 255) {
-          return pixelValue;
-        } else if (pixelValue > max) {
-          max = pixelValue;
+  /* Formats the given rows of values into the given bytes, returning the number of bytes used. */
+  private int formatRows(PpmFormat format, float[] values, int rows, int width,
+      byte[] lineSeparator, byte[] bytes) {
+    int channelCount = format.getChannelCount();
+    boolean binary = format.isBinary();
+    int position = 0;
+    for (int r = 0; r < rows; r++) {
+      for (int j = 0; j < width; j++) {
+        int index = (r * width + j) * 3;
+        for (int k = 0; k < channelCount; k++) {
+          int sample = toSample(channelCount == 1 ? getLuma(values, index) : values[index + k]);
+          if (binary) {
+            bytes[position++] = (byte) sample;
+          } else {
+            position = putPlainSample(bytes, position, sample);
+          }
+        }
+        if (!binary) {
+          bytes[position++] = ' ';
+        }
+      }
+      if (!binary) {
+        for (byte b : lineSeparator) {
+          bytes[position++] = b;
         }
       }
     }
-    return max;
+    return position;
   }
 
-  private Scanner getScanner(String filename) throws FileNotFoundException {
-    Scanner sc = new Scanner(new FileInputStream(filename));
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
-      }
+  /* Writes the decimal digits of a sample between 0 and 255 followed by a space. */
+  private int putPlainSample(byte[] bytes, int position, int sample) {
+    if (sample >= 100) {
+      bytes[position++] = (byte) ('0' + sample / 100);
+    }
+    if (sample >= 10) {
+      bytes[position++] = (byte) ('0' + sample / 10 % 10);
     }
+    bytes[position++] = (byte) ('0' + sample % 10);
+    bytes[position++] = ' ';
+    return position;
+  }
+
+  private void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private int toSample(float value) {
+    return Math.max(0, Math.min(255, (int) value));
+  }
 
-    //now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-    return sc;
+  private float getLuma(float[] values, int index) {
+    return 0.2126f * values[index] + 0.7152f * values[index + 1] + 0.0722f * values[index + 2];
   }
 }
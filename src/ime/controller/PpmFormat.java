@@ -0,0 +1,62 @@
+package ime.controller;
+
+import java.io.IOException;
+
+/**
+ * This enum enumerates the variants of the PPM family of formats that the {@link PpmFileHandler}
+ * supports, identified by the magic number that the files begin with.
+ */
+public enum PpmFormat {
+  P2(1, false), P3(3, false), P5(1, true), P6(3, true);
+
+  private final int channelCount;
+  private final boolean binary;
+
+  PpmFormat(int channelCount, boolean binary) {
+    this.channelCount = channelCount;
+    this.binary = binary;
+  }
+
+  /**
+   * Returns the number of samples that each pixel has in this format.
+   *
+   * @return 3 for RGB formats, 1 for greyscale formats
+   */
+  public int getChannelCount() {
+    return channelCount;
+  }
+
+  /**
+   * Returns whether the pixel data of this format is stored as raw bytes rather than as text.
+   *
+   * @return true for the binary formats
+   */
+  public boolean isBinary() {
+    return binary;
+  }
+
+  /**
+   * Returns the binary variant of this format, which stores the same samples as raw bytes.
+   *
+   * @return P6 for RGB formats, P5 for greyscale formats
+   */
+  public PpmFormat toBinary() {
+    return channelCount == 1 ? P5 : P6;
+  }
+
+  /**
+   * Returns the format that files beginning with the given magic number are in.
+   *
+   * @param magic the magic number, such as P6
+   * @return the format of the file
+   * @throws IOException if the magic number is not one of a supported format
+   */
+  static PpmFormat fromMagic(String magic) throws IOException {
+    for (PpmFormat format : values()) {
+      if (format.name().equals(magic)) {
+        return format;
+      }
+    }
+    throw new IOException("Invalid PPM file: should begin with P2, P3, P5 or P6");
+  }
+}
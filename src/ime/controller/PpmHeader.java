@@ -0,0 +1,74 @@
+package ime.controller;
+
+import java.io.IOException;
+
+/**
+ * This package-private class holds the header of a PPM file: its format, its dimensions and the
+ * maximum value of its samples.
+ */
+final class PpmHeader {
+
+  final PpmFormat format;
+  final int width;
+  final int height;
+  final int maxValue;
+
+  private PpmHeader(PpmFormat format, int width, int height, int maxValue) {
+    this.format = format;
+    this.width = width;
+    this.height = height;
+    this.maxValue = maxValue;
+  }
+
+  /**
+   * Reads the header from the beginning of a PPM file. The tokenizer is left right before the first
+   * sample of the file.
+   *
+   * @param tokenizer the tokenizer of the file
+   * @return the header that was read
+   * @throws IOException if the header is malformed
+   */
+  static PpmHeader read(PpmTokenizer tokenizer) throws IOException {
+    PpmFormat format = PpmFormat.fromMagic(tokenizer.nextMagic());
+    int width = tokenizer.nextInt();
+    int height = tokenizer.nextInt();
+    int maxValue = tokenizer.nextInt();
+    if (maxValue < 1 || maxValue > 65535) {
+      throw new IOException("Invalid PPM file: maximum value should be between 1 and 65535");
+    }
+    return new PpmHeader(format, width, height, maxValue);
+  }
+
+  /**
+   * Returns whether each binary sample takes two bytes rather than one.
+   *
+   * @return true if the maximum value is above 255
+   */
+  boolean isWide() {
+    return maxValue > 255;
+  }
+
+  /**
+   * Returns the factor that samples are multiplied by to bring them to the 0-255 range. Only files
+   * whose maximum value is above 255 are scaled.
+   *
+   * @return the scale of the samples
+   */
+  float getScale() {
+    return isWide() ? 255f / maxValue : 1;
+  }
+
+  /**
+   * Copies the first sample of every pixel of a greyscale row into its green and blue values.
+   *
+   * @param rowValues the values of the row, three per pixel
+   */
+  void fillGreyChannels(float[] rowValues) {
+    if (format.getChannelCount() == 1) {
+      for (int j = 0; j < width; j++) {
+        rowValues[3 * j + 1] = rowValues[3 * j];
+        rowValues[3 * j + 2] = rowValues[3 * j];
+      }
+    }
+  }
+}
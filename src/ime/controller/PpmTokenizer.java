@@ -0,0 +1,132 @@
+package ime.controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This package-private class reads the tokens of a PPM file straight from a channel through a fixed
+ * size buffer. Whitespace and comments (from a '#' to the end of the line) are skipped wherever
+ * they appear, and numbers are parsed byte by byte without creating any intermediate strings.
+ */
+class PpmTokenizer implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private long bytesRead;
+
+  /**
+   * Constructs a tokenizer that reads from the given channel.
+   *
+   * @param channel the channel to read the PPM data from
+   */
+  PpmTokenizer(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.buffer.flip();
+  }
+
+  /**
+   * Reads the two character magic number that a PPM file starts with, such as P3.
+   *
+   * @return the magic number
+   * @throws IOException if the file ends before the magic number
+   */
+  String nextMagic() throws IOException {
+    int first = skipWhitespaceAndComments();
+    int second = read();
+    if (first == -1 || second == -1) {
+      throw new IOException("Invalid PPM file: magic number expected");
+    }
+    return new String(new char[]{(char) first, (char) second});
+  }
+
+  /**
+   * Reads the next non-negative decimal number. The single whitespace character that ends the
+   * number is consumed along with it.
+   *
+   * @return the number that was read
+   * @throws IOException if the next token is not a number or the file ends before it
+   */
+  int nextInt() throws IOException {
+    int c = skipWhitespaceAndComments();
+    if (!isDigit(c)) {
+      throw new IOException("Invalid PPM file: number expected");
+    }
+    int value = 0;
+    while (isDigit(c)) {
+      if (value > (Integer.MAX_VALUE - 9) / 10) {
+        throw new IOException("Invalid PPM file: number too large");
+      }
+      value = value * 10 + (c - '0');
+      c = read();
+    }
+    if (c == '#') {
+      skipLine();
+    } else if (c != -1 && !isWhitespace(c)) {
+      throw new IOException("Invalid PPM file: number expected");
+    }
+    return value;
+  }
+
+  /**
+   * Returns the offset from the start of the file of the first byte that has not been consumed,
+   * which right after the header of a binary PPM file is where its pixel data begins.
+   *
+   * @return the number of bytes consumed so far
+   */
+  long getPosition() {
+    return bytesRead - buffer.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private int skipWhitespaceAndComments() throws IOException {
+    int c = read();
+    while (c == '#' || isWhitespace(c)) {
+      if (c == '#') {
+        skipLine();
+      }
+      c = read();
+    }
+    return c;
+  }
+
+  private void skipLine() throws IOException {
+    int c = read();
+    while (c != '\n' && c != '\r' && c != -1) {
+      c = read();
+    }
+  }
+
+  /* Returns the next byte as an unsigned value, or -1 once the channel is exhausted. */
+  private int read() throws IOException {
+    if (!buffer.hasRemaining()) {
+      buffer.clear();
+      int count = 0;
+      while (count == 0) {
+        count = channel.read(buffer);
+      }
+      buffer.flip();
+      if (count < 0) {
+        return -1;
+      }
+      bytesRead += count;
+    }
+    return buffer.get() & 0xff;
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0b;
+  }
+}
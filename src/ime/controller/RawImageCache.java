@@ -0,0 +1,308 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * This class keeps decoded images in a cache directory in a raw format, so that an image that is
+ * loaded again is read straight from a memory-mapped file instead of being decoded. A cache file
+ * has a header holding the path, size and modification time of the file it was decoded from, which
+ * are checked on every load so that a changed file is decoded again, followed by the red, green and
+ * blue planes of the image with one byte per sample. The total size of the cache files is kept
+ * under a bound by deleting the least recently used ones.
+ */
+public class RawImageCache {
+
+  private static final byte[] MAGIC = "IMERAW01".getBytes(StandardCharsets.US_ASCII);
+  private static final String SUFFIX = ".raw";
+
+  private final Path directory;
+  private final long maxBytes;
+
+  /**
+   * Constructs a cache that keeps its files in the given directory.
+   *
+   * @param directory the directory of the cache files, which is created if it does not exist
+   * @param maxBytes  the most bytes that the cache files may take up together
+   * @throws IOException if the directory could not be created
+   */
+  public RawImageCache(Path directory, long maxBytes) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Opens the cached image decoded from the given file, if there is one that is up to date.
+   *
+   * @param filename the path of the file the image was decoded from
+   * @return a source of the rows of the cached image, or null if it is not cached
+   * @throws IOException if the file could not be read
+   */
+  public ImageRowSource open(String filename) throws IOException {
+    Path source = Paths.get(filename).toAbsolutePath().normalize();
+    Path entry = getEntryPath(source);
+    if (!Files.exists(entry)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+      byte[] expected = createHeader(source, 0, 0);
+      ByteBuffer header = ByteBuffer.allocate(expected.length);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // keep reading until the header is complete or the file ends
+      }
+      header.flip();
+      if (header.remaining() < expected.length || !matches(header, expected)) {
+        return null;
+      }
+      int width = header.getInt(expected.length - 8);
+      int height = header.getInt(expected.length - 4);
+      long planeSize = (long) width * height;
+      if (channel.size() != expected.length + 3 * planeSize) {
+        return null;
+      }
+      MappedByteBuffer planes = channel.map(FileChannel.MapMode.READ_ONLY, expected.length,
+          3 * planeSize);
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return new MappedRawImageSource(planes, width, height);
+    }
+  }
+
+  /**
+   * Wraps the source of an image being decoded from the given file, so that the rows are written to
+   * the cache as they are read. The cache file is only kept if every row has been read by the time
+   * the returned source is closed. Images too large for a single mapping are not cached.
+   *
+   * @param filename the path of the file the image is decoded from
+   * @param decoded  the source of the rows of the decoded image
+   * @return a source of the same rows
+   * @throws IOException if the file could not be read or the cache file could not be created, in
+   *                     which case nothing is left behind in the cache directory
+   */
+  public ImageRowSource store(String filename, ImageRowSource decoded) throws IOException {
+    Path source = Paths.get(filename).toAbsolutePath().normalize();
+    byte[] header = createHeader(source, decoded.getWidth(), decoded.getHeight());
+    if (header.length + 3L * decoded.getWidth() * decoded.getHeight() > Integer.MAX_VALUE) {
+      return decoded;
+    }
+    Path entry = getEntryPath(source);
+    Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+      writeFully(channel, ByteBuffer.wrap(header), 0);
+      return new StoringImageSource(decoded, channel, header.length, temporary, entry);
+    } catch (IOException e) {
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+        Files.deleteIfExists(temporary);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /* Returns the cache file of the given source file, named after a hash of its path. */
+  private Path getEntryPath(Path source) {
+    String key = UUID.nameUUIDFromBytes(source.toString().getBytes(StandardCharsets.UTF_8))
+        .toString();
+    return directory.resolve(key + SUFFIX);
+  }
+
+  /* The header holds the magic number, the size and modification time of the source file, its
+   path, and the width and height of the image. */
+  private static byte[] createHeader(Path source, int width, int height) throws IOException {
+    byte[] path = source.toString().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 20 + path.length + 8);
+    header.put(MAGIC).putLong(Files.size(source))
+        .putLong(Files.getLastModifiedTime(source).toMillis()).putInt(path.length).put(path)
+        .putInt(width).putInt(height);
+    return header.array();
+  }
+
+  /* Compares a header with the expected one, apart from the width and height at its end. */
+  private static boolean matches(ByteBuffer header, byte[] expected) {
+    for (int i = 0; i < expected.length - 8; i++) {
+      if (header.get(i) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Deletes the least recently used cache files until the rest fit within the bound. */
+  private void evict() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(file -> file.toString().endsWith(SUFFIX)).forEach(entries::add);
+    }
+    entries.sort(Comparator.comparing(RawImageCache::lastModified).reversed());
+    long total = 0;
+    for (Path entry : entries) {
+      total += Files.size(entry);
+      if (total > maxBytes) {
+        Files.deleteIfExists(entry);
+      }
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Supplies the rows of a cached image from its memory-mapped planes.
+   */
+  private static final class MappedRawImageSource implements ImageRowSource {
+
+    private final MappedByteBuffer planes;
+    private final int width;
+    private final int height;
+    private int nextRow;
+
+    private MappedRawImageSource(MappedByteBuffer planes, int width, int height) {
+      this.planes = planes;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+
+    @Override
+    public int getHeight() {
+      return height;
+    }
+
+    @Override
+    public void readRow(float[] rowValues) throws IOException {
+      if (nextRow >= height) {
+        throw new IOException("No more rows in the cached image");
+      }
+      int planeSize = width * height;
+      int start = nextRow++ * width;
+      for (int k = 0; k < 3; k++) {
+        int offset = k * planeSize + start;
+        for (int j = 0; j < width; j++) {
+          rowValues[3 * j + k] = planes.get(offset + j) & 0xff;
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      // the mapping is released once the buffer is no longer referenced
+    }
+  }
+
+  /**
+   * Supplies the rows of an image being decoded while writing them into the planes of a new cache
+   * file. The file is moved into place once every row has been read, and deleted otherwise. Writing
+   * the cache never fails a load: the cache file is just dropped.
+   */
+  private final class StoringImageSource implements ImageRowSource {
+
+    private final ImageRowSource decoded;
+    private final FileChannel channel;
+    private final int headerLength;
+    private final Path temporary;
+    private final Path entry;
+    private final byte[] planeRow;
+    private int nextRow;
+    private boolean failed;
+
+    private StoringImageSource(ImageRowSource decoded, FileChannel channel, int headerLength,
+        Path temporary, Path entry) {
+      this.decoded = decoded;
+      this.channel = channel;
+      this.headerLength = headerLength;
+      this.temporary = temporary;
+      this.entry = entry;
+      this.planeRow = new byte[decoded.getWidth()];
+    }
+
+    @Override
+    public int getWidth() {
+      return decoded.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return decoded.getHeight();
+    }
+
+    @Override
+    public void readRow(float[] rowValues) throws IOException {
+      decoded.readRow(rowValues);
+      int width = getWidth();
+      long planeSize = (long) width * getHeight();
+      if (!failed) {
+        try {
+          for (int k = 0; k < 3; k++) {
+            for (int j = 0; j < width; j++) {
+              planeRow[j] = (byte) Math.max(0, Math.min(255, (int) rowValues[3 * j + k]));
+            }
+            writeFully(channel, ByteBuffer.wrap(planeRow),
+                headerLength + k * planeSize + (long) nextRow * width);
+          }
+        } catch (IOException e) {
+          failed = true;
+        }
+      }
+      nextRow++;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        decoded.close();
+      } finally {
+        closeEntry();
+      }
+    }
+
+    private void closeEntry() {
+      try {
+        channel.close();
+        if (!failed && nextRow == getHeight()) {
+          Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+          evict();
+        } else {
+          Files.deleteIfExists(temporary);
+        }
+      } catch (IOException e) {
+        // the image is simply not cached
+      }
+    }
+  }
+}
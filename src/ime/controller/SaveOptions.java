@@ -0,0 +1,102 @@
+package ime.controller;
+
+/**
+ * This class holds the encoder settings that an image is saved with: the quality of lossy formats
+ * such as JPG, the compression level of PNG and whether PPM and PGM files are saved in their binary
+ * variant. Settings that are not given are left to the
+ * defaults of the encoder, and settings that do not apply to the format being saved are ignored.
+ */
+public final class SaveOptions {
+
+  /**
+   * Options that leave every setting to the defaults of the encoder.
+   */
+  public static final SaveOptions DEFAULT = new SaveOptions(-1, -1);
+
+  private final int quality;
+  private final int compressionLevel;
+  private final boolean binary;
+
+  /**
+   * Constructs the options for saving an image, with PPM and PGM files saved in their plain
+   * variant.
+   *
+   * @param quality          the quality of lossy formats, from 0 (smallest file) to 100 (best
+   *                         quality), or -1 for the default of the encoder
+   * @param compressionLevel the deflate level of PNG files, from 0 (fastest) to 9 (smallest file),
+   *                         or -1 for the default of the encoder
+   * @throws IllegalArgumentException if a setting is out of its range
+   */
+  public SaveOptions(int quality, int compressionLevel) throws IllegalArgumentException {
+    this(quality, compressionLevel, false);
+  }
+
+  /**
+   * Constructs the options for saving an image.
+   *
+   * @param quality          the quality of lossy formats, from 0 (smallest file) to 100 (best
+   *                         quality), or -1 for the default of the encoder
+   * @param compressionLevel the deflate level of PNG files, from 0 (fastest) to 9 (smallest file),
+   *                         or -1 for the default of the encoder
+   * @param binary           true to save PPM and PGM files in their binary (P6, P5) variant rather
+   *                         than their plain (P3, P2) one
+   * @throws IllegalArgumentException if a setting is out of its range
+   */
+  public SaveOptions(int quality, int compressionLevel, boolean binary)
+      throws IllegalArgumentException {
+    if (quality < -1 || quality > 100) {
+      throw new IllegalArgumentException("Quality should be between 0 and 100");
+    }
+    if (compressionLevel < -1 || compressionLevel > 9) {
+      throw new IllegalArgumentException("Compression level should be between 0 and 9");
+    }
+    this.quality = quality;
+    this.compressionLevel = compressionLevel;
+    this.binary = binary;
+  }
+
+  /**
+   * Returns whether a quality was given for lossy formats.
+   *
+   * @return true if the quality is not left to the encoder
+   */
+  public boolean hasQuality() {
+    return quality != -1;
+  }
+
+  /**
+   * Returns the quality of lossy formats.
+   *
+   * @return the quality from 0 to 100, or -1 if it is left to the encoder
+   */
+  public int getQuality() {
+    return quality;
+  }
+
+  /**
+   * Returns whether a compression level was given for PNG files.
+   *
+   * @return true if the compression level is not left to the encoder
+   */
+  public boolean hasCompressionLevel() {
+    return compressionLevel != -1;
+  }
+
+  /**
+   * Returns the deflate level of PNG files.
+   *
+   * @return the level from 0 to 9, or -1 if it is left to the encoder
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Returns whether PPM and PGM files are saved in their binary variant.
+   *
+   * @return true for the binary (P6, P5) variant, false for the plain (P3, P2) one
+   */
+  public boolean isBinary() {
+    return binary;
+  }
+}
@@ -0,0 +1,201 @@
+package ime.controller;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class encodes and writes saved images on a bounded pool of background threads, so that a
+ * script can carry on with its next command while an image is being saved. The failure of a save
+ * can be awaited as soon as it is submitted, and the saves whose failures were not awaited are
+ * reported in the order they were submitted when the queue is flushed. When the pool and its queue
+ * are full, a save runs on the thread submitting it, which keeps the number of pending saves
+ * bounded. Saves may be submitted and waited for from several threads. Paths that name the same
+ * file, such as a relative and an absolute one, are taken to be the same path.
+ */
+public class SaveQueue implements Closeable {
+
+  private final ThreadPoolExecutor executor;
+  private final List<PendingSave> pendingSaves;
+  private final Map<Path, Future<?>> latestSaves;
+
+  /**
+   * Constructs a queue whose saves are run by the given number of background threads.
+   *
+   * @param workers the number of saves that may run at the same time
+   */
+  public SaveQueue(int workers) {
+    executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(workers * 2), runnable -> {
+          Thread thread = new Thread(runnable, "image-saver");
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    pendingSaves = new ArrayList<>();
+    latestSaves = new HashMap<>();
+  }
+
+  /**
+   * Submits a save of an image to the given path. A save to a path that an earlier save is still
+   * writing to waits for that save first, so that the file ends up with the latest image.
+   *
+   * @param path the path that the image is saved to
+   * @param save the save to be run, which throws an exception if the image could not be saved
+   */
+  public void submit(String path, Callable<Void> save) {
+    waitFor(path);
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        save.call();
+        future.complete(null);
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    synchronized (this) {
+      pendingSaves.add(new PendingSave(path, future));
+      latestSaves.put(toKey(path), future);
+    }
+  }
+
+  /**
+   * Returns the outcome of the latest save submitted to the given path whose failure has not been
+   * awaited yet. The failure of that save is then no longer reported by {@link #flush()}.
+   *
+   * @param path the path of the file
+   * @return the message of the failure of the save, or null once it has succeeded or if there is
+   *         no such save
+   */
+  public CompletableFuture<String> whenSaved(String path) {
+    Path key = toKey(path);
+    PendingSave latest = null;
+    synchronized (this) {
+      for (int i = pendingSaves.size() - 1; i >= 0 && latest == null; i--) {
+        if (pendingSaves.get(i).key.equals(key)) {
+          latest = pendingSaves.get(i);
+        }
+      }
+      if (latest == null || latest.reported) {
+        return CompletableFuture.completedFuture(null);
+      }
+      latest.reported = true;
+    }
+    String savePath = latest.path;
+    return latest.future.handle((ignored, failure) -> failure == null ? null
+        : getFailureMessage(savePath, failure instanceof CompletionException
+            ? failure.getCause() : failure));
+  }
+
+  /**
+   * Waits until every save submitted to the given path has been written, so that the file can be
+   * read. Failures are left to be reported by {@link #flush()}.
+   *
+   * @param path the path of the file
+   */
+  public void waitFor(String path) {
+    Path key = toKey(path);
+    Future<?> future;
+    synchronized (this) {
+      future = latestSaves.get(key);
+    }
+    if (future != null) {
+      await(future);
+      synchronized (this) {
+        // a later save to the path may have been submitted meanwhile, and is kept to be waited for
+        latestSaves.remove(key, future);
+      }
+    }
+  }
+
+  /**
+   * Waits for every save submitted so far to complete, and returns a message for each one that
+   * failed and whose failure was not awaited, in the order the saves were submitted.
+   *
+   * @return the messages of the failed saves, empty if every save succeeded
+   */
+  public List<String> flush() {
+    List<PendingSave> saves = new ArrayList<>();
+    synchronized (this) {
+      for (PendingSave pendingSave : pendingSaves) {
+        if (!pendingSave.reported) {
+          saves.add(pendingSave);
+        }
+      }
+      pendingSaves.clear();
+      latestSaves.clear();
+    }
+    List<String> errors = new ArrayList<>();
+    for (PendingSave pendingSave : saves) {
+      Throwable failure = await(pendingSave.future);
+      if (failure != null) {
+        errors.add(getFailureMessage(pendingSave.path, failure));
+      }
+    }
+    return errors;
+  }
+
+  private static String getFailureMessage(String path, Throwable failure) {
+    return "Could not save " + path + ": " + failure.getMessage();
+  }
+
+  /**
+   * Stops the background threads once the saves that were submitted have been run.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /* Returns the absolute and normalized path that saves to the given path are tracked under. */
+  private static Path toKey(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+  /* Waits for the given save, returning why it failed or null if it succeeded. */
+  private static Throwable await(Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return null;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          return e.getCause();
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static final class PendingSave {
+
+    private final String path;
+    private final Path key;
+    private final CompletableFuture<Void> future;
+    private boolean reported;
+
+    private PendingSave(String path, CompletableFuture<Void> future) {
+      this.path = path;
+      this.key = toKey(path);
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package ime.controller;
+
+import ime.controller.commands.BoundCommand;
+import ime.controller.commands.Command;
+import ime.controller.commands.CommandDependencies;
+import ime.model.ImageRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a script that has been compiled into a list of commands bound to their
+ * tokens. Every line of the script is parsed and validated once, when the plan is compiled, so that
+ * an invalid script fails before any image is touched and a valid one can be run any number of
+ * times against different repositories. Tokens may contain parameters of the form ${name}, which
+ * are replaced by their values every time the plan is run. The commands whose tokens contain
+ * parameters are validated when the plan is compiled with every parameter standing for 1, which
+ * passes as a number, a path or an image name, so that their options and number of tokens are
+ * checked, and are bound again to the values of the parameters on each run. A plan can leave out
+ * the commands whose results are never used, and remove every image from the repository right
+ * after the command that uses it last, both of which are found by a liveness analysis over the
+ * names of the images.
+ */
+public final class ScriptPlan {
+
+  private static final String PARAMETER_START = "${";
+  private static final String PLACEHOLDER = "1";
+
+  private final List<Step> steps;
+
+  private ScriptPlan(List<Step> steps) {
+    this.steps = Collections.unmodifiableList(steps);
+  }
+
+  /**
+   * Compiles the lines of a script into a plan. Empty lines and lines starting with # are skipped,
+   * and the script ends at the first exit command.
+   *
+   * @param lines    the lines of the script
+   * @param commands the commands that the script may use
+   * @return the plan of the script
+   * @throws IllegalArgumentException if a line is not a valid command, with the number of the line
+   *                                  in its message
+   */
+  public static ScriptPlan compile(List<String> lines, Map<CommandEnum, Command> commands)
+      throws IllegalArgumentException {
+    List<Step> steps = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.startsWith("#") || line.isEmpty()) {
+        continue;
+      }
+      String[] tokens = line.split(" ");
+      int lineNumber = i + 1;
+      try {
+        CommandEnum commandEnum = CommandEnum.fromRepresentation(tokens[0]);
+        if (commandEnum == CommandEnum.exit) {
+          break;
+        }
+        Command command = commands.get(commandEnum);
+        if (command == null) {
+          throw new IllegalArgumentException("The " + tokens[0]
+              + " command is not supported in this script");
+        }
+        // a line with parameters is checked with placeholders, and bound to its values on each run
+        BoundCommand boundCommand = null;
+        if (line.contains(PARAMETER_START)) {
+          command.bind(substitute(tokens, PLACEHOLDER));
+        } else {
+          boundCommand = command.bind(tokens);
+        }
+        steps.add(new Step(lineNumber, line, command, tokens, boundCommand,
+            command.getDependencies(tokens), false, Collections.emptyList()));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+    return new ScriptPlan(steps);
+  }
+
+  /**
+   * Returns the number of commands in the plan that are run.
+   *
+   * @return the number of commands run
+   */
+  public int size() {
+    return (int) steps.stream().filter(step -> !step.skipped).count();
+  }
+
+  /**
+   * Returns a plan that skips the commands whose results are never used. Going backwards from the
+   * end of the script, where no image is used any more, an image is live if a later command reads
+   * it before any command puts another image under its name. A command that writes no file and only
+   * images that are not live is skipped, and what it reads is not made live. Commands whose effects
+   * are not known, and those whose image names are parameters, make every image live. Skipped
+   * commands are not run, so they neither display messages nor fail.
+   *
+   * @return the plan without the dead commands
+   */
+  public ScriptPlan withoutDeadResults() {
+    List<Step> liveSteps = new ArrayList<>(steps);
+    Set<String> liveImages = new HashSet<>();
+    boolean allLive = false;
+    for (int i = liveSteps.size() - 1; i >= 0; i--) {
+      Step step = liveSteps.get(i);
+      CommandDependencies dependencies = step.dependencies;
+      if (step.skipped) {
+        continue;
+      }
+      if (dependencies.isBarrier() || hasParameters(dependencies.getImagesRead())
+          || hasParameters(dependencies.getImagesWritten())) {
+        allLive = true;
+        continue;
+      }
+      boolean dead = !allLive && !dependencies.getImagesWritten().isEmpty()
+          && dependencies.getFilesWritten().isEmpty()
+          && dependencies.getImagesWritten().stream().noneMatch(liveImages::contains);
+      if (dead) {
+        liveSteps.set(i, step.skip());
+      } else {
+        liveImages.removeAll(dependencies.getImagesWritten());
+        liveImages.addAll(dependencies.getImagesRead());
+      }
+    }
+    return new ScriptPlan(liveSteps);
+  }
+
+  /**
+   * Returns a plan that removes every image from the repository right after the last command that
+   * uses it, so that a run holds on only to the images that are still to be used. The images read
+   * or written by a command are removed after it unless a later command reads them before another
+   * image is put under their name. Images are never removed before a command whose effects are not
+   * known, or one whose image names are parameters. The repository is left without the images of
+   * the script once the plan has run, apart from those kept for such commands.
+   *
+   * @return the plan removing images after their last use
+   */
+  public ScriptPlan releasingImagesAfterLastUse() {
+    List<Step> releasingSteps = new ArrayList<>(steps);
+    List<Integer> runIndices = new ArrayList<>();
+    List<CommandDependencies> runDependencies = new ArrayList<>();
+    for (int i = 0; i < steps.size(); i++) {
+      if (!steps.get(i).skipped) {
+        runIndices.add(i);
+        runDependencies.add(steps.get(i).dependencies);
+      }
+    }
+    List<List<String>> lastUses = findLastUses(runDependencies);
+    for (int i = 0; i < runIndices.size(); i++) {
+      int index = runIndices.get(i);
+      releasingSteps.set(index, releasingSteps.get(index).release(lastUses.get(i)));
+    }
+    return new ScriptPlan(releasingSteps);
+  }
+
+  /**
+   * Finds the images that can be removed right after each of the given commands, which are run
+   * one after another, as described for {@link #releasingImagesAfterLastUse()}.
+   *
+   * @param commands the dependencies of the commands in the order they are run
+   * @return the images last used by each command, in the same order as the commands
+   */
+  static List<List<String>> findLastUses(List<CommandDependencies> commands) {
+    List<List<String>> lastUses = new ArrayList<>(
+        Collections.nCopies(commands.size(), Collections.emptyList()));
+    Set<String> liveImages = new HashSet<>();
+    for (int i = commands.size() - 1; i >= 0; i--) {
+      CommandDependencies dependencies = commands.get(i);
+      if (dependencies.isBarrier() || hasParameters(dependencies.getImagesRead())
+          || hasParameters(dependencies.getImagesWritten())) {
+        break;
+      }
+      Set<String> released = new LinkedHashSet<>(dependencies.getImagesRead());
+      released.addAll(dependencies.getImagesWritten());
+      released.removeAll(liveImages);
+      lastUses.set(i, new ArrayList<>(released));
+      liveImages.removeAll(dependencies.getImagesWritten());
+      liveImages.addAll(dependencies.getImagesRead());
+    }
+    return lastUses;
+  }
+
+  /**
+   * Describes what a run of the plan does without running it: every command of the script along
+   * with its line, marking the commands that are skipped and the images removed after a command.
+   *
+   * @return a line for every command of the script
+   */
+  public List<String> getReport() {
+    List<String> report = new ArrayList<>();
+    for (Step step : steps) {
+      String description = "Line " + step.lineNumber + ": " + step.line;
+      if (step.skipped) {
+        description += " (skipped, its result is never used)";
+      } else if (!step.releasedImages.isEmpty()) {
+        description += " (then removes " + String.join(", ", step.releasedImages) + ")";
+      }
+      report.add(description);
+    }
+    return report;
+  }
+
+  /**
+   * Runs the commands of the plan one after another against the given repository, stopping at the
+   * first command that fails.
+   *
+   * @param imageRepository the repository that the commands are run against
+   * @param parameters      the values of the parameters in the tokens, by name
+   * @param messages        the consumer of the message of every command that succeeds, which may
+   *                        throw an IllegalArgumentException to fail the command
+   * @throws IllegalArgumentException if a command fails, with the number of its line in the message
+   */
+  public void run(ImageRepository imageRepository, Map<String, String> parameters,
+      Consumer<String> messages) throws IllegalArgumentException {
+    for (Step step : steps) {
+      if (step.skipped) {
+        continue;
+      }
+      try {
+        BoundCommand boundCommand = step.boundCommand;
+        if (boundCommand == null) {
+          boundCommand = step.command.bind(substitute(step.tokens, parameters));
+        }
+        messages.accept(boundCommand.run(imageRepository));
+        step.releasedImages.forEach(imageRepository::removeImage);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + step.lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static boolean hasParameters(List<String> names) {
+    return names.stream().anyMatch(name -> name.contains(PARAMETER_START));
+  }
+
+  private static String[] substitute(String[] tokens, String placeholder) {
+    String[] substituted = tokens.clone();
+    for (int i = 0; i < substituted.length; i++) {
+      substituted[i] = substituted[i].replaceAll("\\$\\{[^}]*}", placeholder);
+    }
+    return substituted;
+  }
+
+  private static String[] substitute(String[] tokens, Map<String, String> parameters) {
+    String[] substituted = tokens.clone();
+    for (int i = 0; i < substituted.length; i++) {
+      if (substituted[i].contains(PARAMETER_START)) {
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+          substituted[i] = substituted[i].replace(PARAMETER_START + parameter.getKey() + "}",
+              parameter.getValue());
+        }
+      }
+    }
+    return substituted;
+  }
+
+  /**
+   * A command of the plan along with its line and tokens, the command bound to them if they contain
+   * no parameters, what it reads and writes, whether it is skipped and the images removed after it.
+   */
+  private static final class Step {
+
+    private final int lineNumber;
+    private final String line;
+    private final Command command;
+    private final String[] tokens;
+    private final BoundCommand boundCommand;
+    private final CommandDependencies dependencies;
+    private final boolean skipped;
+    private final List<String> releasedImages;
+
+    private Step(int lineNumber, String line, Command command, String[] tokens,
+        BoundCommand boundCommand, CommandDependencies dependencies, boolean skipped,
+        List<String> releasedImages) {
+      this.lineNumber = lineNumber;
+      this.line = line;
+      this.command = command;
+      this.tokens = tokens;
+      this.boundCommand = boundCommand;
+      this.dependencies = dependencies;
+      this.skipped = skipped;
+      this.releasedImages = List.copyOf(releasedImages);
+    }
+
+    private Step skip() {
+      return new Step(lineNumber, line, command, tokens, boundCommand, dependencies, true,
+          Collections.emptyList());
+    }
+
+    private Step release(List<String> images) {
+      return new Step(lineNumber, line, command, tokens, boundCommand, dependencies, skipped,
+          images);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package ime.controller;
+
+import ime.controller.commands.CommandDependencies;
+import java.io.Closeable;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This package-private class runs the commands of a script on a pool of threads, running a command
+ * as soon as every earlier command it depends on has finished. A command depends on an earlier one
+ * if it reads an image or file that the earlier one writes, or writes one that the earlier one
+ * reads or writes. The messages of the commands are passed on in the order of the script, so that
+ * a script gives the same results and messages as when its commands are run one after another.
+ */
+class ScriptScheduler implements Closeable {
+
+  /* Every file write also writes this resource, so that saves are submitted in script order and
+   their failures are reported in that order. */
+  private static final String FILE_WRITES = "files";
+
+  private final ExecutorService executor;
+  private final Consumer<String> messageConsumer;
+  private final Map<String, CompletableFuture<?>> lastWriters;
+  private final Map<String, List<CompletableFuture<?>>> readersSinceWrite;
+  private final Deque<CompletableFuture<String>> pendingMessages;
+
+  /**
+   * Constructs a scheduler that runs commands on the given number of threads.
+   *
+   * @param workers         the number of commands that may run at the same time
+   * @param messageConsumer the consumer of the messages of the commands, which is called on the
+   *                        thread that schedules the commands
+   */
+  ScriptScheduler(int workers, Consumer<String> messageConsumer) {
+    this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "script-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.messageConsumer = messageConsumer;
+    this.lastWriters = new HashMap<>();
+    this.readersSinceWrite = new HashMap<>();
+    this.pendingMessages = new ArrayDeque<>();
+  }
+
+  /**
+   * Schedules a command to be run once the earlier commands it depends on have finished.
+   *
+   * @param dependencies the images and files that the command reads and writes
+   * @param command      the command, returning its message or null if it has none
+   */
+  void schedule(CommandDependencies dependencies, Supplier<String> command) {
+    scheduleDeferred(dependencies, () -> CompletableFuture.completedFuture(command.get()));
+  }
+
+  /**
+   * Schedules a command whose message is only known some time after it has finished, such as a
+   * command handing work over to another thread. The commands depending on it wait only for it to
+   * finish, while the messages of the commands after it wait for its message.
+   *
+   * @param dependencies the images and files that the command reads and writes
+   * @param command      the command, returning the future of its message or of null if it has none
+   */
+  void scheduleDeferred(CommandDependencies dependencies,
+      Supplier<CompletableFuture<String>> command) {
+    if (dependencies.isBarrier()) {
+      runAlone(() -> command.get().join());
+      return;
+    }
+    List<String> reads = new ArrayList<>();
+    List<String> writes = new ArrayList<>();
+    dependencies.getImagesRead().forEach(name -> reads.add("image " + name));
+    dependencies.getImagesWritten().forEach(name -> writes.add("image " + name));
+    dependencies.getFilesRead().forEach(path -> reads.add(fileResource(path)));
+    dependencies.getFilesWritten().forEach(path -> writes.add(fileResource(path)));
+    if (!dependencies.getFilesWritten().isEmpty()) {
+      writes.add(FILE_WRITES);
+    }
+
+    List<CompletableFuture<?>> predecessors = new ArrayList<>();
+    for (String resource : reads) {
+      addIfPresent(predecessors, lastWriters.get(resource));
+    }
+    for (String resource : writes) {
+      addIfPresent(predecessors, lastWriters.get(resource));
+      predecessors.addAll(readersSinceWrite.getOrDefault(resource, List.of()));
+    }
+    CompletableFuture<CompletableFuture<String>> future = CompletableFuture
+        .allOf(predecessors.toArray(new CompletableFuture<?>[0]))
+        .thenApplyAsync(ignored -> command.get(), executor);
+    for (String resource : reads) {
+      readersSinceWrite.computeIfAbsent(resource, key -> new ArrayList<>()).add(future);
+    }
+    for (String resource : writes) {
+      lastWriters.put(resource, future);
+      readersSinceWrite.remove(resource);
+    }
+    pendingMessages.add(future.thenCompose(Function.identity()));
+    passOnMessages(false);
+  }
+
+  /**
+   * Waits for every scheduled command to finish, passing on their messages in order.
+   */
+  void finish() {
+    passOnMessages(true);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /* Runs a command on the calling thread once every earlier command has finished. */
+  private void runAlone(Supplier<String> command) {
+    finish();
+    String message = command.get();
+    if (message != null) {
+      messageConsumer.accept(message);
+    }
+  }
+
+  /* Passes on the messages of the commands at the front of the script that have finished, or
+   waits for every command if asked to. */
+  private void passOnMessages(boolean waitForAll) {
+    while (!pendingMessages.isEmpty() && (waitForAll || pendingMessages.peek().isDone())) {
+      String message;
+      try {
+        message = pendingMessages.poll().join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+      if (message != null) {
+        messageConsumer.accept(message);
+      }
+    }
+    if (pendingMessages.isEmpty()) {
+      lastWriters.clear();
+      readersSinceWrite.clear();
+    }
+  }
+
+  private static String fileResource(String path) {
+    return "file " + Paths.get(path).toAbsolutePath().normalize();
+  }
+
+  private static void addIfPresent(List<CompletableFuture<?>> futures,
+      CompletableFuture<?> future) {
+    if (future != null) {
+      futures.add(future);
+    }
+  }
+}
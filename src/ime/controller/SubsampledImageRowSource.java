@@ -0,0 +1,64 @@
+package ime.controller;
+
+import ime.model.ImageRowSource;
+import java.awt.Rectangle;
+import java.io.IOException;
+
+/**
+ * This package-private class supplies the rows of a region of another source, keeping only every
+ * n-th pixel of every n-th row of the region. It is used for file handlers that can not decode a
+ * region or subsample an image themselves, and reads only the rows of the source that it needs.
+ */
+class SubsampledImageRowSource implements ImageRowSource {
+
+  private final ImageRowSource source;
+  private final LoadOptions options;
+  private final Rectangle region;
+  private final float[] sourceRowValues;
+  private int nextSourceRow;
+  private int nextRow;
+
+  /**
+   * Constructs a source for the part of the given source selected by the given options.
+   *
+   * @param source  the source of the whole image
+   * @param options the options selecting the region and subsampling
+   * @throws IllegalArgumentException if the requested region lies outside the image
+   */
+  SubsampledImageRowSource(ImageRowSource source, LoadOptions options)
+      throws IllegalArgumentException {
+    this.source = source;
+    this.options = options;
+    this.region = options.getRegionWithin(source.getWidth(), source.getHeight());
+    this.sourceRowValues = new float[source.getWidth() * 3];
+  }
+
+  @Override
+  public int getWidth() {
+    return options.getSubsampledLength(region.width);
+  }
+
+  @Override
+  public int getHeight() {
+    return options.getSubsampledLength(region.height);
+  }
+
+  @Override
+  public void readRow(float[] rowValues) throws IOException {
+    int targetSourceRow = region.y + nextRow * options.getSubsampling();
+    while (nextSourceRow <= targetSourceRow) {
+      source.readRow(sourceRowValues);
+      nextSourceRow++;
+    }
+    for (int j = 0; j < getWidth(); j++) {
+      int sourceColumn = region.x + j * options.getSubsampling();
+      System.arraycopy(sourceRowValues, 3 * sourceColumn, rowValues, 3 * j, 3);
+    }
+    nextRow++;
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+}
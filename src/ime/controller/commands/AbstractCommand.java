@@ -2,8 +2,10 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.function.BiConsumer;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This abstract class implements the Command interface and provides a common structure for all
@@ -69,6 +71,43 @@ public abstract class AbstractCommand implements Command {
     this.commandEnum = commandEnum;
   }
 
+  /* The command reads the image at the source index and writes the one at the destination index.
+   Tokens too few to run the command touch nothing, since the command just fails. */
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    if (tokens.length < tokensRequired) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(List.of(tokens[srcIndex]), List.of(tokens[destIndex]),
+        Collections.emptyList(), Collections.emptyList());
+  }
+
+  /* Returns the index of the first token after the leading options, each of which is a name
+   starting with -- followed by a value, leaving at least the last token. */
+  protected static int skipOptions(String[] tokens) {
+    int index = 1;
+    while (index < tokens.length - 1 && tokens[index].startsWith("--")) {
+      index += 2;
+    }
+    return index;
+  }
+
+  /* Returns the message of a file that could not be read or written, or throws it if the command
+   should fail on such files rather than report them. */
+  protected static String reportInvalidFile(boolean failOnIoError, IOException cause)
+      throws IllegalArgumentException {
+    if (failOnIoError) {
+      throw new IllegalArgumentException("Invalid file", cause);
+    }
+    return "Invalid file";
+  }
+
+  /* Joins the tokens from the start index up to but excluding the end index with spaces, since
+   paths may contain spaces. */
+  protected static String joinTokens(String[] tokens, int start, int end) {
+    return String.join(" ", Arrays.asList(tokens).subList(start, end));
+  }
+
   /* Checks whether the given number of tokens matches to the tokensRequired for the command. */
   protected boolean validateTokenCount(int tokenCount) {
     return tokensRequired == tokenCount;
@@ -80,16 +119,23 @@ public abstract class AbstractCommand implements Command {
         + tokens[destIndex];
   }
 
-  /* Validate token count, proceed to extract tokens and invoke appropriate method from
-  ImageRepository (if command supports preview operation and the input tokens has valid params
-   for the same, invoke the preview method of ImageRepository.*/
+  /* Binds the tokens and runs the bound command on the given repository. */
   @Override
   public String proceed(String[] tokens, ImageRepository imageRepository) {
-    if (validateTokenCount(tokens.length)) {
-      return extractTokensAndInvokeMethod(tokens, imageRepository);
-    } else if (splitSupport && validateTokenCount(tokens.length - 2)
-        && tokens[tokensRequired].equals("split")) {
-      return extractTokensAndInvokePreview(tokens, imageRepository);
+    return bind(tokens).run(imageRepository);
+  }
+
+  /* Validate token count, proceed to extract tokens and bind the appropriate method from
+  ImageRepository (if command supports preview operation and the input tokens has valid params
+   for the same, bind the preview method of ImageRepository.*/
+  @Override
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
+    String[] boundTokens = tokens.clone();
+    if (validateTokenCount(boundTokens.length)) {
+      return extractTokensAndBindMethod(boundTokens);
+    } else if (splitSupport && validateTokenCount(boundTokens.length - 2)
+        && boundTokens[tokensRequired].equals("split")) {
+      return extractTokensAndBindPreview(boundTokens);
     } else {
       throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
     }
@@ -97,41 +143,48 @@ public abstract class AbstractCommand implements Command {
   }
 
   /**
-   * Extract tokens, get the split percentage and invoke the preview method for the set of src and
+   * Extract tokens, get the split percentage and bind the preview method for the set of src and
    * dest image names. Pass along with it, the operation within the imageRepository that has to be
    * invoked for the given split percentage.
    **/
-  protected String extractTokensAndInvokePreview(String[] tokens, ImageRepository imageRepository) {
+  protected BoundCommand extractTokensAndBindPreview(String[] tokens) {
     String srcImageName = tokens[srcIndex];
     String destImageName = tokens[destIndex];
     int splitPercent = Integer.parseInt(tokens[tokens.length - 1]);
-    imageRepository.preview(srcImageName, destImageName,
-        imageRepositoryMethodInvoker(tokens, imageRepository), splitPercent);
-    return "Successfully Previewed";
+    ImageOperation operation = bindOperation(tokens);
+    return imageRepository -> {
+      imageRepository.preview(srcImageName, destImageName,
+          (src, dest) -> operation.apply(imageRepository, src, dest), splitPercent);
+      return "Successfully Previewed";
+    };
   }
 
   /**
-   * Extract src and destination image names from the tokens and invoke the appropriate method of
-   * image repository provided by the imageRepositoryMethodInvoker for the command.
+   * Extract src and destination image names from the tokens and bind the appropriate method of
+   * image repository provided by the bindOperation for the command.
    **/
-  protected String extractTokensAndInvokeMethod(String[] tokens, ImageRepository imageRepository) {
+  protected BoundCommand extractTokensAndBindMethod(String[] tokens) {
     String srcImageName = tokens[srcIndex];
     String destImageName = tokens[destIndex];
-    imageRepositoryMethodInvoker(tokens, imageRepository).accept(srcImageName, destImageName);
-    return messageSenderHelper(tokens);
+    ImageOperation operation = bindOperation(tokens);
+    String message = messageSenderHelper(tokens);
+    return imageRepository -> {
+      operation.apply(imageRepository, srcImageName, destImageName);
+      return message;
+    };
   }
 
   /**
-   * This method provides the mapper to the method inside imageRepository that this command makes
-   * use of. Any commands that do not require any method invocation of the ImageRepository need not
-   * override it.
+   * This method provides the method inside imageRepository that this command makes use of, with
+   * any arguments of the command parsed from the tokens, so that it can be applied to any
+   * repository. Any commands that do not require any method invocation of the ImageRepository need
+   * not override it.
    *
-   * @param tokens          the tokens received for the command
-   * @param imageRepository the imageRepository to be used for the method invocation
-   * @return a BiConsumer that provides a function expecting two string.
+   * @param tokens the tokens received for the command
+   * @return the operation applying the method to a repository and a pair of image names.
+   * @throws IllegalArgumentException if the arguments in the tokens are invalid
    */
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
+  protected ImageOperation bindOperation(String[] tokens) throws IllegalArgumentException {
     return null;
   }
 
@@ -172,4 +225,20 @@ public abstract class AbstractCommand implements Command {
     }
     return constructCommand(tokens) + " split " + previewPercent;
   }
+
+  /**
+   * An operation of an ImageRepository on a source and a destination image, bound to the arguments
+   * of a command but not to any repository.
+   */
+  protected interface ImageOperation {
+
+    /**
+     * Applies the operation to the given images of the given repository.
+     *
+     * @param imageRepository the repository holding the images
+     * @param src             the name of the source image
+     * @param dest            the name of the destination image
+     */
+    void apply(ImageRepository imageRepository, String src, String dest);
+  }
 }
@@ -2,7 +2,6 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that applies a
@@ -18,9 +17,8 @@ public class Blur extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
-    return imageRepository::blurImage;
+  protected ImageOperation bindOperation(String[] tokens) {
+    return ImageRepository::blurImage;
   }
 
 
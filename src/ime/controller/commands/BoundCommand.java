@@ -0,0 +1,19 @@
+package ime.controller.commands;
+
+import ime.model.ImageRepository;
+
+/**
+ * This interface represents a command whose tokens have already been parsed and validated, so that
+ * it can be run any number of times against any repository without looking at its tokens again.
+ */
+public interface BoundCommand {
+
+  /**
+   * Runs the command against the given repository.
+   *
+   * @param imageRepository The imageRepository to be used for the operation
+   * @return status of the operation
+   * @throws IllegalArgumentException if the operation fails, such as for a missing image
+   */
+  String run(ImageRepository imageRepository) throws IllegalArgumentException;
+}
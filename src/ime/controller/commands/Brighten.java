@@ -2,7 +2,6 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that brightens or
@@ -18,11 +17,11 @@ public class Brighten extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
+  protected ImageOperation bindOperation(String[] tokens) {
     try {
       float brightnessConstant = Float.parseFloat(tokens[1]);
-      return (src, dest) -> imageRepository.brightenImage(src, dest, brightnessConstant);
+      return (imageRepository, src, dest) -> imageRepository.brightenImage(src, dest,
+          brightnessConstant);
     } catch (NumberFormatException e) {
       throw new IllegalArgumentException(
           "brightness command expects a number following the command");
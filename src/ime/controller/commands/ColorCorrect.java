@@ -2,7 +2,6 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that applies color
@@ -18,9 +17,8 @@ public class ColorCorrect extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
-    return imageRepository::colorCorrect;
+  protected ImageOperation bindOperation(String[] tokens) {
+    return ImageRepository::colorCorrect;
   }
 
 }
@@ -3,8 +3,8 @@ package ime.controller.commands;
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that combines
@@ -20,10 +20,9 @@ public class Combine extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
+  protected ImageOperation bindOperation(String[] tokens) {
     List<String> colorChannelsImages = Arrays.asList(tokens).subList(2, tokens.length);
-    return (src, dest) -> imageRepository.combineImages(colorChannelsImages, dest);
+    return (imageRepository, src, dest) -> imageRepository.combineImages(colorChannelsImages, dest);
   }
 
   @Override
@@ -32,4 +31,13 @@ public class Combine extends AbstractCommand {
     return tokens[0] + " operation completed successfully for " + srcImages
         + " & put in " + tokens[1];
   }
+
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    if (tokens.length < tokensRequired) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(List.of(tokens[2], tokens[3], tokens[4]), List.of(tokens[1]),
+        Collections.emptyList(), Collections.emptyList());
+  }
 }
@@ -18,6 +18,32 @@ public interface Command {
    */
   String proceed(String[] tokens, ImageRepository imageRepository);
 
+  /**
+   * This method parses and validates the tokens of the command once, returning the command bound to
+   * them, which can then be run against any repository. Commands that do not validate their tokens
+   * in advance do so when the bound command is run.
+   *
+   * @param tokens The arguments for the operation
+   * @return the command bound to the tokens
+   * @throws IllegalArgumentException if the tokens are invalid for the command
+   */
+  default BoundCommand bind(String[] tokens) throws IllegalArgumentException {
+    String[] boundTokens = tokens.clone();
+    return imageRepository -> proceed(boundTokens, imageRepository);
+  }
+
+  /**
+   * This method returns the images and files that the command reads and writes when run with the
+   * given tokens, so that commands of a script that do not depend on each other can be run at the
+   * same time. Commands that do not describe their dependencies are run on their own.
+   *
+   * @param tokens The arguments for the operation
+   * @return the dependencies of the command
+   */
+  default CommandDependencies getDependencies(String[] tokens) {
+    return CommandDependencies.BARRIER;
+  }
+
   String constructCommand(String[] tokens);
 
   String constructPreviewCommand(String[] tokens, int previewPercent);
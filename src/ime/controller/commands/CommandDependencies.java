@@ -0,0 +1,100 @@
+package ime.controller.commands;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class describes what a command reads and writes when it is run with certain tokens: the
+ * names of the images it reads and the names it puts images under, along with the files it reads
+ * and writes. Commands whose effects can not be described this way are barriers, which must run
+ * after every command before them and before every command after them.
+ */
+public final class CommandDependencies {
+
+  /**
+   * The dependencies of a command that touches nothing, such as one whose tokens are invalid.
+   */
+  public static final CommandDependencies NONE = new CommandDependencies(
+      Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+      Collections.emptyList(), false);
+
+  /**
+   * The dependencies of a command that must not run at the same time as any other command.
+   */
+  public static final CommandDependencies BARRIER = new CommandDependencies(
+      Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+      Collections.emptyList(), true);
+
+  private final List<String> imagesRead;
+  private final List<String> imagesWritten;
+  private final List<String> filesRead;
+  private final List<String> filesWritten;
+  private final boolean barrier;
+
+  /**
+   * Constructs the dependencies of a command that reads and writes the given images and files.
+   *
+   * @param imagesRead    the names of the images that the command reads
+   * @param imagesWritten the names that the command puts images under
+   * @param filesRead     the paths of the files that the command reads
+   * @param filesWritten  the paths of the files that the command writes
+   */
+  public CommandDependencies(List<String> imagesRead, List<String> imagesWritten,
+      List<String> filesRead, List<String> filesWritten) {
+    this(imagesRead, imagesWritten, filesRead, filesWritten, false);
+  }
+
+  private CommandDependencies(List<String> imagesRead, List<String> imagesWritten,
+      List<String> filesRead, List<String> filesWritten, boolean barrier) {
+    this.imagesRead = List.copyOf(imagesRead);
+    this.imagesWritten = List.copyOf(imagesWritten);
+    this.filesRead = List.copyOf(filesRead);
+    this.filesWritten = List.copyOf(filesWritten);
+    this.barrier = barrier;
+  }
+
+  /**
+   * Returns the names of the images that the command reads.
+   *
+   * @return the names of the images read
+   */
+  public List<String> getImagesRead() {
+    return imagesRead;
+  }
+
+  /**
+   * Returns the names that the command puts images under.
+   *
+   * @return the names of the images written
+   */
+  public List<String> getImagesWritten() {
+    return imagesWritten;
+  }
+
+  /**
+   * Returns the paths of the files that the command reads.
+   *
+   * @return the paths of the files read
+   */
+  public List<String> getFilesRead() {
+    return filesRead;
+  }
+
+  /**
+   * Returns the paths of the files that the command writes.
+   *
+   * @return the paths of the files written
+   */
+  public List<String> getFilesWritten() {
+    return filesWritten;
+  }
+
+  /**
+   * Returns whether the command must run on its own, after every command before it.
+   *
+   * @return true if the command is a barrier
+   */
+  public boolean isBarrier() {
+    return barrier;
+  }
+}
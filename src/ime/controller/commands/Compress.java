@@ -1,8 +1,7 @@
 package ime.controller.commands;
 
 import ime.controller.CommandEnum;
-import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
+import ime.model.Wavelet;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that compresses an
@@ -14,18 +13,80 @@ public class Compress extends AbstractCommand {
    * Constructor to initialize the fields.
    */
   public Compress() {
-    super(4, 2, 3, CommandEnum.compress);
+    super(4, 2, 3, true, CommandEnum.compress);
   }
 
+  /* A compress command may end with any of the option pairs "split p", "block n" and
+   "wavelet name". Split previews the compression of the whole source image, block compresses the
+   image as independent blocks of side n, and wavelet picks the transform (haar by default). */
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository)
-      throws IllegalArgumentException {
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
+    if (tokens.length < tokensRequired || (tokens.length - tokensRequired) % 2 != 0) {
+      throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
+    }
+    int compressionPercentage = getCompressionPercentage(tokens);
+    Integer splitPercent = null;
+    Integer blockSize = null;
+    Wavelet chosenWavelet = null;
+    for (int i = tokensRequired; i < tokens.length; i += 2) {
+      String value = tokens[i + 1];
+      switch (tokens[i]) {
+        case "split":
+          splitPercent = getNumber(value, "number expected following split");
+          break;
+        case "block":
+          blockSize = getNumber(value, "block size expected following block");
+          break;
+        case "wavelet":
+          chosenWavelet = Wavelet.fromRepresentation(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + tokens[i]
+              + " for compress. Supported options are split, block and wavelet");
+      }
+    }
+    String src = tokens[srcIndex];
+    String dest = tokens[destIndex];
+    if (splitPercent != null && blockSize != null) {
+      throw new IllegalArgumentException("Block compression can not be previewed");
+    }
+    Wavelet wavelet = chosenWavelet == null ? Wavelet.HAAR : chosenWavelet;
+    if (splitPercent != null) {
+      int percent = splitPercent;
+      return imageRepository -> {
+        imageRepository.previewCompress(src, dest, compressionPercentage, percent, wavelet);
+        return "Successfully Previewed";
+      };
+    }
+    String message = messageSenderHelper(tokens);
+    if (blockSize != null) {
+      int size = blockSize;
+      return imageRepository -> {
+        imageRepository.compressInBlocks(src, dest, compressionPercentage, size, wavelet);
+        return message + " using blocks of size " + size;
+      };
+    }
+    if (chosenWavelet == null) {
+      return imageRepository -> {
+        imageRepository.compress(src, dest, compressionPercentage);
+        return message;
+      };
+    }
+    return imageRepository -> {
+      imageRepository.compress(src, dest, compressionPercentage, wavelet);
+      return message;
+    };
+  }
+
+  private static int getCompressionPercentage(String[] tokens) throws IllegalArgumentException {
+    return getNumber(tokens[1], "number expected following compress command");
+  }
+
+  private static int getNumber(String token, String errorMessage) throws IllegalArgumentException {
     try {
-      int compressionPercentage = Integer.parseInt(tokens[1]);
-      return (src, dest) -> imageRepository.compress(src, dest, compressionPercentage);
+      return Integer.parseInt(token);
     } catch (NumberFormatException e) {
-      throw new IllegalArgumentException("number expected following compress command");
+      throw new IllegalArgumentException(errorMessage);
     }
   }
 
@@ -0,0 +1,60 @@
+package ime.controller.commands;
+
+import ime.controller.CommandEnum;
+import ime.model.Wavelet;
+
+/**
+ * This class extends the AbstractCommand class and represents a specific command that compresses an
+ * image as much as possible while keeping its peak signal-to-noise ratio above a given target. The
+ * command may end with the option pair "wavelet name" to pick the transform (haar by default).
+ */
+public class CompressToPsnr extends AbstractCommand {
+
+  /**
+   * Constructor to initialize the fields.
+   */
+  public CompressToPsnr() {
+    super(4, 2, 3, CommandEnum.compress_psnr);
+  }
+
+  /* Validate token count and the optional wavelet, and bind the compression to the target. */
+  @Override
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
+    if (validateTokenCount(tokens.length)) {
+      return extractTokensAndBindMethod(tokens);
+    }
+    if (!validateTokenCount(tokens.length - 2)) {
+      throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
+    }
+    if (!tokens[tokensRequired].equals("wavelet")) {
+      throw new IllegalArgumentException("Unknown option " + tokens[tokensRequired]
+          + " for compress-psnr. Supported option is wavelet");
+    }
+    Wavelet wavelet = Wavelet.fromRepresentation(tokens[tokensRequired + 1]);
+    double targetPsnr = getTargetPsnr(tokens);
+    String src = tokens[srcIndex];
+    String dest = tokens[destIndex];
+    String message = messageSenderHelper(tokens);
+    return imageRepository -> message + " with compression percentage: "
+        + imageRepository.compressToPsnr(src, dest, targetPsnr, wavelet);
+  }
+
+  @Override
+  protected BoundCommand extractTokensAndBindMethod(String[] tokens) {
+    double targetPsnr = getTargetPsnr(tokens);
+    String src = tokens[srcIndex];
+    String dest = tokens[destIndex];
+    String message = messageSenderHelper(tokens);
+    return imageRepository -> message + " with compression percentage: "
+        + imageRepository.compressToPsnr(src, dest, targetPsnr);
+  }
+
+  private static double getTargetPsnr(String[] tokens) {
+    try {
+      return Double.parseDouble(tokens[1]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("number expected following compress-psnr command");
+    }
+  }
+
+}
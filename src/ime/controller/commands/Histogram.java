@@ -3,7 +3,6 @@ package ime.controller.commands;
 import ime.controller.CommandEnum;
 import ime.controller.ImageDrawerImpl;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that generates a
@@ -19,10 +18,9 @@ public class Histogram extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
-    return (srcImage, destImage) -> imageRepository.toHistogram(srcImage, destImage,
-        new ImageDrawerImpl());
+  protected ImageOperation bindOperation(String[] tokens) {
+    return (imageRepository, srcImage, destImage) -> imageRepository.toHistogram(srcImage,
+        destImage, new ImageDrawerImpl());
   }
 
 
@@ -0,0 +1,85 @@
+package ime.controller.commands;
+
+import ime.controller.CommandEnum;
+import ime.controller.FileHandlerProvider;
+import ime.controller.SaveQueue;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class extends the AbstractCommand class and represents a specific command that reports the
+ * format, dimensions and channel count of an image file, reading only the header of the file.
+ */
+public class Info extends AbstractCommand {
+
+  private final FileHandlerProvider fileHandlerProvider;
+  private final SaveQueue saveQueue;
+  private final boolean failOnIoError;
+
+  /**
+   * Constructor to initialize the fields.
+   */
+  public Info(FileHandlerProvider fileHandlerProvider) {
+    this(fileHandlerProvider, null);
+  }
+
+  /**
+   * Constructor to initialize the fields, with the queue that images are being saved through, so
+   * that a file is not probed while it is still being saved.
+   *
+   * @param fileHandlerProvider the provider of the handlers that probe images
+   * @param saveQueue           the queue that saves are submitted to, or null if images are saved
+   *                            before the save command returns
+   */
+  public Info(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue) {
+    this(fileHandlerProvider, saveQueue, false);
+  }
+
+  /**
+   * Constructor to initialize the fields, with the queue that images are being saved through and
+   * whether a file that could not be read fails the command.
+   *
+   * @param fileHandlerProvider the provider of the handlers that probe images
+   * @param saveQueue           the queue that saves are submitted to, or null if images are saved
+   *                            before the save command returns
+   * @param failOnIoError       true to throw an IllegalArgumentException for a file that could not
+   *                            be read, rather than return a message saying so
+   */
+  public Info(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue,
+      boolean failOnIoError) {
+    super(2, CommandEnum.info);
+    this.fileHandlerProvider = fileHandlerProvider;
+    this.saveQueue = saveQueue;
+    this.failOnIoError = failOnIoError;
+  }
+
+  /* Validate token count and probe the file whose path is made of the remaining tokens. */
+  @Override
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
+    if (tokens.length < tokensRequired) {
+      throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
+    }
+    String path = joinTokens(tokens, 1, tokens.length);
+    return imageRepository -> {
+      if (saveQueue != null) {
+        saveQueue.waitFor(path);
+      }
+      try {
+        return path + ": " + fileHandlerProvider.getFileHandler(path).probeImage(path);
+      } catch (IOException e) {
+        return reportInvalidFile(failOnIoError, e);
+      }
+    };
+  }
+
+  /* The command only reads the file at the path. */
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    if (tokens.length < tokensRequired) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(Collections.emptyList(), Collections.emptyList(),
+        List.of(joinTokens(tokens, 1, tokens.length)), Collections.emptyList());
+  }
+}
@@ -2,7 +2,6 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that adjusts the
@@ -15,14 +14,12 @@ public class LevelsAdjust extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository)
-      throws IllegalArgumentException {
+  protected ImageOperation bindOperation(String[] tokens) throws IllegalArgumentException {
     try {
       int b = Integer.parseInt(tokens[1]);
       int m = Integer.parseInt(tokens[2]);
       int w = Integer.parseInt(tokens[3]);
-      return (src, dest) -> imageRepository.levelsAdjust(src, dest, b, m, w);
+      return (imageRepository, src, dest) -> imageRepository.levelsAdjust(src, dest, b, m, w);
     } catch (NumberFormatException e) {
       throw new IllegalArgumentException("3 numbers required following the levels-adjust command");
     }
@@ -1,49 +1,150 @@
 package ime.controller.commands;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import ime.controller.CommandEnum;
 import ime.controller.FileHandlerProvider;
-import ime.model.ImageRepository;
+import ime.controller.LoadOptions;
+import ime.controller.SaveQueue;
+import java.awt.Rectangle;
+import ime.model.ImageRowSource;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that loads an
- * image into the application.
+ * image into the application. The path may be preceded by the options --scale 1/n, to keep only
+ * every n-th pixel of every n-th row, and --region x,y,width,height, to load only part of the
+ * image.
  */
 public class Load extends AbstractCommand {
 
   private final FileHandlerProvider fileHandlerProvider;
+  private final SaveQueue saveQueue;
+  private final boolean failOnIoError;
 
   /**
    * Constructor to initialize the fields.
    */
   public Load(FileHandlerProvider fileHandlerProvider) {
+    this(fileHandlerProvider, null);
+  }
+
+  /**
+   * Constructor to initialize the fields, with the queue that images are being saved through, so
+   * that a file is not loaded while it is still being saved.
+   *
+   * @param fileHandlerProvider the provider of the handlers that load images
+   * @param saveQueue           the queue that saves are submitted to, or null if images are saved
+   *                            before the save command returns
+   */
+  public Load(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue) {
+    this(fileHandlerProvider, saveQueue, false);
+  }
+
+  /**
+   * Constructor to initialize the fields, with the queue that images are being saved through and
+   * whether a file that could not be read fails the command.
+   *
+   * @param fileHandlerProvider the provider of the handlers that load images
+   * @param saveQueue           the queue that saves are submitted to, or null if images are saved
+   *                            before the save command returns
+   * @param failOnIoError       true to throw an IllegalArgumentException for a file that could not
+   *                            be read, rather than return a message saying so
+   */
+  public Load(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue,
+      boolean failOnIoError) {
     super(3, 1, 2, CommandEnum.load);
     this.fileHandlerProvider = fileHandlerProvider;
+    this.saveQueue = saveQueue;
+    this.failOnIoError = failOnIoError;
   }
 
-  /* Validate token count, proceed to extract tokens and invoke appropriate method from
-    ImageRepository (if command supports preview operation and the input tokens has valid params
-    for the same, invoke the preview method of ImageRepository.*/
+  /* Validate token count and options, and bind the loading of the file at the path after the
+    options into the image named by the last token. */
   @Override
-  public String proceed(String[] tokens, ImageRepository imageRepository) {
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
     if (tokens.length < tokensRequired) {
       throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
     }
-    StringBuilder concatenatedString = new StringBuilder(tokens[1]);
-    for (int i = 2; i < tokens.length - 1; i++) {
-      concatenatedString.append(" " + tokens[i]);
+    int subsampling = 1;
+    Rectangle region = null;
+    int pathIndex = 1;
+    while (pathIndex < tokens.length - 1 && tokens[pathIndex].startsWith("--")) {
+      if (pathIndex + 1 >= tokens.length - 1) {
+        throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
+      }
+      String value = tokens[pathIndex + 1];
+      switch (tokens[pathIndex]) {
+        case "--scale":
+          subsampling = parseScale(value);
+          break;
+        case "--region":
+          region = parseRegion(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + tokens[pathIndex]
+              + " for load. Supported options are --scale and --region");
+      }
+      pathIndex += 2;
+    }
+    if (tokens.length - pathIndex < 2) {
+      throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
     }
-    String path = concatenatedString.toString();
+    LoadOptions options = new LoadOptions(subsampling, region);
+    String path = joinTokens(tokens, pathIndex, tokens.length - 1);
     String imageName = tokens[tokens.length - 1];
+    return imageRepository -> {
+      if (saveQueue != null) {
+        saveQueue.waitFor(path);
+      }
+      try (ImageRowSource source = fileHandlerProvider.getFileHandler(path)
+          .openImage(path, options)) {
+        imageRepository.loadImage(source, imageName);
+      } catch (IOException e) {
+        return reportInvalidFile(failOnIoError, e);
+      }
+      return "Loaded successfully.";
+    };
+  }
+
+  /* Parses a scale of the form 1/n into the subsampling factor n. */
+  private static int parseScale(String value) {
+    if (!value.startsWith("1/")) {
+      throw new IllegalArgumentException("Scale should be of the form 1/n for a positive n");
+    }
     try {
-      float[][][] imagePixels = fileHandlerProvider.getFileHandler(path).loadImage(path);
-      imageRepository.loadImage(imagePixels, imageName);
-    } catch (IOException e) {
-      return "Invalid file";
+      return Integer.parseInt(value.substring(2));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Scale should be of the form 1/n for a positive n");
     }
-    return "Loaded successfully.";
+  }
 
+  /* Parses a region of the form x,y,width,height. */
+  private static Rectangle parseRegion(String value) {
+    String[] parts = value.split(",");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException(
+          "Region should be x,y,width,height with a non-negative position and a positive size");
+    }
+    try {
+      return new Rectangle(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+          Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Region should be x,y,width,height with a non-negative position and a positive size");
+    }
   }
 
+  /* The command reads the file at the path after the options and writes the image named by the
+   last token. */
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    int pathIndex = skipOptions(tokens);
+    if (tokens.length - pathIndex < 2) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(Collections.emptyList(), List.of(tokens[tokens.length - 1]),
+        List.of(joinTokens(tokens, pathIndex, tokens.length - 1)), Collections.emptyList());
+  }
 }
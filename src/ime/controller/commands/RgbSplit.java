@@ -3,8 +3,8 @@ package ime.controller.commands;
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that splits an
@@ -20,10 +20,10 @@ public class RgbSplit extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
+  protected ImageOperation bindOperation(String[] tokens) {
     List<String> colorChannelsImages = Arrays.asList(tokens).subList(2, tokens.length);
-    return (src, dest) -> imageRepository.splitImageIntoColorChannels(src, colorChannelsImages);
+    return (imageRepository, src, dest) -> imageRepository.splitImageIntoColorChannels(src,
+        colorChannelsImages);
   }
 
   @Override
@@ -32,4 +32,13 @@ public class RgbSplit extends AbstractCommand {
     return tokens[0] + " operation completed successfully for " + tokens[srcIndex]
         + " & put in " + destImages;
   }
+
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    if (tokens.length < tokensRequired) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(List.of(tokens[1]), List.of(tokens[2], tokens[3], tokens[4]),
+        Collections.emptyList(), Collections.emptyList());
+  }
 }
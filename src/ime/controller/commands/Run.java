@@ -3,7 +3,6 @@ package ime.controller.commands;
 import ime.controller.CommandEnum;
 import ime.controller.ControllerImpl;
 import ime.controller.FileHandlerProvider;
-import ime.model.ImageRepository;
 import ime.view.View;
 import java.io.File;
 import java.io.IOException;
@@ -28,16 +27,25 @@ public class Run extends AbstractCommand {
     this.fileHandlerProvider = fileHandlerProvider;
   }
 
+  /* The script is read when the command is run, since it may be written by an earlier command. */
   @Override
-  protected String extractTokensAndInvokeMethod(String[] tokens, ImageRepository imageRepository) {
-    try {
-      File reader = new File(tokens[1]);
-      new ControllerImpl(new Scanner(reader), view, imageRepository, fileHandlerProvider,
-          false).execute();
-      return "Script file execution complete.";
-    } catch (IOException e) {
-      return "Invalid script location/file.";
-    }
+  protected BoundCommand extractTokensAndBindMethod(String[] tokens) {
+    File reader = new File(tokens[1]);
+    return imageRepository -> {
+      try {
+        // the images of the script are kept, since the script running it may use them
+        new ControllerImpl(new Scanner(reader), view, imageRepository, fileHandlerProvider,
+            false, false).execute();
+        return "Script file execution complete.";
+      } catch (IOException e) {
+        return "Invalid script location/file.";
+      }
+    };
   }
 
+  /* The commands of the script that is run are not known in advance. */
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    return CommandDependencies.BARRIER;
+  }
 }
@@ -1,50 +1,168 @@
 package ime.controller.commands;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import ime.controller.CommandEnum;
+import ime.controller.FileHandler;
 import ime.controller.FileHandlerProvider;
-import ime.model.ImageRepository;
+import ime.controller.SaveOptions;
+import ime.controller.SaveQueue;
+import ime.model.ImageRowSource;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that saves an
- * image from the application to a file.
+ * image from the application to a file. The path may be preceded by the options --quality q, the
+ * quality from 0 to 100 that JPG files are saved with, --level n, the compression level from 0 to
+ * 9 that PNG files are saved with, and --encoding plain|binary, the variant that PPM and PGM files
+ * are saved in. When the command is given a save queue, the image is saved in
+ * the background and the command returns as soon as the save has been queued.
  */
 public class Save extends AbstractCommand {
 
   private final FileHandlerProvider fileHandlerProvider;
+  private final SaveQueue saveQueue;
+  private final boolean failOnIoError;
 
   /**
    * Constructor to initialize the fields.
    */
   public Save(FileHandlerProvider fileHandlerProvider) {
+    this(fileHandlerProvider, null);
+  }
+
+  /**
+   * Constructor to initialize the fields, with a queue that images are saved through in the
+   * background.
+   *
+   * @param fileHandlerProvider the provider of the handlers that save images
+   * @param saveQueue           the queue that saves are submitted to, or null to save images
+   *                            before returning
+   */
+  public Save(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue) {
+    this(fileHandlerProvider, saveQueue, false);
+  }
+
+  /**
+   * Constructor to initialize the fields, with a queue that images are saved through in the
+   * background and whether a file that could not be written fails the command. The failures of
+   * saves run in the background are reported by the queue.
+   *
+   * @param fileHandlerProvider the provider of the handlers that save images
+   * @param saveQueue           the queue that saves are submitted to, or null to save images
+   *                            before returning
+   * @param failOnIoError       true to throw an IllegalArgumentException for a file that could not
+   *                            be written, rather than return a message saying so
+   */
+  public Save(FileHandlerProvider fileHandlerProvider, SaveQueue saveQueue,
+      boolean failOnIoError) {
     super(3, 1, 2, CommandEnum.save);
     this.fileHandlerProvider = fileHandlerProvider;
+    this.saveQueue = saveQueue;
+    this.failOnIoError = failOnIoError;
   }
 
 
-  /* Validate token count, proceed to extract tokens and invoke appropriate method from
-   ImageRepository (if command supports preview operation and the input tokens has valid params
-    for the same, invoke the preview method of ImageRepository.*/
+  /* Validate token count and options, and bind the saving of the image named by the last token to
+   the file at the path after the options. */
   @Override
-  public String proceed(String[] tokens, ImageRepository imageRepository) {
+  public BoundCommand bind(String[] tokens) throws IllegalArgumentException {
     if (tokens.length < tokensRequired) {
       throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
     }
-    StringBuilder concatenatedString = new StringBuilder(tokens[1]);
-    for (int i = 2; i < tokens.length - 1; i++) {
-      concatenatedString.append(" " + tokens[i]);
+    int quality = -1;
+    int compressionLevel = -1;
+    boolean binary = false;
+    int pathIndex = 1;
+    while (pathIndex < tokens.length - 1 && tokens[pathIndex].startsWith("--")) {
+      if (pathIndex + 1 >= tokens.length - 1) {
+        throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
+      }
+      switch (tokens[pathIndex]) {
+        case "--quality":
+          quality = parseSetting(tokens[pathIndex + 1], "Quality should be between 0 and 100");
+          break;
+        case "--level":
+          compressionLevel = parseSetting(tokens[pathIndex + 1],
+              "Compression level should be between 0 and 9");
+          break;
+        case "--encoding":
+          binary = parseEncoding(tokens[pathIndex + 1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + tokens[pathIndex]
+              + " for save. Supported options are --quality, --level and --encoding");
+      }
+      pathIndex += 2;
+    }
+    if (tokens.length - pathIndex < 2) {
+      throw new IllegalArgumentException("Invalid number of tokens passed for the given command");
     }
-    String file = concatenatedString.toString();
+    SaveOptions options = new SaveOptions(quality, compressionLevel, binary);
+    String file = joinTokens(tokens, pathIndex, tokens.length - 1);
     String imageName = tokens[tokens.length - 1];
-    float[][][] image = imageRepository.getImage(imageName);
+    String message = messageSenderHelper(tokens);
+    return imageRepository -> {
+      if (saveQueue != null) {
+        FileHandler fileHandler;
+        try {
+          fileHandler = fileHandlerProvider.getFileHandler(file);
+        } catch (IOException e) {
+          return reportInvalidFile(failOnIoError, e);
+        }
+        // the rows hold the image as it is now, and it is not modified in place until they close
+        ImageRowSource rows = imageRepository.getImageRows(imageName);
+        try {
+          saveQueue.submit(file, () -> {
+            try (ImageRowSource source = rows) {
+              fileHandler.saveImage(source, file, options);
+            }
+            return null;
+          });
+        } catch (RuntimeException e) {
+          try {
+            rows.close();
+          } catch (IOException closeFailure) {
+            e.addSuppressed(closeFailure);
+          }
+          throw e;
+        }
+        return message;
+      }
+      try (ImageRowSource source = imageRepository.getImageRows(imageName)) {
+        fileHandlerProvider.getFileHandler(file).saveImage(source, file, options);
+      } catch (IOException e) {
+        return reportInvalidFile(failOnIoError, e);
+      }
+      return message;
+    };
+  }
+
+  /* Parses the value of a setting, whose upper bound is checked by SaveOptions. */
+  private static int parseSetting(String value, String message) {
+    int setting;
     try {
-      fileHandlerProvider.getFileHandler(file).saveImage(image, file);
-    } catch (IOException e) {
-      return "Invalid file";
+      setting = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(message);
+    }
+    if (setting < 0) {
+      throw new IllegalArgumentException(message);
     }
-    return messageSenderHelper(tokens);
+    return setting;
+  }
 
+  /* Parses the encoding of PPM and PGM files, returning whether it is the binary one. */
+  private static boolean parseEncoding(String value) {
+    switch (value) {
+      case "plain":
+        return false;
+      case "binary":
+        return true;
+      default:
+        throw new IllegalArgumentException("Encoding should be plain or binary");
+    }
   }
 
   ///Users/hari/Documents/Coursework/PDP/image-manipulator/./res/bird2.jpg
@@ -52,4 +170,16 @@ public class Save extends AbstractCommand {
   protected String messageSenderHelper(String[] tokens) {
     return "Saved successfully.";
   }
+
+  /* The command reads the image named by the last token and writes the file at the path after the
+   options. */
+  @Override
+  public CommandDependencies getDependencies(String[] tokens) {
+    int pathIndex = skipOptions(tokens);
+    if (tokens.length - pathIndex < 2) {
+      return CommandDependencies.NONE;
+    }
+    return new CommandDependencies(List.of(tokens[tokens.length - 1]), Collections.emptyList(),
+        Collections.emptyList(), List.of(joinTokens(tokens, pathIndex, tokens.length - 1)));
+  }
 }
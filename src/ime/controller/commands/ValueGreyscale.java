@@ -2,7 +2,6 @@ package ime.controller.commands;
 
 import ime.controller.CommandEnum;
 import ime.model.ImageRepository;
-import java.util.function.BiConsumer;
 
 /**
  * This class extends the AbstractCommand class and represents a specific command that converts an
@@ -18,8 +17,7 @@ public class ValueGreyscale extends AbstractCommand {
   }
 
   @Override
-  protected BiConsumer<String, String> imageRepositoryMethodInvoker(String[] tokens,
-      ImageRepository imageRepository) {
-    return imageRepository::toValueGreyScale;
+  protected ImageOperation bindOperation(String[] tokens) {
+    return ImageRepository::toValueGreyScale;
   }
 }
@@ -0,0 +1,100 @@
+package ime.model;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class compresses an image by cutting it into square blocks of a fixed size and compressing
+ * every block on its own: each block is wavelet transformed, thresholded using its own
+ * coefficients and inverted. A block only touches its own few kilobytes of data, and since blocks
+ * do not depend on each other they are processed in parallel.
+ */
+class BlockWaveletCompressor {
+
+  private final int blockSize;
+  private final WaveletTransform transform;
+
+  /**
+   * Creates a compressor that works on square blocks of the given size.
+   *
+   * @param blockSize the side of a block, which should be a power of two greater than 1
+   * @param wavelet   the wavelet to be used
+   * @throws IllegalArgumentException if the block size is not a power of two greater than 1
+   */
+  BlockWaveletCompressor(int blockSize, Wavelet wavelet) throws IllegalArgumentException {
+    if (blockSize < 2 || Integer.bitCount(blockSize) != 1) {
+      throw new IllegalArgumentException("Block size should be a power of two greater than 1");
+    }
+    this.blockSize = blockSize;
+    this.transform = wavelet.getTransform();
+  }
+
+  /**
+   * Compress the given image block by block.
+   *
+   * @param image           the image to be compressed
+   * @param compressPercent the percentage of compression applied to every block
+   * @return the compressed image
+   * @throws IllegalArgumentException if the percentage is not between 0 and 100
+   */
+  Image compress(Image image, int compressPercent) throws IllegalArgumentException {
+    if (compressPercent < 0 || compressPercent > 100) {
+      throw new IllegalArgumentException("Compress percentage invalid");
+    }
+    int blockRows = (image.getHeight() + blockSize - 1) / blockSize;
+    int blockCols = (image.getWidth() + blockSize - 1) / blockSize;
+    float[][][] result = new float[image.getHeight()][image.getWidth()][image.getChannelCount()];
+    IntStream.range(0, blockRows * blockCols).parallel().forEach(block ->
+        compressBlock(image, result, (block / blockCols) * blockSize,
+            (block % blockCols) * blockSize, compressPercent));
+    return new ImagePixelImpl(result, image.getImageType());
+  }
+
+  /* Compresses the block with the given top left corner and writes it into its own region of the
+     result, so concurrent blocks never write to the same pixels. */
+  private void compressBlock(Image image, float[][][] result, int top, int left,
+      int compressPercent) {
+    int channelCount = image.getChannelCount();
+    float[][] coefficients = readBlock(image, top, left);
+    float[] buffer = new float[blockSize];
+    for (int c = 0; c < channelCount; c++) {
+      WaveletDecomposition.forward(transform, coefficients[c], blockSize, buffer);
+    }
+    float threshold = WaveletDecomposition.getThreshold(
+        WaveletDecomposition.getUniqueMagnitudes(coefficients), compressPercent);
+    int rows = Math.min(blockSize, image.getHeight() - top);
+    int cols = Math.min(blockSize, image.getWidth() - left);
+    for (int c = 0; c < channelCount; c++) {
+      float[] channel = coefficients[c];
+      for (int k = 0; k < channel.length; k++) {
+        if (Math.abs(channel[k]) <= threshold) {
+          channel[k] = 0;
+        }
+      }
+      WaveletDecomposition.inverse(transform, channel, blockSize, buffer);
+      for (int i = 0; i < rows; i++) {
+        for (int j = 0; j < cols; j++) {
+          result[top + i][left + j][c] = Math.max(0, Math.min(255, channel[i * blockSize + j]));
+        }
+      }
+    }
+  }
+
+  /* Blocks along the bottom and right edges are filled by repeating the last row and column of the
+     image, which keeps the padding from darkening the edges the way zeros would. */
+  private float[][] readBlock(Image image, int top, int left) {
+    int channelCount = image.getChannelCount();
+    float[][] block = new float[channelCount][blockSize * blockSize];
+    for (int i = 0; i < blockSize; i++) {
+      int row = Math.min(top + i, image.getHeight() - 1);
+      for (int j = 0; j < blockSize; j++) {
+        int col = Math.min(left + j, image.getWidth() - 1);
+        float[] values = image.getPixelValues(row, col);
+        for (int c = 0; c < channelCount; c++) {
+          block[c][i * blockSize + j] =
+              transform.isReversible() ? Math.round(values[c]) : values[c];
+        }
+      }
+    }
+    return block;
+  }
+}
@@ -0,0 +1,577 @@
+package ime.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import ime.model.ImagePixelImpl.PixelBlock;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class stores images by name while keeping the pixel bytes of the images held in memory
+ * within a budget. The pixel bytes are an estimate of the heap taken up by the pixels: every pixel
+ * is an object holding an array of three floats, which comes to {@link #PIXEL_BYTES} bytes, and is
+ * referred to from a row of its image, which takes another {@link #REFERENCE_BYTES} bytes. Pixels
+ * shared by several images, such as by an image and its flip, are counted once, and so is an image
+ * stored under several names.
+ *
+ * <p>When an image is added or read back and the images in memory take up more than the budget,
+ * the least recently used ones are spilled to a scratch file as their rows of samples, four byte
+ * floats one after another, and are read back the next time they are asked for. The most recently
+ * used image always stays in memory, even if it alone is larger than the budget. The scratch file
+ * is created in the given directory the first time an image is spilled, and deleted when the store
+ * is closed or the program exits. An image that could not be spilled simply stays in memory, as do
+ * all images once the store is closed, after which the images spilled before can not be read back.
+ * The regions of the file freed by images read back or removed are merged with the free regions
+ * next to them and reused.
+ *
+ * <p>Every image stored under a name is given a new version, which it keeps while it is spilled
+ * and read back. The store may be used from several threads: its bookkeeping is done under a lock,
+ * which is only held while the store itself is updated or an image is spilled or read back.
+ *
+ * <p>The store counts the holders of every image in memory and of every block of its pixels: the
+ * names it is stored under, and the callers that acquired it to read it, such as the row sources of
+ * saves and renderings. An image that only its name and one caller hold, and whose pixels no other
+ * image shares, may be modified in place by that caller rather than replaced by a new image.
+ */
+class BoundedImageStore implements Closeable {
+
+  /**
+   * The estimated bytes of a pixel object along with its array of three floats.
+   */
+  static final long PIXEL_BYTES = 48;
+
+  /**
+   * The estimated bytes of the reference to a pixel from a row of an image.
+   */
+  static final long REFERENCE_BYTES = 4;
+
+  private final long budget;
+  private final Path scratchDirectory;
+  private final ConcurrentHashMap<String, StoredImage> entries;
+  private final AtomicLong nextVersion;
+  private final LinkedHashMap<String, StoredImage> resident;
+  private final IdentityHashMap<Object, Integer> holderCounts;
+  private final Set<String> modified;
+  private final TreeMap<Long, Long> freeExtents;
+  private long residentBytes;
+  private FileChannel scratch;
+  private long scratchSize;
+  private boolean closed;
+
+  /**
+   * Constructs a store keeping the images in memory within the given budget.
+   *
+   * @param budget           the most pixel bytes that the images in memory may take up, or
+   *                         Long.MAX_VALUE to keep all of them in memory
+   * @param scratchDirectory the directory of the scratch file of spilled images
+   */
+  BoundedImageStore(long budget, Path scratchDirectory) {
+    this.budget = budget;
+    this.scratchDirectory = scratchDirectory;
+    this.entries = new ConcurrentHashMap<>();
+    this.nextVersion = new AtomicLong();
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.holderCounts = new IdentityHashMap<>();
+    this.modified = new HashSet<>();
+    this.freeExtents = new TreeMap<>();
+  }
+
+  /**
+   * Returns the image with the given name.
+   *
+   * @param name the name of the image
+   * @return the image, or null if there is no image with the name
+   * @throws IllegalArgumentException if a spilled image could not be read back
+   */
+  Image get(String name) throws IllegalArgumentException {
+    StoredImage stored = getStored(name);
+    return stored == null ? null : stored.image;
+  }
+
+  /**
+   * Returns the image with the given name along with its version, reading it back from the scratch
+   * file if it was spilled.
+   *
+   * @param name the name of the image
+   * @return the image and its version, or null if there is no image with the name
+   * @throws IllegalArgumentException if a spilled image could not be read back
+   */
+  synchronized StoredImage getStored(String name) throws IllegalArgumentException {
+    awaitModification(name);
+    StoredImage stored = entries.get(name);
+    if (stored == null || stored.image != null) {
+      resident.get(name);
+      return stored;
+    }
+    StoredImage readBack = new StoredImage(readBack(stored.extent), null, stored.version);
+    entries.put(name, readBack);
+    free(stored.extent.offset, stored.extent.length);
+    addResident(name, readBack);
+    return readBack;
+  }
+
+  /**
+   * Returns the image with the given name along with its version, and holds the image until it is
+   * released, so that it is neither modified in place nor spilled while the caller reads it.
+   *
+   * @param name the name of the image
+   * @return the image and its version, or null if there is no image with the name
+   * @throws IllegalArgumentException if a spilled image could not be read back
+   */
+  synchronized StoredImage acquire(String name) throws IllegalArgumentException {
+    StoredImage stored = getStored(name);
+    if (stored != null) {
+      addHolder(stored.image);
+    }
+    return stored;
+  }
+
+  /**
+   * Stops holding an image returned by {@link #acquire(String)}.
+   *
+   * @param image the image that was acquired
+   */
+  synchronized void release(Image image) {
+    removeHolder(image);
+  }
+
+  /**
+   * Stores an image under the given name with a new version, replacing any image stored under it.
+   *
+   * @param name  the name of the image
+   * @param image the image to be stored
+   */
+  synchronized void put(String name, Image image) {
+    remove(name);
+    StoredImage stored = new StoredImage(image, null, nextVersion.getAndIncrement());
+    entries.put(name, stored);
+    addResident(name, stored);
+  }
+
+  /**
+   * Stores an image under the given name with a new version, unless there is already an image
+   * stored under it.
+   *
+   * @param name  the name of the image
+   * @param image the image to be stored
+   * @return true if the image was stored
+   */
+  synchronized boolean putIfAbsent(String name, Image image) {
+    awaitModification(name);
+    if (entries.containsKey(name)) {
+      return false;
+    }
+    StoredImage stored = new StoredImage(image, null, nextVersion.getAndIncrement());
+    entries.put(name, stored);
+    addResident(name, stored);
+    return true;
+  }
+
+  /**
+   * Replaces the image stored under the given name with a new version, only if the image stored
+   * under it still has the given version.
+   *
+   * @param name            the name of the image
+   * @param expectedVersion the version that the image stored under the name should have
+   * @param image           the image to be stored
+   * @return true if the image was replaced
+   */
+  synchronized boolean replace(String name, long expectedVersion, Image image) {
+    awaitModification(name);
+    StoredImage current = entries.get(name);
+    if (current == null || current.version != expectedVersion) {
+      return false;
+    }
+    put(name, image);
+    return true;
+  }
+
+  /**
+   * Modifies the image stored under the given name in place and gives it a new version, only if it
+   * still has the given version and nothing holds it or shares its pixels but the name and the
+   * caller, who should have acquired it. The image is modified without holding the lock of the
+   * store, and anyone else using the name waits until it is done.
+   *
+   * @param name            the name of the image
+   * @param expectedVersion the version that the image stored under the name should have
+   * @param modification    the modification of the image
+   * @return true if the image was modified, or false if a new image should be stored instead
+   */
+  boolean modify(String name, long expectedVersion, Consumer<ImagePixelImpl> modification) {
+    Image image;
+    synchronized (this) {
+      awaitModification(name);
+      StoredImage current = entries.get(name);
+      if (current == null || current.version != expectedVersion
+          || !isOwnedByNameAndCaller(current.image)) {
+        return false;
+      }
+      image = current.image;
+      modified.add(name);
+    }
+    try {
+      modification.accept((ImagePixelImpl) image);
+    } finally {
+      synchronized (this) {
+        StoredImage stored = new StoredImage(image, null, nextVersion.getAndIncrement());
+        entries.put(name, stored);
+        resident.put(name, stored);
+        modified.remove(name);
+        notifyAll();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes the image with the given name, if there is one.
+   *
+   * @param name the name of the image
+   */
+  synchronized void remove(String name) {
+    awaitModification(name);
+    StoredImage stored = entries.remove(name);
+    if (stored == null) {
+      return;
+    }
+    if (resident.remove(name) != null) {
+      removeHolder(stored.image);
+    }
+    if (stored.extent != null) {
+      free(stored.extent.offset, stored.extent.length);
+    }
+  }
+
+  /**
+   * Checks whether there is an image with the given name, in memory or spilled.
+   *
+   * @param name the name of the image
+   * @return true if there is an image with the name
+   */
+  boolean containsKey(String name) {
+    return entries.containsKey(name);
+  }
+
+  /**
+   * Returns the pixel bytes of the images held in memory, by names or by callers that acquired
+   * them.
+   *
+   * @return the pixel bytes in memory
+   */
+  synchronized long getResidentBytes() {
+    return residentBytes;
+  }
+
+  /**
+   * Returns the bytes of the scratch file taken up by spilled images and by the free regions
+   * between them.
+   *
+   * @return the size of the scratch file
+   */
+  synchronized long getScratchSize() {
+    return scratchSize;
+  }
+
+  /**
+   * Closes the scratch file of spilled images, which deletes it.
+   *
+   * @throws IOException if the scratch file could not be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    if (scratch != null) {
+      scratch.close();
+    }
+  }
+
+  /* Waits until the image stored under the given name is no longer being modified. Called with the
+   lock held, which is given up while waiting. */
+  private void awaitModification(String name) {
+    boolean interrupted = false;
+    while (modified.contains(name)) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /* Checks whether an image is held only by its name and the caller that acquired it, and none of
+   its pixels are shared by another image held in memory. */
+  private boolean isOwnedByNameAndCaller(Image image) {
+    if (holderCounts.getOrDefault(image, 0) != 2) {
+      return false;
+    }
+    for (PixelBlock block : getPixelBlocks(image)) {
+      if (holderCounts.get(block) != 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Counts an image that has just been put in memory, and spills the least recently used images
+   until the images in memory fit within the budget again. Images whose pixels are all still held
+   by other images in memory are left alone, since spilling them would free nothing. Called with
+   the lock held. */
+  private void addResident(String name, StoredImage stored) {
+    resident.put(name, stored);
+    addHolder(stored.image);
+    Iterator<Map.Entry<String, StoredImage>> eldest = resident.entrySet().iterator();
+    while (residentBytes > budget && resident.size() > 1) {
+      Map.Entry<String, StoredImage> entry = eldest.next();
+      if (entry.getKey().equals(name)) {
+        return;
+      }
+      StoredImage victim = entry.getValue();
+      if (isPixelsHeldElsewhere(victim.image)) {
+        continue;
+      }
+      Extent extent = spill(victim.image);
+      if (extent != null) {
+        entries.put(entry.getKey(), new StoredImage(null, extent, victim.version));
+        eldest.remove();
+        removeHolder(victim.image);
+      }
+    }
+  }
+
+  /* Writes the rows of an image to a free extent of the scratch file, returning null if it could
+   not be written. */
+  private Extent spill(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int channelCount = image.getChannelCount();
+    long length = (long) width * height * channelCount * Float.BYTES;
+    if (closed) {
+      return null;
+    }
+    Extent extent = null;
+    try {
+      if (scratch == null) {
+        Path file = Files.createTempFile(scratchDirectory, "images", ".scratch");
+        file.toFile().deleteOnExit();
+        scratch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      extent = allocate(length, width, height, channelCount);
+      float[] rowValues = new float[width * channelCount];
+      ByteBuffer row = ByteBuffer.allocate(rowValues.length * Float.BYTES);
+      FloatBuffer rowFloats = row.asFloatBuffer();
+      for (int i = 0; i < height; i++) {
+        image.getRowValues(i, rowValues);
+        rowFloats.clear();
+        rowFloats.put(rowValues);
+        row.clear();
+        long position = extent.offset + (long) i * row.capacity();
+        while (row.hasRemaining()) {
+          position += scratch.write(row, position);
+        }
+      }
+      return extent;
+    } catch (IOException e) {
+      if (extent != null) {
+        free(extent.offset, extent.length);
+      }
+      return null;
+    }
+  }
+
+  /* Returns the first free extent large enough for the given number of bytes, or a new one at the
+   end of the scratch file. The rest of a larger free extent is left free. */
+  private Extent allocate(long length, int width, int height, int channelCount) {
+    for (Map.Entry<Long, Long> free : freeExtents.entrySet()) {
+      long offset = free.getKey();
+      long freeLength = free.getValue();
+      if (freeLength >= length) {
+        freeExtents.remove(offset);
+        if (freeLength > length) {
+          freeExtents.put(offset + length, freeLength - length);
+        }
+        return new Extent(offset, length, width, height, channelCount);
+      }
+    }
+    Extent extent = new Extent(scratchSize, length, width, height, channelCount);
+    scratchSize += length;
+    return extent;
+  }
+
+  /* Marks a region of the scratch file as free, merging it with the free regions right before and
+   after it so that they can be reused for a larger image. */
+  private void free(long offset, long length) {
+    Map.Entry<Long, Long> before = freeExtents.floorEntry(offset);
+    if (before != null && before.getKey() + before.getValue() == offset) {
+      freeExtents.remove(before.getKey());
+      offset = before.getKey();
+      length += before.getValue();
+    }
+    Long after = freeExtents.remove(offset + length);
+    if (after != null) {
+      length += after;
+    }
+    freeExtents.put(offset, length);
+  }
+
+  /* Counts a holder of an image, adding the bytes of its rows if nothing else holds it and the
+   bytes of each of its blocks of pixels that no other image held in memory shares. */
+  private void addHolder(Image image) {
+    if (holderCounts.merge(image, 1, Integer::sum) > 1) {
+      return;
+    }
+    residentBytes += (long) image.getWidth() * image.getHeight() * REFERENCE_BYTES;
+    for (PixelBlock block : getPixelBlocks(image)) {
+      if (holderCounts.merge(block, 1, Integer::sum) == 1) {
+        residentBytes += block.getPixelCount() * PIXEL_BYTES;
+      }
+    }
+  }
+
+  /* Checks whether all the pixels of an image held in memory are held by other images as well. */
+  private boolean isPixelsHeldElsewhere(Image image) {
+    if (holderCounts.get(image) > 1) {
+      return true;
+    }
+    for (PixelBlock block : getPixelBlocks(image)) {
+      if (holderCounts.get(block) == 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Undoes counting a holder of an image, taking off the bytes that are no longer held. */
+  private void removeHolder(Image image) {
+    if (holderCounts.merge(image, -1, Integer::sum) > 0) {
+      return;
+    }
+    holderCounts.remove(image);
+    residentBytes -= (long) image.getWidth() * image.getHeight() * REFERENCE_BYTES;
+    for (PixelBlock block : getPixelBlocks(image)) {
+      if (holderCounts.merge(block, -1, Integer::sum) == 0) {
+        holderCounts.remove(block);
+        residentBytes -= block.getPixelCount() * PIXEL_BYTES;
+      }
+    }
+  }
+
+  private Image readBack(Extent extent) {
+    ByteBuffer row = ByteBuffer.allocate(extent.width * extent.channelCount * Float.BYTES);
+    ImageRowSource source = new ImageRowSource() {
+      private int nextRow;
+
+      @Override
+      public int getWidth() {
+        return extent.width;
+      }
+
+      @Override
+      public int getHeight() {
+        return extent.height;
+      }
+
+      @Override
+      public void readRow(float[] rowValues) throws IOException {
+        row.clear();
+        long position = extent.offset + (long) nextRow++ * row.capacity();
+        while (row.hasRemaining()) {
+          int read = scratch.read(row, position);
+          if (read < 0) {
+            throw new IOException("The scratch file ended before the image");
+          }
+          position += read;
+        }
+        row.flip();
+        row.asFloatBuffer().get(rowValues);
+      }
+
+      @Override
+      public void close() {
+        // the scratch file stays open for the other images
+      }
+    };
+    try {
+      return new ImagePixelImpl(source, ImageType.RGB);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Image could not be read back from the scratch file", e);
+    }
+  }
+
+  /* Every image of the model is an ImagePixelImpl, whose blocks tell which pixels it shares. */
+  private static Iterable<PixelBlock> getPixelBlocks(Image image) {
+    return ((ImagePixelImpl) image).getPixelBlocks();
+  }
+
+  /**
+   * An image stored under a name along with its version. The image is null while it is spilled,
+   * and the extent of the scratch file it was spilled to is null while it is in memory.
+   */
+  static final class StoredImage {
+
+    private final Image image;
+    private final Extent extent;
+    private final long version;
+
+    private StoredImage(Image image, Extent extent, long version) {
+      this.image = image;
+      this.extent = extent;
+      this.version = version;
+    }
+
+    /**
+     * Returns the image, which is never null for an image returned by the store.
+     *
+     * @return the image
+     */
+    Image getImage() {
+      return image;
+    }
+
+    /**
+     * Returns the version that the image was given when it was stored under its name.
+     *
+     * @return the version of the image
+     */
+    long getVersion() {
+      return version;
+    }
+  }
+
+  /**
+   * A region of the scratch file along with the dimensions of the image spilled to it.
+   */
+  private static final class Extent {
+
+    private final long offset;
+    private final long length;
+    private final int width;
+    private final int height;
+    private final int channelCount;
+
+    private Extent(long offset, long length, int width, int height, int channelCount) {
+      this.offset = offset;
+      this.length = length;
+      this.width = width;
+      this.height = height;
+      this.channelCount = channelCount;
+    }
+  }
+}
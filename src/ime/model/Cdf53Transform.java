@@ -0,0 +1,34 @@
+package ime.model;
+
+/**
+ * The reversible integer CDF 5/3 (LeGall) wavelet transform used by lossless JPEG 2000. Every
+ * lifting step rounds down, so integer samples give integer coefficients and the inverse restores
+ * the samples exactly.
+ */
+class Cdf53Transform extends LiftingTransform {
+
+  @Override
+  protected void lift(float[] x, int n) {
+    for (int i = 1; i < n; i += 2) {
+      x[i] -= (float) Math.floor((x[i - 1] + right(x, i, n)) / 2);
+    }
+    for (int i = 0; i < n; i += 2) {
+      x[i] += (float) Math.floor((left(x, i) + x[i + 1] + 2) / 4);
+    }
+  }
+
+  @Override
+  protected void unlift(float[] x, int n) {
+    for (int i = 0; i < n; i += 2) {
+      x[i] -= (float) Math.floor((left(x, i) + x[i + 1] + 2) / 4);
+    }
+    for (int i = 1; i < n; i += 2) {
+      x[i] += (float) Math.floor((x[i - 1] + right(x, i, n)) / 2);
+    }
+  }
+
+  @Override
+  public boolean isReversible() {
+    return true;
+  }
+}
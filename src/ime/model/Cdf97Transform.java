@@ -0,0 +1,55 @@
+package ime.model;
+
+/**
+ * The CDF 9/7 wavelet transform used by lossy JPEG 2000, written as two predict and two update
+ * lifting steps followed by a scaling of the approximation and detail coefficients.
+ */
+class Cdf97Transform extends LiftingTransform {
+
+  private static final float ALPHA = -1.586134342f;
+  private static final float BETA = -0.05298011854f;
+  private static final float GAMMA = 0.8829110762f;
+  private static final float DELTA = 0.4435068522f;
+  private static final float K = 1.149604398f;
+
+  @Override
+  protected void lift(float[] x, int n) {
+    predict(x, n, ALPHA);
+    update(x, n, BETA);
+    predict(x, n, GAMMA);
+    update(x, n, DELTA);
+    for (int i = 0; i < n; i += 2) {
+      x[i] *= K;
+      x[i + 1] /= K;
+    }
+  }
+
+  @Override
+  protected void unlift(float[] x, int n) {
+    for (int i = 0; i < n; i += 2) {
+      x[i] /= K;
+      x[i + 1] *= K;
+    }
+    update(x, n, -DELTA);
+    predict(x, n, -GAMMA);
+    update(x, n, -BETA);
+    predict(x, n, -ALPHA);
+  }
+
+  private static void predict(float[] x, int n, float coefficient) {
+    for (int i = 1; i < n; i += 2) {
+      x[i] += coefficient * (x[i - 1] + right(x, i, n));
+    }
+  }
+
+  private static void update(float[] x, int n, float coefficient) {
+    for (int i = 0; i < n; i += 2) {
+      x[i] += coefficient * (left(x, i) + x[i + 1]);
+    }
+  }
+
+  @Override
+  public boolean isReversible() {
+    return false;
+  }
+}
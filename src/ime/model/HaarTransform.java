@@ -0,0 +1,42 @@
+package ime.model;
+
+/**
+ * The Haar wavelet transform, normalized so that each pair of values is replaced by its sum and
+ * difference divided by the square root of two.
+ */
+class HaarTransform implements WaveletTransform {
+
+  private static final double SQRT_TWO = Math.sqrt(2);
+
+  @Override
+  public void forward(float[] data, int offset, int stride, int n, float[] buffer) {
+    for (int i = 0; i < n / 2; i++) {
+      float a = data[offset + 2 * i * stride];
+      float b = data[offset + (2 * i + 1) * stride];
+      buffer[i] = (float) ((a + b) / SQRT_TWO);
+      buffer[n / 2 + i] = (float) ((a - b) / SQRT_TWO);
+    }
+    for (int i = 0; i < n; i++) {
+      data[offset + i * stride] = buffer[i];
+    }
+  }
+
+  @Override
+  public void inverse(float[] data, int offset, int stride, int n, float[] buffer) {
+    int half = n / 2;
+    for (int i = 0; i < half; i++) {
+      float a = data[offset + i * stride];
+      float b = data[offset + (half + i) * stride];
+      buffer[2 * i] = (float) ((a + b) / SQRT_TWO);
+      buffer[2 * i + 1] = (float) ((a - b) / SQRT_TWO);
+    }
+    for (int i = 0; i < n; i++) {
+      data[offset + i * stride] = buffer[i];
+    }
+  }
+
+  @Override
+  public boolean isReversible() {
+    return false;
+  }
+}
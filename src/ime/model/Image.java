@@ -80,6 +80,16 @@ public interface Image {
    */
   float[] getPixelValues(int row, int col) throws IllegalArgumentException;
 
+  /**
+   * Copies the values of every pixel in the given row into the given array, all the channel values
+   * of each pixel in turn.
+   *
+   * @param row       the row position of the pixels
+   * @param rowValues the array to be filled, of length at least the width times the channel count
+   * @throws IllegalArgumentException if the row lies outside the image
+   */
+  void getRowValues(int row, float[] rowValues) throws IllegalArgumentException;
+
   /**
    * Convert this image into its intensity greyscale and return the copy of it.
    *
@@ -145,6 +155,53 @@ public interface Image {
    */
   Image compress(int compressPercent);
 
+  /**
+   * Return a compressed version of the image that is computed using the given wavelet. Compressing
+   * by 0 percent with the reversible {@link Wavelet#CDF53} wavelet reproduces the image exactly
+   * (after rounding its values to integers).
+   *
+   * @param compressPercent The percentage of compression
+   * @param wavelet         The wavelet used for the compression
+   * @return compressed image
+   */
+  Image compress(int compressPercent, Wavelet wavelet);
+
+  /**
+   * Find the largest compression percentage for which the compressed version of this image still
+   * has a peak signal-to-noise ratio of at least the given target when compared with this image.
+   *
+   * @param targetPsnr the minimum acceptable peak signal-to-noise ratio in dB
+   * @return the compression percentage between 0 and 100
+   * @throws IllegalArgumentException if the target is not a positive number
+   */
+  int getCompressionPercentForPsnr(double targetPsnr) throws IllegalArgumentException;
+
+  /**
+   * Find the largest compression percentage for which the version of this image compressed using
+   * the given wavelet still has a peak signal-to-noise ratio of at least the given target when
+   * compared with this image.
+   *
+   * @param targetPsnr the minimum acceptable peak signal-to-noise ratio in dB
+   * @param wavelet    the wavelet used for the compression
+   * @return the compression percentage between 0 and 100
+   * @throws IllegalArgumentException if the target is not a positive number
+   */
+  int getCompressionPercentForPsnr(double targetPsnr, Wavelet wavelet)
+      throws IllegalArgumentException;
+
+  /**
+   * Return a compressed version of the image where the image is compressed as independent square
+   * blocks of the given size instead of as a whole.
+   *
+   * @param compressPercent The percentage of compression applied to each block
+   * @param blockSize       The side of a block, which should be a power of two greater than 1
+   * @param wavelet         The wavelet used for the compression
+   * @return compressed image
+   * @throws IllegalArgumentException if the percentage or the block size is invalid
+   */
+  Image compressInBlocks(int compressPercent, int blockSize, Wavelet wavelet)
+      throws IllegalArgumentException;
+
   /**
    * Split the image vertically according to the split position given. If splitPercent is greater
    * than 100 or lesser than 0, a copy of the same image will be returned.
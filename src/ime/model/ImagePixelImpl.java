@@ -1,13 +1,13 @@
 package ime.model;
 
+import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static ime.model.ImageConstants.BLUR_FILTER;
 import static ime.model.ImageConstants.SEPIA_TRANSFORMER;
@@ -26,6 +26,11 @@ public class ImagePixelImpl implements Image {
 
   private final Pixel[][] pixels;
 
+  private final List<PixelBlock> pixelBlocks;
+
+  private final Map<Wavelet, SoftReference<WaveletDecomposition>> decompositions =
+      new EnumMap<>(Wavelet.class);
+
   /**
    * This constructor initializes the {@link ImagePixelImpl} using a 2D pixel array.
    *
@@ -40,6 +45,7 @@ public class ImagePixelImpl implements Image {
     height = pixelValues.length;
     width = pixelValues[0].length;
     pixels = new Pixel[height][width];
+    pixelBlocks = List.of(new PixelBlock((long) width * height));
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
         setPixelValue(this.pixels, i, j, pixelValues[i][j].getChannelValues());
@@ -62,6 +68,7 @@ public class ImagePixelImpl implements Image {
     width = pixelValues[0].length;
     height = pixelValues.length;
     pixels = new Pixel[height][width];
+    pixelBlocks = List.of(new PixelBlock((long) width * height));
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
         setPixelValue(this.pixels, i, j, pixelValues[i][j]);
@@ -69,6 +76,58 @@ public class ImagePixelImpl implements Image {
     }
   }
 
+  /**
+   * This constructor initializes the {@link ImagePixelImpl} by reading the rows of the given source
+   * straight into the pixels that make up this image.
+   *
+   * @param source    the source of the rows of the image
+   * @param imageType the type of this image
+   * @throws IOException if a row could not be read from the source
+   */
+  public ImagePixelImpl(ImageRowSource source, ImageType imageType) throws IOException {
+    if (!(source.getHeight() > 0 && source.getWidth() > 0)) {
+      throw new IllegalArgumentException("Image should contain at least one pixel");
+    }
+    this.imageType = imageType;
+    width = source.getWidth();
+    height = source.getHeight();
+    pixels = new Pixel[height][width];
+    pixelBlocks = List.of(new PixelBlock((long) width * height));
+    int channelCount = imageType.colorChannels.size();
+    float[] rowValues = new float[width * channelCount];
+    float[] pixelValues = new float[channelCount];
+    for (int i = 0; i < height; i++) {
+      source.readRow(rowValues);
+      for (int j = 0; j < width; j++) {
+        System.arraycopy(rowValues, j * channelCount, pixelValues, 0, channelCount);
+        setPixelValue(this.pixels, i, j, pixelValues);
+      }
+    }
+  }
+
+  /**
+   * This constructor takes the given 2D pixel array, whose pixels have all just been created, as
+   * the pixels of the image without copying it.
+   */
+  private ImagePixelImpl(ImageType imageType, Pixel[][] pixels) {
+    this(imageType, pixels, List.of(new PixelBlock((long) pixels.length * pixels[0].length)));
+  }
+
+  /**
+   * This constructor takes the given 2D pixel array as the pixels of the image without copying it.
+   * Operations never change the pixels of the image they are applied to, so the result of an
+   * operation uses the array it has just built as is, and may share the rows and pixels that it
+   * leaves unchanged with the image it was computed from. The given blocks are those that the
+   * pixels of the array belong to.
+   */
+  private ImagePixelImpl(ImageType imageType, Pixel[][] pixels, List<PixelBlock> pixelBlocks) {
+    this.imageType = imageType;
+    this.height = pixels.length;
+    this.width = pixels[0].length;
+    this.pixels = pixels;
+    this.pixelBlocks = pixelBlocks;
+  }
+
   /**
    * getter for width.
    *
@@ -116,7 +175,7 @@ public class ImagePixelImpl implements Image {
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
         float[] pixelValues = new float[this.getChannelCount()];
-        pixelValues[0] = this.pixels[i][j].getChannelValues()[0];
+        pixelValues[0] = this.pixels[i][j].getChannelValue(0);
         for (int k = 1; k < this.getChannelCount(); k++) {
           pixelValues[k] = images.get(k - 1).getPixelValues(i, j)[k];
         }
@@ -124,7 +183,7 @@ public class ImagePixelImpl implements Image {
       }
     }
 
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels);
   }
 
   @Override
@@ -135,7 +194,7 @@ public class ImagePixelImpl implements Image {
         resultPixels[i][j] = pixels[i][j].brighten(brightnessConstant);
       }
     }
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels);
   }
 
   @Override
@@ -153,21 +212,19 @@ public class ImagePixelImpl implements Image {
     Pixel[][] resultPixels = new Pixel[height][width];
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        setPixelValue(resultPixels, i, j, pixels[i][width - j - 1].getChannelValues());
+        resultPixels[i][j] = pixels[i][width - j - 1];
       }
     }
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels, pixelBlocks);
   }
 
   @Override
   public Image flipVertically() {
-    Pixel[][] resultPixels = new Pixel[height][width];
+    Pixel[][] resultPixels = new Pixel[height][];
     for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        setPixelValue(resultPixels, i, j, pixels[height - i - 1][j].getChannelValues());
-      }
+      resultPixels[i] = pixels[height - i - 1];
     }
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels, pixelBlocks);
   }
 
   @Override
@@ -178,6 +235,20 @@ public class ImagePixelImpl implements Image {
     return pixels[row][col].getChannelValues();
   }
 
+  @Override
+  public void getRowValues(int row, float[] rowValues) {
+    if (row < 0 || row >= height) {
+      throw new IllegalArgumentException("Pixel location invalid");
+    }
+    int channelCount = getChannelCount();
+    for (int j = 0; j < width; j++) {
+      Pixel pixel = pixels[row][j];
+      for (int k = 0; k < channelCount; k++) {
+        rowValues[j * channelCount + k] = pixel.getChannelValue(k);
+      }
+    }
+  }
+
 
   @Override
   public Image getIntensityImage() {
@@ -205,7 +276,7 @@ public class ImagePixelImpl implements Image {
         setPixelValue(resultPixels, i, j, greyscale);
       }
     }
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels);
   }
 
   @Override
@@ -238,15 +309,40 @@ public class ImagePixelImpl implements Image {
 
   @Override
   public Image compress(int compressPercent) {
+    return compress(compressPercent, Wavelet.HAAR);
+  }
+
+  @Override
+  public Image compress(int compressPercent, Wavelet wavelet) {
+    return getDecomposition(wavelet).reconstruct(compressPercent);
+  }
+
+  @Override
+  public int getCompressionPercentForPsnr(double targetPsnr) {
+    return getCompressionPercentForPsnr(targetPsnr, Wavelet.HAAR);
+  }
 
-    if (compressPercent < 0 || compressPercent > 100) {
-      throw new IllegalArgumentException("Compress percentage invalid");
+  @Override
+  public int getCompressionPercentForPsnr(double targetPsnr, Wavelet wavelet) {
+    return getDecomposition(wavelet).getCompressionPercentForPsnr(targetPsnr);
+  }
+
+  @Override
+  public Image compressInBlocks(int compressPercent, int blockSize, Wavelet wavelet) {
+    return new BlockWaveletCompressor(blockSize, wavelet).compress(this, compressPercent);
+  }
+
+  /* The forward transform depends only on the pixels of this image, which only change when they are
+     modified in place, so it is computed once per wavelet and reused for every compression
+     percentage for as long as memory allows or until the image is modified. */
+  private synchronized WaveletDecomposition getDecomposition(Wavelet wavelet) {
+    SoftReference<WaveletDecomposition> reference = decompositions.get(wavelet);
+    WaveletDecomposition decomposition = reference == null ? null : reference.get();
+    if (decomposition == null) {
+      decomposition = new WaveletDecomposition(this, wavelet);
+      decompositions.put(wavelet, new SoftReference<>(decomposition));
     }
-    float[][][] resultPixels = getPaddedPixels();
-    haarTransform(resultPixels);
-    applyThreshold(compressPercent, resultPixels);
-    invHaar(resultPixels);
-    return new ImagePixelImpl(removePad(resultPixels), imageType);
+    return decomposition;
   }
 
 
@@ -254,23 +350,18 @@ public class ImagePixelImpl implements Image {
   public List<Image> splitVertically(int splitPercent) {
     int splitPosition = Math.round(splitPercent * width / 100f);
     if (splitPosition <= 0) {
-      return Arrays.asList(null, new ImagePixelImpl(pixels, imageType));
+      return Arrays.asList(null, this);
     } else if (splitPosition >= width) {
-      return Arrays.asList(new ImagePixelImpl(pixels, imageType), null);
+      return Arrays.asList(this, null);
     }
-    Pixel[][] leftImagePixels = new Pixel[height][splitPosition];
-    Pixel[][] rightImagePixels = new Pixel[height][width - splitPosition];
+    Pixel[][] leftImagePixels = new Pixel[height][];
+    Pixel[][] rightImagePixels = new Pixel[height][];
     for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        if (j >= splitPosition) {
-          setPixelValue(rightImagePixels, i, j - splitPosition, pixels[i][j].getChannelValues());
-        } else {
-          setPixelValue(leftImagePixels, i, j, pixels[i][j].getChannelValues());
-        }
-      }
+      leftImagePixels[i] = Arrays.copyOfRange(pixels[i], 0, splitPosition);
+      rightImagePixels[i] = Arrays.copyOfRange(pixels[i], splitPosition, width);
     }
-    Image leftImage = new ImagePixelImpl(leftImagePixels, imageType);
-    Image rightImage = new ImagePixelImpl(rightImagePixels, imageType);
+    Image leftImage = new ImagePixelImpl(imageType, leftImagePixels, pixelBlocks);
+    Image rightImage = new ImagePixelImpl(imageType, rightImagePixels, pixelBlocks);
 
     return Arrays.asList(leftImage, rightImage);
   }
@@ -280,17 +371,28 @@ public class ImagePixelImpl implements Image {
     if (image.getHeight() != height) {
       throw new IllegalArgumentException("The given image cannot be appended to this image");
     }
-    Pixel[][] newImagePixels = new Pixel[height][width + image.getWidth()];
+    Pixel[][] newImagePixels = new Pixel[height][];
     for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width + image.getWidth(); j++) {
-        if (j < width) {
-          setPixelValue(newImagePixels, i, j, pixels[i][j].getChannelValues());
-        } else {
-          setPixelValue(newImagePixels, i, j, image.getPixelValues(i, j - width));
-        }
+      newImagePixels[i] = Arrays.copyOf(pixels[i], width + image.getWidth());
+      for (int j = width; j < width + image.getWidth(); j++) {
+        setPixelValue(newImagePixels, i, j, image.getPixelValues(i, j - width));
       }
     }
-    return new ImagePixelImpl(newImagePixels, imageType);
+    List<PixelBlock> newPixelBlocks = new ArrayList<>(pixelBlocks);
+    newPixelBlocks.add(new PixelBlock((long) image.getWidth() * height));
+    return new ImagePixelImpl(imageType, newImagePixels, newPixelBlocks);
+  }
+
+  /**
+   * Returns the blocks that the pixels of this image belong to. The pixels created together by one
+   * operation make up a block, and an image that shares pixels with the image it was computed from
+   * has the blocks of those pixels, so that images sharing pixels can be told apart from images
+   * that merely have the same values.
+   *
+   * @return the blocks of the pixels of this image
+   */
+  List<PixelBlock> getPixelBlocks() {
+    return pixelBlocks;
   }
 
   @Override
@@ -341,176 +443,6 @@ public class ImagePixelImpl implements Image {
     return coefficients;
   }
 
-  private float[][][] removePad(float[][][] pixels) {
-    float[][][] result = new float[height][width][getChannelCount()];
-    for (int c = 0; c < getChannelCount(); c++) {
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          result[i][j][c] = Math.max(0, Math.min(255, pixels[i][j][c]));
-        }
-      }
-    }
-    return result;
-  }
-
-  private void applyThreshold(float compressPercent, float[][][] transformed) {
-    // think abt cases
-    if (compressPercent == 0) {
-      return;
-    }
-
-    compressPercent = compressPercent / 100;
-    SortedSet<Float> uniqueElementSet = getUniqueElements(transformed);
-    List<Float> sortedElementList = uniqueElementSet.stream().collect(Collectors.toList());
-    int num = (int) (compressPercent * sortedElementList.size());
-    float threshold = sortedElementList.get(num - 1);
-    for (int i = 0; i < getChannelCount(); i++) {
-      for (int m = 0; m < transformed.length; m++) {
-        for (int n = 0; n < transformed[0].length; n++) {
-          if ((Math.abs(transformed[m][n][i])) <= threshold) {
-            transformed[m][n][i] = 0;
-          }
-        }
-      }
-    }
-  }
-
-  private SortedSet<Float> getUniqueElements(float[][][] transformedImage) {
-    SortedSet<Float> arr = new TreeSet<>();
-    for (int i = 0; i < getChannelCount(); i++) {
-      for (int m = 0; m < transformedImage.length; m++) {
-        for (int n = 0; n < transformedImage.length; n++) {
-          arr.add(Math.abs(transformedImage[m][n][i]));
-        }
-      }
-    }
-    return arr;
-  }
-
-
-  private void haarTransform(float[][][] pixelsToBeTransformed) {
-    for (int a = 0; a < getChannelCount(); a++) {
-      int c = pixelsToBeTransformed.length; // Find the maximum dimension
-      while (c > 1) {
-        applyRowTransformation(pixelsToBeTransformed, c, a, this::transform);
-        applyColumnTransformation(pixelsToBeTransformed, c, a, this::transform);
-        c = c / 2;
-      }
-    }
-  }
-
-  private List<Float> extractCol(float[][][] pixelsToBeTransformed, int j, int c, int a) {
-    List<Float> result = new ArrayList<>();
-    for (int i = 0; i < c; i++) {
-      result.add(pixelsToBeTransformed[i][j][a]);
-    }
-    return result;
-  }
-
-  private List<Float> extractRow(float[][] pixels, int c, int a) {
-    List<Float> result = new ArrayList<>();
-    for (int i = 0; i < c; i++) {
-      result.add(pixels[i][a]);
-    }
-    return result;
-  }
-
-  private void invHaar(float[][][] pixelsTransformed) {
-
-    for (int a = 0; a < getChannelCount(); a++) {
-      int c = 2;
-      while (c <= pixelsTransformed.length) {
-        applyColumnTransformation(pixelsTransformed, c, a, this::invTransform);
-        applyRowTransformation(pixelsTransformed, c, a, this::invTransform);
-        c = c * 2;
-      }
-    }
-  }
-
-  private void applyRowTransformation(float[][][] pixelsTransformed, int c, int a,
-                                      Function<List<Float>, List<Float>> transformFunction) {
-    for (int i = 0; i < c; i++) {
-      List<Float> rowValues = extractRow(pixelsTransformed[i], c, a);
-      List<Float> transformed = transformFunction.apply(rowValues);
-      for (int j = 0; j < c; j++) {
-        pixelsTransformed[i][j][a] = transformed.get(j);
-      }
-    }
-  }
-
-  private void applyColumnTransformation(float[][][] pixelsTransformed, int c, int a,
-                                         Function<List<Float>, List<Float>> transformFunction) {
-    for (int j = 0; j < c; j++) {
-      List<Float> colValues = extractCol(pixelsTransformed, j, c, a);
-      List<Float> transformed = transformFunction.apply(colValues);
-      for (int i = 0; i < c; i++) {
-        pixelsTransformed[i][j][a] = transformed.get(i);
-      }
-    }
-  }
-
-  private float[][][] getPaddedPixels() {
-    int n = Math.max(height, width);
-    int paddedSize = 1;
-    while (paddedSize < n) {
-      paddedSize *= 2;
-    }
-
-    float[][][] result = new float[paddedSize][paddedSize][getChannelCount()];
-    for (int i = 0; i < paddedSize; i++) {
-      for (int j = 0; j < paddedSize; j++) {
-        if ((i >= height) || (j >= width)) {
-          result[i][j] = new float[getChannelCount()];
-        } else {
-          result[i][j] = pixels[i][j].getChannelValues();
-        }
-      }
-    }
-    return result;
-  }
-
-  private List<Float> transform(List<Float> arr) {
-    int n = arr.size();
-    List<Float> result = new ArrayList<>(Collections.nCopies(n, 0f));
-
-    for (int i = 0; i < n / 2; i = i + 1) {
-      int sumIndex = i * 2;
-      float a = arr.get(sumIndex);
-      float b = arr.get(sumIndex + 1);
-      // Compute the sum and difference coefficients
-      result.set(i, (float) ((a + b) / Math.sqrt(2)));
-      result.set(n / 2 + i, (float) ((a - b) / Math.sqrt(2)));
-    }
-
-    return result;
-  }
-
-
-  private List<Float> invTransform(List<Float> arr) {
-    int n = arr.size() / 2;
-    double[] avg = new double[n];
-    double[] diff = new double[n];
-
-    int j = n;
-    for (int i = 0; i < n; i++, j++) {
-      float a = arr.get(i);
-      float b = arr.get(j);
-      double av = (a + b) / Math.sqrt(2);
-      double de = (a - b) / Math.sqrt(2);
-
-      avg[i] = av;
-      diff[i] = de;
-    }
-
-    List<Float> result = new ArrayList<>();
-    for (int i = 0; i < n; i++) {
-      result.add((float) avg[i]);
-      result.add((float) diff[i]);
-    }
-
-    return result;
-  }
-
   private int getColorChannelIndex(ColorChannel colorChannel) {
     int index = imageType.colorChannels.indexOf(colorChannel);
     if (index < 0) {
@@ -533,7 +465,7 @@ public class ImagePixelImpl implements Image {
         resultPixels[i][j] = pixels[i][j].transformPixel(transformCoefficients);
       }
     }
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels);
   }
 
   /**
@@ -556,7 +488,7 @@ public class ImagePixelImpl implements Image {
         setPixelValue(resultPixel, i, j, filterValues);
       }
     }
-    return new ImagePixelImpl(resultPixel, imageType);
+    return new ImagePixelImpl(imageType, resultPixel);
   }
 
   /**
@@ -603,7 +535,95 @@ public class ImagePixelImpl implements Image {
       }
     }
 
-    return new ImagePixelImpl(resultPixels, imageType);
+    return new ImagePixelImpl(imageType, resultPixels);
+  }
+
+  /**
+   * Brightens this image in place. Unlike the operations of {@link Image}, the methods modifying
+   * an image in place change the image itself, so they may only be used by the holder of an image
+   * that nothing else holds and whose pixels no other image shares.
+   *
+   * @param brightnessConstant the value added to every channel of every pixel
+   */
+  void brightenInPlace(float brightnessConstant) {
+    modifyPixels((pixel, values) -> {
+      for (int k = 0; k < values.length; k++) {
+        values[k] = Math.max(0, Math.min(255, pixel.getChannelValue(k) + brightnessConstant));
+      }
+    });
+  }
+
+  /**
+   * Turns this image into its intensity greyscale image in place.
+   */
+  void toIntensityInPlace() {
+    toGreyscaleInPlace(Pixel::getIntensity);
+  }
+
+  /**
+   * Turns this image into its luma greyscale image in place.
+   */
+  void toLumaInPlace() {
+    toGreyscaleInPlace(Pixel::getLuma);
+  }
+
+  /**
+   * Turns this image into its value greyscale image in place.
+   */
+  void toValueInPlace() {
+    toGreyscaleInPlace(Pixel::getValue);
+  }
+
+  /**
+   * Turns this image into its sepia toned image in place.
+   */
+  void toSepiaInPlace() {
+    modifyPixels((pixel, values) -> {
+      for (int k = 0; k < values.length; k++) {
+        float sum = 0;
+        for (int l = 0; l < values.length; l++) {
+          sum += SEPIA_TRANSFORMER[k][l] * pixel.getChannelValue(l);
+        }
+        values[k] = Math.max(0, Math.min(255, sum));
+      }
+    });
+  }
+
+  /**
+   * Turns this image in place into the image of one of its color channels, with 0 as the value of
+   * every other channel.
+   *
+   * @param colorChannel the channel that is kept
+   * @throws IllegalArgumentException if the image does not have the channel
+   */
+  void toComponentInPlace(ColorChannel colorChannel) throws IllegalArgumentException {
+    int channel = getColorChannelIndex(colorChannel);
+    modifyPixels((pixel, values) -> {
+      Arrays.fill(values, 0);
+      values[channel] = pixel.getChannelValue(channel);
+    });
+  }
+
+  private void toGreyscaleInPlace(Function<Pixel, Float> component) {
+    modifyPixels((pixel, values) -> Arrays.fill(values, component.apply(pixel)));
+  }
+
+  /* Sets the channels of every pixel to the values computed by the given modification, reusing one
+   array for the values, and forgets the decompositions of the values the image had before. */
+  private void modifyPixels(PixelModification modification) {
+    float[] values = new float[getChannelCount()];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        Pixel pixel = pixels[i][j];
+        modification.modify(pixel, values);
+        for (int k = 0; k < values.length; k++) {
+          pixel.setColorChannel(k, values[k]);
+        }
+      }
+    }
+    synchronized (this) {
+      decompositions.clear();
+    }
   }
 
   /**
@@ -615,4 +635,32 @@ public class ImagePixelImpl implements Image {
     resultPixels[i][j].setColor(channelValues);
   }
 
+  /**
+   * Computes the new values of the channels of a pixel that is modified in place.
+   */
+  private interface PixelModification {
+
+    void modify(Pixel pixel, float[] values);
+  }
+
+  /**
+   * A number of pixels that were created together, which may be shared by several images.
+   */
+  static final class PixelBlock {
+
+    private final long pixelCount;
+
+    private PixelBlock(long pixelCount) {
+      this.pixelCount = pixelCount;
+    }
+
+    /**
+     * Returns the number of pixels in the block.
+     *
+     * @return the number of pixels
+     */
+    long getPixelCount() {
+      return pixelCount;
+    }
+  }
 }
@@ -1,6 +1,8 @@
 package ime.model;
 
 import ime.controller.ImageDrawer;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.List;
 import java.util.function.BiConsumer;
 
@@ -8,7 +10,7 @@ import java.util.function.BiConsumer;
  * An Image Repository is a class that manages multiple images and performs operations on them. It
  * is able to tag an image to a particular name and also save images that it has already tagged.
  */
-public interface ImageRepository {
+public interface ImageRepository extends Closeable {
 
   /**
    * This method is used to load an image at a given file path and tag it the given name for the
@@ -22,6 +24,18 @@ public interface ImageRepository {
    */
   void loadImage(float[][][] image, String imageName) throws IllegalArgumentException;
 
+  /**
+   * This method is used to load an image whose rows are read from the given source and tag it the
+   * given name. The rows are read straight into the stored image, without an intermediate 3D
+   * array.
+   *
+   * @param source    the source of the rows of the image
+   * @param imageName the name for the image to be associated with
+   * @throws IOException              if a row could not be read from the source
+   * @throws IllegalArgumentException if the source has no pixels or holds invalid values
+   */
+  void loadImage(ImageRowSource source, String imageName) throws IOException;
+
   /**
    * Retrieve the image that is tagged with the given image name.
    *
@@ -31,6 +45,29 @@ public interface ImageRepository {
    */
   float[][][] getImage(String imageName) throws IllegalArgumentException;
 
+  /**
+   * Open the image that is tagged with the given image name for reading its rows straight from the
+   * stored image, without copying it into a 3D array first. The rows are those of the image as it
+   * is when it is opened, and the source should be closed once they have been read.
+   *
+   * @param imageName The name that the image is tagged with
+   * @return a source of the rows of the image
+   * @throws IllegalArgumentException if imageName has not been created/tagged yet.
+   */
+  ImageRowSource getImageRows(String imageName) throws IllegalArgumentException;
+
+  /**
+   * Returns a number that identifies the image currently tagged with the given image name. The
+   * number changes every time an image is tagged with the name or the image tagged with it is
+   * modified, so anything derived from the image (such as a rendering of it) can be reused for as
+   * long as the number stays the same.
+   *
+   * @param imageName The name that the image is tagged with
+   * @return the version of the image tagged with the name
+   * @throws IllegalArgumentException if imageName has not been created/tagged yet.
+   */
+  long getImageVersion(String imageName) throws IllegalArgumentException;
+
 
   /**
    * Split this image into its respective color channels and store the resulting images into the
@@ -181,6 +218,14 @@ public interface ImageRepository {
    */
   boolean isImagePresent(String imageNameSrc);
 
+  /**
+   * Removes the image with the given name from the repository, so that its storage can be
+   * reclaimed once nothing else refers to it. Nothing happens if there is no such image.
+   *
+   * @param imageName image name to be removed.
+   */
+  void removeImage(String imageName);
+
   /**
    * compresses the given image by the given amount of percentage.
    *
@@ -192,6 +237,78 @@ public interface ImageRepository {
   void compress(String imageNameSrc, String imageNameDest, int compressPercent)
       throws IllegalArgumentException;
 
+  /**
+   * compresses the given image by the given amount of percentage using the given wavelet.
+   *
+   * @param imageNameSrc    name of source file.
+   * @param imageNameDest   name of destination file.
+   * @param compressPercent amount to be compressed.
+   * @param wavelet         wavelet used for the compression.
+   * @throws IllegalArgumentException when the values passed are invalid.
+   */
+  void compress(String imageNameSrc, String imageNameDest, int compressPercent, Wavelet wavelet)
+      throws IllegalArgumentException;
+
+  /**
+   * compresses the given image by the given amount of percentage, treating the image as
+   * independent square blocks of the given size that are compressed in parallel.
+   *
+   * @param imageNameSrc    name of source file.
+   * @param imageNameDest   name of destination file.
+   * @param compressPercent amount to be compressed.
+   * @param blockSize       side of a block, a power of two greater than 1.
+   * @param wavelet         wavelet used for the compression.
+   * @throws IllegalArgumentException when the values passed are invalid.
+   */
+  void compressInBlocks(String imageNameSrc, String imageNameDest, int compressPercent,
+      int blockSize, Wavelet wavelet) throws IllegalArgumentException;
+
+  /**
+   * Generates a split view of the compression of the source image and saves it into the
+   * destination image. Unlike {@link #preview}, the whole source image is compressed and only the
+   * part to the left of the split is kept, so repeated previews of the same source at different
+   * percentages reuse its wavelet decomposition.
+   *
+   * @param imageNameSrc    name of source image.
+   * @param imageNameDest   name of destination image.
+   * @param compressPercent amount to be compressed.
+   * @param verticalSplit   The percentage of vertical split for the source image (0-100).
+   * @param wavelet         wavelet used for the compression.
+   * @throws IllegalArgumentException If the verticalSplit or compressPercent value is outside the
+   *                                  valid range or if the source image is not found.
+   */
+  void previewCompress(String imageNameSrc, String imageNameDest, int compressPercent,
+      int verticalSplit, Wavelet wavelet) throws IllegalArgumentException;
+
+  /**
+   * Compresses the given image by the largest percentage that still keeps the peak
+   * signal-to-noise ratio of the result at or above the given target.
+   *
+   * @param imageNameSrc  name of source image.
+   * @param imageNameDest name of destination image.
+   * @param targetPsnr    the minimum acceptable peak signal-to-noise ratio in dB.
+   * @return the compression percentage that was used.
+   * @throws IllegalArgumentException if the source image is not found or the target is not a
+   *                                  positive number.
+   */
+  int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr)
+      throws IllegalArgumentException;
+
+  /**
+   * Compresses the given image using the given wavelet by the largest percentage that still keeps
+   * the peak signal-to-noise ratio of the result at or above the given target.
+   *
+   * @param imageNameSrc  name of source image.
+   * @param imageNameDest name of destination image.
+   * @param targetPsnr    the minimum acceptable peak signal-to-noise ratio in dB.
+   * @param wavelet       wavelet used for the compression.
+   * @return the compression percentage that was used.
+   * @throws IllegalArgumentException if the source image is not found or the target is not a
+   *                                  positive number.
+   */
+  int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr,
+      Wavelet wavelet) throws IllegalArgumentException;
+
   /**
    * Generates a preview of an image transformation operation and saves the resulting image. The
    * method takes a source image, applies an operation to it, and stores the result with the
@@ -252,4 +369,14 @@ public interface ImageRepository {
    * @throws IllegalArgumentException If the source image is not found.
    */
   void toHistogram(String imageNameSrc, String imageNameDest, ImageDrawer imageDrawer);
+
+  /**
+   * Releases the resources other than memory that the repository holds, such as files of images
+   * it has moved out of memory. Repositories that hold no such resources do nothing.
+   *
+   * @throws IOException if a resource could not be released
+   */
+  @Override
+  default void close() throws IOException {
+  }
 }
@@ -1,26 +1,62 @@
 package ime.model;
 
 import ime.controller.ImageDrawer;
+import ime.model.BoundedImageStore.StoredImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * This implementation of {@link ImageRepository} stores multiple images as a map between the tagged
- * name of the image to its actual {@link Image} object.
+ * name of the image to its actual {@link Image} object. It may be shared by several threads: every
+ * image is looked up once per operation, the operation runs without holding any lock, and an
+ * operation whose source and destination are the same name only replaces the image it was computed
+ * from, trying again on the new image if another thread replaced it first.
+ *
+ * <p>Images are held while they are read, including by the row sources handed out for saving and
+ * rendering until they are closed. An operation on the pixels one by one whose source and
+ * destination are the same name modifies the image in place when nothing else holds it and no
+ * other image shares its pixels, and computes a new image otherwise.
  */
 public class ImageRepositoryImpl implements ImageRepository {
 
   /**
-   * map for storing the image with its name as the key.
+   * store of the images with their names as the keys, along with a version for every image stored
+   * under a name. It may be read and updated from several threads at once.
    */
-  private final Map<String, Image> imageMap;
+  private final BoundedImageStore imageMap;
 
+  /**
+   * Constructs a repository that keeps all of its images in memory.
+   */
   public ImageRepositoryImpl() {
-    imageMap = new HashMap<>();
+    this(Long.MAX_VALUE, Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Constructs a repository that keeps the estimated pixel bytes of the images held in memory
+   * within a budget, counting about 52 bytes per pixel and counting pixels shared by several images
+   * once. The least recently used images beyond it are spilled to a scratch file in the given
+   * directory and read back when they are used again.
+   *
+   * @param memoryBudget     the most pixel bytes that the images in memory may take up
+   * @param scratchDirectory the directory of the scratch file of spilled images
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public ImageRepositoryImpl(long memoryBudget, Path scratchDirectory)
+      throws IllegalArgumentException {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("The memory budget should not be negative");
+    }
+    imageMap = new BoundedImageStore(memoryBudget, scratchDirectory);
   }
 
 
@@ -30,10 +66,29 @@ public class ImageRepositoryImpl implements ImageRepository {
     imageMap.put(imageName, image);
   }
 
+  @Override
+  public void loadImage(ImageRowSource source, String imageName) throws IOException {
+    Image image = new ImagePixelImpl(source, ImageType.RGB);
+    imageMap.put(imageName, image);
+  }
+
+  @Override
+  public ImageRowSource getImageRows(String imageName) {
+    Image image = acquireImage(imageName);
+    return new StoredImageRowSource(image, () -> imageMap.release(image));
+  }
+
+  @Override
+  public long getImageVersion(String imageName) {
+    return getStoredImage(imageName).getVersion();
+  }
+
   @Override
   public float[][][] getImage(String imageName) {
-    validateImagePresent(imageName);
-    Image image = imageMap.get(imageName);
+    return readImage(imageName, this::toPixelValues);
+  }
+
+  private float[][][] toPixelValues(Image image) {
     int height = image.getHeight();
     int width = image.getWidth();
     int channelCount = image.getChannelCount();
@@ -51,8 +106,7 @@ public class ImageRepositoryImpl implements ImageRepository {
   @Override
   public void splitImageIntoColorChannels(String srcImage, List<String> destImageNames)
       throws IllegalArgumentException {
-    validateImagePresent(srcImage);
-    List<Image> destImages = imageMap.get(srcImage).splitIntoColorChannels();
+    List<Image> destImages = readImage(srcImage, Image::splitIntoColorChannels);
     for (int i = 0; i < destImages.size(); i++) {
       imageMap.put(destImageNames.get(i), destImages.get(i));
     }
@@ -61,110 +115,94 @@ public class ImageRepositoryImpl implements ImageRepository {
   @Override
   public void combineImages(List<String> srcImageNames, String imageDestName)
       throws IllegalArgumentException {
-    validateImagesPresent(srcImageNames);
     List<Image> srcImageList = new ArrayList<>();
-    Image firstSrcImage = imageMap.get(srcImageNames.get(0));
-    for (int i = 1; i < srcImageNames.size(); i++) {
-      srcImageList.add(imageMap.get(srcImageNames.get(i)));
+    try {
+      for (String srcImageName : srcImageNames) {
+        srcImageList.add(acquireImage(srcImageName));
+      }
+      Image firstSrcImage = srcImageList.get(0);
+      Image newImage = firstSrcImage.combine(srcImageList.subList(1, srcImageList.size()));
+      imageMap.put(imageDestName, newImage);
+    } finally {
+      srcImageList.forEach(imageMap::release);
     }
-    Image newImage = firstSrcImage.combine(srcImageList);
-    imageMap.put(imageDestName, newImage);
   }
 
   @Override
   public void brightenImage(String imageNameSrc, String imageNameDest, float brightnessConstant)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).brighten(brightnessConstant);
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, image -> image.brighten(brightnessConstant),
+        image -> image.brightenInPlace(brightnessConstant));
   }
 
   @Override
   public void blurImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).blur();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::blur);
   }
 
   @Override
   public void sharpenImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).sharpen();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::sharpen);
   }
 
   @Override
   public void flipImageHorizontally(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).flipHorizontally();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::flipHorizontally);
   }
 
   @Override
   public void flipImageVertically(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).flipVertically();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::flipVertically);
   }
 
   @Override
   public void toIntensityGreyScale(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getIntensityImage();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getIntensityImage,
+        ImagePixelImpl::toIntensityInPlace);
   }
 
   @Override
   public void toLumaGreyScale(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getLumaImage();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getLumaImage, ImagePixelImpl::toLumaInPlace);
   }
 
   @Override
   public void toValueGreyScale(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getValueImage();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getValueImage, ImagePixelImpl::toValueInPlace);
   }
 
   @Override
   public void toSepiaImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getSepia();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getSepia, ImagePixelImpl::toSepiaInPlace);
   }
 
   @Override
   public void toRedChannelImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getRedComponent();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getRedComponent,
+        image -> image.toComponentInPlace(ColorChannel.RED));
   }
 
   @Override
   public void toGreenChannelImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getGreenComponent();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getGreenComponent,
+        image -> image.toComponentInPlace(ColorChannel.GREEN));
   }
 
   @Override
   public void toBlueChannelImage(String imageNameSrc, String imageNameDest)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).getBlueComponent();
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, Image::getBlueComponent,
+        image -> image.toComponentInPlace(ColorChannel.BLUE));
   }
 
   @Override
@@ -172,12 +210,70 @@ public class ImageRepositoryImpl implements ImageRepository {
     return imageMap.containsKey(imageName);
   }
 
+  @Override
+  public void removeImage(String imageName) {
+    imageMap.remove(imageName);
+  }
+
+  /* Closes the scratch file of the store, after which spilled images can not be read back. */
+  @Override
+  public void close() throws IOException {
+    imageMap.close();
+  }
+
   @Override
   public void compress(String imageNameSrc, String imageNameDest, int compressPercent)
       throws IllegalArgumentException {
-    validateImagePresent(imageNameSrc);
-    Image newImage = imageMap.get(imageNameSrc).compress(compressPercent);
-    imageMap.put(imageNameDest, newImage);
+    update(imageNameSrc, imageNameDest, image -> image.compress(compressPercent));
+  }
+
+  @Override
+  public void compress(String imageNameSrc, String imageNameDest, int compressPercent,
+      Wavelet wavelet) throws IllegalArgumentException {
+    update(imageNameSrc, imageNameDest, image -> image.compress(compressPercent, wavelet));
+  }
+
+  @Override
+  public void compressInBlocks(String imageNameSrc, String imageNameDest, int compressPercent,
+      int blockSize, Wavelet wavelet) throws IllegalArgumentException {
+    update(imageNameSrc, imageNameDest,
+        image -> image.compressInBlocks(compressPercent, blockSize, wavelet));
+  }
+
+  @Override
+  public void previewCompress(String imageNameSrc, String imageNameDest, int compressPercent,
+      int verticalSplit, Wavelet wavelet) throws IllegalArgumentException {
+    if (verticalSplit < 0 || verticalSplit > 100) {
+      throw new IllegalArgumentException("Invalid split position");
+    }
+    update(imageNameSrc, imageNameDest, image -> {
+      List<Image> compressedParts = image.compress(compressPercent, wavelet)
+          .splitVertically(verticalSplit);
+      List<Image> originalParts = image.splitVertically(verticalSplit);
+      if (compressedParts.get(0) == null) {
+        return originalParts.get(1);
+      } else if (originalParts.get(1) == null) {
+        return compressedParts.get(0);
+      }
+      return compressedParts.get(0).append(originalParts.get(1));
+    });
+  }
+
+  @Override
+  public int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr)
+      throws IllegalArgumentException {
+    return compressToPsnr(imageNameSrc, imageNameDest, targetPsnr, Wavelet.HAAR);
+  }
+
+  @Override
+  public int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr,
+      Wavelet wavelet) throws IllegalArgumentException {
+    AtomicInteger compressPercent = new AtomicInteger();
+    update(imageNameSrc, imageNameDest, image -> {
+      compressPercent.set(image.getCompressionPercentForPsnr(targetPsnr, wavelet));
+      return image.compress(compressPercent.get(), wavelet);
+    });
+    return compressPercent.get();
   }
 
   @Override
@@ -186,35 +282,33 @@ public class ImageRepositoryImpl implements ImageRepository {
     if (verticalSplit < 0 || verticalSplit > 100) {
       throw new IllegalArgumentException("Invalid split position");
     }
-    validateImagePresent(imageNameSrc);
-    List<Image> images = imageMap.get(imageNameSrc).splitVertically(verticalSplit);
+    update(imageNameSrc, imageNameDest,
+        image -> getOperatedImagePart(image.splitVertically(verticalSplit), operation));
+  }
+
+  private Image getOperatedImagePart(List<Image> images, BiConsumer<String, String> operation) {
     //If the vertical split provides empty left part and whole image right part
     if (images.get(0) == null) {
-      imageMap.put(imageNameDest, images.get(1));
-      return;
+      return images.get(1);
     }
-    addOperatedImagePart(imageNameDest, operation, images);
-  }
-
-  private void addOperatedImagePart(String imageNameDest, BiConsumer<String, String> operation,
-      List<Image> images) {
-    String tempKey = getTempKey();
-    imageMap.put(tempKey, images.get(0));
-    operation.accept(tempKey, tempKey);
-    //If the vertical split provided empty right part and whole image left part(now operated)
-    if (images.get(1) == null) {
-      imageMap.put(imageNameDest, imageMap.get(tempKey));
-    } else {
-      imageMap.put(imageNameDest, imageMap.get(tempKey).append(images.get(1)));
+    String tempKey = putTemporaryImage(images.get(0));
+    try {
+      operation.accept(tempKey, tempKey);
+      //If the vertical split provided empty right part and whole image left part(now operated)
+      if (images.get(1) == null) {
+        return getStoredImage(tempKey).getImage();
+      }
+      return readImage(tempKey, image -> image.append(images.get(1)));
+    } finally {
+      imageMap.remove(tempKey);
     }
-    imageMap.remove(tempKey);
   }
 
-  /* This method returns a temporary key that does not already exist in the imageMap */
-  private String getTempKey() {
+  /* This method stores the image under a temporary key that no other image has, and returns the
+   key. The key is claimed atomically, so that two previews never share one. */
+  private String putTemporaryImage(Image image) {
     String tempKey = UUID.randomUUID().toString();
-    // Check if the key exists in the HashMap
-    while (isImagePresent(tempKey)) {
+    while (!imageMap.putIfAbsent(tempKey, image)) {
       tempKey = UUID.randomUUID().toString();
     }
     return tempKey;
@@ -222,9 +316,7 @@ public class ImageRepositoryImpl implements ImageRepository {
 
   @Override
   public void levelsAdjust(String imageNameSrc, String destImage, int b, int m, int w) {
-    validateImagePresent(imageNameSrc);
-    Image image = imageMap.get(imageNameSrc).levelAdjust(b, m, w);
-    imageMap.put(destImage, image);
+    update(imageNameSrc, destImage, image -> image.levelAdjust(b, m, w));
   }
 
   private int calculateAveragePeakValue(Image image) {
@@ -239,8 +331,10 @@ public class ImageRepositoryImpl implements ImageRepository {
 
   @Override
   public void colorCorrect(String imageNameSrc, String imageNameDest) {
-    validateImagePresent(imageNameSrc);
-    Image image = imageMap.get(imageNameSrc);
+    update(imageNameSrc, imageNameDest, this::correctColors);
+  }
+
+  private Image correctColors(Image image) {
     HistogramImpl hist = new HistogramImpl(image);
 
     int averagePeakValue = calculateAveragePeakValue(image);
@@ -256,13 +350,12 @@ public class ImageRepositoryImpl implements ImageRepository {
     }
     Image newimage = limages.get(0);
     limages.remove(0);
-    imageMap.put(imageNameDest, newimage.combine(limages));
+    return newimage.combine(limages);
   }
 
   @Override
   public void toHistogram(String imageNameSrc, String imageNameDest, ImageDrawer imageDrawer) {
-    validateImagePresent(imageNameSrc);
-    Histogram histogram = new HistogramImpl(imageMap.get(imageNameSrc));
+    Histogram histogram = readImage(imageNameSrc, HistogramImpl::new);
     float[][][] histogramImage = new HistogramDrawerImpl(256, 256, imageDrawer).visualizeHistogram(
         histogram);
     Image newImage = new ImagePixelImpl(histogramImage, ImageType.RGB);
@@ -270,13 +363,69 @@ public class ImageRepositoryImpl implements ImageRepository {
     imageMap.put(imageNameDest, newImage);
   }
 
-  private void validateImagePresent(String imageName) throws IllegalArgumentException {
-    if (!this.isImagePresent(imageName)) {
-      throw new IllegalArgumentException("image name invalid");
+  private void update(String imageNameSrc, String imageNameDest, UnaryOperator<Image> operation)
+      throws IllegalArgumentException {
+    update(imageNameSrc, imageNameDest, operation, null);
+  }
+
+  /* Stores the result of an operation on the source image under the destination name. When both
+   are the same name, the source image is modified in place by the given modification if there is
+   one and nothing else holds the image, and otherwise the result only replaces the very image it
+   was computed from: if another thread has stored a different image under the name in the
+   meantime, the operation is applied to that image instead, so that updates of a name from several
+   threads are never lost. */
+  private void update(String imageNameSrc, String imageNameDest, UnaryOperator<Image> operation,
+      Consumer<ImagePixelImpl> modification) throws IllegalArgumentException {
+    while (true) {
+      StoredImage source = getStoredImage(imageNameSrc, true);
+      try {
+        boolean sameName = imageNameSrc.equals(imageNameDest);
+        if (sameName && modification != null
+            && imageMap.modify(imageNameDest, source.getVersion(), modification)) {
+          return;
+        }
+        Image result = operation.apply(source.getImage());
+        if (!sameName) {
+          imageMap.put(imageNameDest, result);
+          return;
+        }
+        if (imageMap.replace(imageNameDest, source.getVersion(), result)) {
+          return;
+        }
+      } finally {
+        imageMap.release(source.getImage());
+      }
+    }
+  }
+
+  /* Applies a reader to the image with the given name while holding the image. */
+  private <T> T readImage(String imageName, Function<Image, T> reader)
+      throws IllegalArgumentException {
+    Image image = acquireImage(imageName);
+    try {
+      return reader.apply(image);
+    } finally {
+      imageMap.release(image);
     }
   }
 
-  private void validateImagesPresent(List<String> srcImageNames) throws IllegalArgumentException {
-    srcImageNames.forEach(this::validateImagePresent);
+  /* Returns the image with the given name, which is held until it is released. */
+  private Image acquireImage(String imageName) throws IllegalArgumentException {
+    return getStoredImage(imageName, true).getImage();
+  }
+
+  private StoredImage getStoredImage(String imageName) throws IllegalArgumentException {
+    return getStoredImage(imageName, false);
+  }
+
+  /* Looks the image up once, so that it cannot be removed between checking and reading it, and
+   holds it if asked to. */
+  private StoredImage getStoredImage(String imageName, boolean acquire)
+      throws IllegalArgumentException {
+    StoredImage stored = acquire ? imageMap.acquire(imageName) : imageMap.getStored(imageName);
+    if (stored == null) {
+      throw new IllegalArgumentException("image name invalid");
+    }
+    return stored;
   }
 }
@@ -0,0 +1,36 @@
+package ime.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An ImageRowSource supplies the pixel values of an image one row at a time, so that an image can
+ * be built straight from a decoder without first collecting all of its values in a 3D float array.
+ * Rows are read in order from the top of the image.
+ */
+public interface ImageRowSource extends Closeable {
+
+  /**
+   * Returns the width of the image.
+   *
+   * @return the number of pixels in each row
+   */
+  int getWidth();
+
+  /**
+   * Returns the height of the image.
+   *
+   * @return the number of rows
+   */
+  int getHeight();
+
+  /**
+   * Copies the values of the next row into the given array, as the red, green and blue values of
+   * each pixel in turn.
+   *
+   * @param rowValues the array to be filled, of length at least three times the width
+   * @throws IOException if the row could not be read
+   */
+  void readRow(float[] rowValues) throws IOException;
+
+}
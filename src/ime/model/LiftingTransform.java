@@ -0,0 +1,59 @@
+package ime.model;
+
+/**
+ * This abstract class implements the bookkeeping shared by wavelet transforms written as lifting
+ * steps. The line is copied into the buffer so that its even (approximation) and odd (detail)
+ * samples are interleaved, the lifting steps are applied to the buffer, and the result is written
+ * back with the approximations first. Lines are extended symmetrically at both ends.
+ */
+abstract class LiftingTransform implements WaveletTransform {
+
+  @Override
+  public void forward(float[] data, int offset, int stride, int n, float[] buffer) {
+    for (int i = 0; i < n; i++) {
+      buffer[i] = data[offset + i * stride];
+    }
+    lift(buffer, n);
+    for (int i = 0; i < n / 2; i++) {
+      data[offset + i * stride] = buffer[2 * i];
+      data[offset + (n / 2 + i) * stride] = buffer[2 * i + 1];
+    }
+  }
+
+  @Override
+  public void inverse(float[] data, int offset, int stride, int n, float[] buffer) {
+    for (int i = 0; i < n / 2; i++) {
+      buffer[2 * i] = data[offset + i * stride];
+      buffer[2 * i + 1] = data[offset + (n / 2 + i) * stride];
+    }
+    unlift(buffer, n);
+    for (int i = 0; i < n; i++) {
+      data[offset + i * stride] = buffer[i];
+    }
+  }
+
+  /**
+   * Apply the lifting steps in place to the interleaved samples.
+   *
+   * @param x the interleaved samples
+   * @param n the number of samples
+   */
+  protected abstract void lift(float[] x, int n);
+
+  /**
+   * Undo the lifting steps in place on the interleaved coefficients.
+   *
+   * @param x the interleaved coefficients
+   * @param n the number of coefficients
+   */
+  protected abstract void unlift(float[] x, int n);
+
+  /* The neighbours of sample i, mirrored at the ends of the line. */
+  protected static float left(float[] x, int i) {
+    return i > 0 ? x[i - 1] : x[i + 1];
+  }
+
+  protected static float right(float[] x, int i, int n) {
+    return i + 1 < n ? x[i + 1] : x[i - 1];
+  }
+}
@@ -0,0 +1,48 @@
+package ime.model;
+
+/**
+ * This package-private class supplies the rows of an image held by the repository, reading the
+ * values of each row straight from the pixels of the image. The image is held by the source until
+ * it is closed, so that it is not modified in place while its rows are read.
+ */
+class StoredImageRowSource implements ImageRowSource {
+
+  private final Image image;
+  private final Runnable release;
+  private int nextRow;
+  private boolean closed;
+
+  /**
+   * Constructs a source for the rows of the given image.
+   *
+   * @param image   the image to be read
+   * @param release the release of the image, which is run once the source is closed
+   */
+  StoredImageRowSource(Image image, Runnable release) {
+    this.image = image;
+    this.release = release;
+  }
+
+  @Override
+  public int getWidth() {
+    return image.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return image.getHeight();
+  }
+
+  @Override
+  public void readRow(float[] rowValues) {
+    image.getRowValues(nextRow++, rowValues);
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      release.run();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package ime.model;
+
+/**
+ * This enum lists the wavelets that can be used to compress an image, along with the names by
+ * which they are referred to in commands.
+ */
+public enum Wavelet {
+  HAAR("haar", new HaarTransform()),
+  CDF53("cdf53", new Cdf53Transform()),
+  CDF97("cdf97", new Cdf97Transform());
+
+  private final String representation;
+  private final WaveletTransform transform;
+
+  Wavelet(String representation, WaveletTransform transform) {
+    this.representation = representation;
+    this.transform = transform;
+  }
+
+  /**
+   * Get the name by which this wavelet is referred to in commands.
+   *
+   * @return the name of the wavelet
+   */
+  public String getRepresentation() {
+    return representation;
+  }
+
+  /**
+   * Find the wavelet with the given name.
+   *
+   * @param representation the name of the wavelet
+   * @return the wavelet
+   * @throws IllegalArgumentException if no wavelet has the given name
+   */
+  public static Wavelet fromRepresentation(String representation)
+      throws IllegalArgumentException {
+    for (Wavelet wavelet : values()) {
+      if (wavelet.representation.equals(representation)) {
+        return wavelet;
+      }
+    }
+    throw new IllegalArgumentException("Unknown wavelet " + representation
+        + ". Supported wavelets are haar, cdf53 and cdf97");
+  }
+
+  WaveletTransform getTransform() {
+    return transform;
+  }
+}
@@ -0,0 +1,241 @@
+package ime.model;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the forward wavelet transform of an image. The image is padded with zeros to a
+ * square whose side is a power of two, and the coefficients of each color channel are kept in a
+ * row-major array of that size. Once created, the image can be reconstructed at any compression
+ * percentage by only thresholding a copy of the stored coefficients and running the inverse
+ * transform on it.
+ */
+class WaveletDecomposition {
+
+  private final Image source;
+  private final WaveletTransform transform;
+  private final int width;
+  private final int height;
+  private final int channelCount;
+  private final int paddedSize;
+
+  private final float[][] coefficients;
+
+  /**
+   * The distinct absolute values of all the coefficients, in ascending order. Compression
+   * percentages are mapped to thresholds using this list.
+   */
+  private final float[] sortedMagnitudes;
+
+  /**
+   * Computes the forward transform of the given image using the given wavelet.
+   *
+   * @param source  the image to be decomposed
+   * @param wavelet the wavelet to be used
+   */
+  WaveletDecomposition(Image source, Wavelet wavelet) {
+    this.source = source;
+    this.transform = wavelet.getTransform();
+    this.width = source.getWidth();
+    this.height = source.getHeight();
+    this.channelCount = source.getChannelCount();
+    int n = Math.max(height, width);
+    int size = 1;
+    while (size < n) {
+      size *= 2;
+    }
+    this.paddedSize = size;
+    this.coefficients = new float[channelCount][paddedSize * paddedSize];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        float[] values = source.getPixelValues(i, j);
+        for (int c = 0; c < channelCount; c++) {
+          coefficients[c][i * paddedSize + j] =
+              transform.isReversible() ? Math.round(values[c]) : values[c];
+        }
+      }
+    }
+    float[] buffer = new float[paddedSize];
+    for (int c = 0; c < channelCount; c++) {
+      forward(transform, coefficients[c], paddedSize, buffer);
+    }
+    this.sortedMagnitudes = getUniqueMagnitudes(coefficients);
+  }
+
+  /**
+   * Reconstruct the image after discarding the given percentage of the distinct coefficient
+   * magnitudes.
+   *
+   * @param compressPercent the percentage of compression
+   * @return the compressed image
+   * @throws IllegalArgumentException if the percentage is not between 0 and 100
+   */
+  Image reconstruct(int compressPercent) throws IllegalArgumentException {
+    return new ImagePixelImpl(reconstructPixels(compressPercent), source.getImageType());
+  }
+
+  /**
+   * Compute the peak signal-to-noise ratio (in dB) between the source image and its reconstruction
+   * at the given compression percentage.
+   *
+   * @param compressPercent the percentage of compression
+   * @return the PSNR, or positive infinity if the reconstruction is identical to the source
+   * @throws IllegalArgumentException if the percentage is not between 0 and 100
+   */
+  double getPsnr(int compressPercent) throws IllegalArgumentException {
+    float[][][] reconstructed = reconstructPixels(compressPercent);
+    double squaredError = 0;
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        float[] original = source.getPixelValues(i, j);
+        for (int c = 0; c < channelCount; c++) {
+          double difference = original[c] - reconstructed[i][j][c];
+          squaredError += difference * difference;
+        }
+      }
+    }
+    if (squaredError == 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double meanSquaredError = squaredError / ((double) height * width * channelCount);
+    return 10 * Math.log10(255 * 255 / meanSquaredError);
+  }
+
+  /**
+   * Find the largest compression percentage whose reconstruction still has a PSNR of at least the
+   * given target. The PSNR falls as the percentage grows, so the percentage is binary searched and
+   * each probe only costs a threshold and an inverse transform.
+   *
+   * @param targetPsnr the minimum acceptable PSNR in dB
+   * @return the compression percentage, 0 if even the uncompressed reconstruction misses the target
+   * @throws IllegalArgumentException if the target is not a positive number
+   */
+  int getCompressionPercentForPsnr(double targetPsnr) throws IllegalArgumentException {
+    if (!(targetPsnr > 0)) {
+      throw new IllegalArgumentException("Target PSNR should be a positive number");
+    }
+    int low = 0;
+    int high = 100;
+    while (low < high) {
+      int mid = (low + high + 1) / 2;
+      if (getPsnr(mid) >= targetPsnr) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  private float[][][] reconstructPixels(int compressPercent) {
+    if (compressPercent < 0 || compressPercent > 100) {
+      throw new IllegalArgumentException("Compress percentage invalid");
+    }
+    float threshold = getThreshold(sortedMagnitudes, compressPercent);
+    float[][][] result = new float[height][width][channelCount];
+    float[] channel = new float[paddedSize * paddedSize];
+    float[] buffer = new float[paddedSize];
+    for (int c = 0; c < channelCount; c++) {
+      System.arraycopy(coefficients[c], 0, channel, 0, channel.length);
+      for (int k = 0; k < channel.length; k++) {
+        if (Math.abs(channel[k]) <= threshold) {
+          channel[k] = 0;
+        }
+      }
+      inverse(transform, channel, paddedSize, buffer);
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          result[i][j][c] = Math.max(0, Math.min(255, channel[i * paddedSize + j]));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the largest magnitude to be zeroed for the given percentage, or a negative value when
+   * nothing is to be zeroed.
+   *
+   * @param sortedMagnitudes the distinct coefficient magnitudes in ascending order
+   * @param compressPercent  the percentage of compression
+   * @return the threshold magnitude
+   */
+  static float getThreshold(float[] sortedMagnitudes, int compressPercent) {
+    float fraction = compressPercent / 100f;
+    int num = (int) (fraction * sortedMagnitudes.length);
+    if (num == 0) {
+      return -1;
+    }
+    return sortedMagnitudes[num - 1];
+  }
+
+  /**
+   * Returns the distinct absolute values of the given coefficients in ascending order.
+   *
+   * @param coefficients the coefficients of each color channel
+   * @return the sorted distinct magnitudes
+   */
+  static float[] getUniqueMagnitudes(float[][] coefficients) {
+    int count = 0;
+    for (float[] channel : coefficients) {
+      count += channel.length;
+    }
+    float[] magnitudes = new float[count];
+    int index = 0;
+    for (float[] channel : coefficients) {
+      for (float value : channel) {
+        magnitudes[index++] = Math.abs(value);
+      }
+    }
+    Arrays.sort(magnitudes);
+    int uniqueCount = 0;
+    for (int k = 0; k < magnitudes.length; k++) {
+      if (uniqueCount == 0 || Float.compare(magnitudes[uniqueCount - 1], magnitudes[k]) != 0) {
+        magnitudes[uniqueCount++] = magnitudes[k];
+      }
+    }
+    return Arrays.copyOf(magnitudes, uniqueCount);
+  }
+
+  /**
+   * Applies the forward transform in place to a square channel stored row-major. Every level
+   * transforms the rows and then the columns of the approximation left by the previous level.
+   *
+   * @param transform the wavelet transform to be used
+   * @param channel   the channel values
+   * @param size      the side of the square, which should be a power of two
+   * @param buffer    scratch space of at least size values
+   */
+  static void forward(WaveletTransform transform, float[] channel, int size, float[] buffer) {
+    int c = size;
+    while (c > 1) {
+      for (int i = 0; i < c; i++) {
+        transform.forward(channel, i * size, 1, c, buffer);
+      }
+      for (int j = 0; j < c; j++) {
+        transform.forward(channel, j, size, c, buffer);
+      }
+      c = c / 2;
+    }
+  }
+
+  /**
+   * Applies the inverse transform in place to a square channel stored row-major.
+   *
+   * @param transform the wavelet transform to be used
+   * @param channel   the transformed channel values
+   * @param size      the side of the square, which should be a power of two
+   * @param buffer    scratch space of at least size values
+   */
+  static void inverse(WaveletTransform transform, float[] channel, int size, float[] buffer) {
+    int c = 2;
+    while (c <= size) {
+      for (int j = 0; j < c; j++) {
+        transform.inverse(channel, j, size, c, buffer);
+      }
+      for (int i = 0; i < c; i++) {
+        transform.inverse(channel, i * size, 1, c, buffer);
+      }
+      c = c * 2;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package ime.model;
+
+/**
+ * A one dimensional discrete wavelet transform that is applied in place to a line of values taken
+ * from a larger array. The forward transform leaves the approximation coefficients of the line in
+ * its first half and the detail coefficients in its second half, and the inverse transform undoes
+ * exactly that.
+ */
+interface WaveletTransform {
+
+  /**
+   * Apply the forward transform to a line of values.
+   *
+   * @param data   the array holding the line
+   * @param offset the index of the first value of the line
+   * @param stride the distance between two consecutive values of the line
+   * @param n      the number of values in the line, which should be even
+   * @param buffer scratch space of at least n values
+   */
+  void forward(float[] data, int offset, int stride, int n, float[] buffer);
+
+  /**
+   * Apply the inverse transform to a line of coefficients.
+   *
+   * @param data   the array holding the line
+   * @param offset the index of the first coefficient of the line
+   * @param stride the distance between two consecutive coefficients of the line
+   * @param n      the number of coefficients in the line, which should be even
+   * @param buffer scratch space of at least n values
+   */
+  void inverse(float[] data, int offset, int stride, int n, float[] buffer);
+
+  /**
+   * Whether this transform maps integers to integers and back without any loss. Values given to
+   * such a transform are rounded to integers first.
+   *
+   * @return true if the transform is reversible on integers
+   */
+  boolean isReversible();
+}
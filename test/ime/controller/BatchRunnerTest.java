@@ -0,0 +1,126 @@
+package ime.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import ime.view.ViewImpl;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link BatchRunner} class.
+ */
+public class BatchRunnerTest {
+
+  private Path input;
+  private Path output;
+  private float[][][] pixels;
+  private ByteArrayOutputStream outputStream;
+
+  /**
+   * Set up the test environment by creating a directory of images to be processed.
+   *
+   * @throws IOException If the directories or images could not be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    input = Files.createTempDirectory("batchInput");
+    output = input.resolve("results");
+    pixels = new float[2][3][3];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        pixels[i][j] = new float[]{i * 100, j * 50, 200};
+      }
+    }
+    CommonFileHandler fileHandler = new CommonFileHandler();
+    for (int k = 0; k < 4; k++) {
+      fileHandler.saveImage(pixels, input.resolve("image" + k + ".png").toString());
+    }
+    Files.writeString(input.resolve("notes.txt"), "not an image");
+    outputStream = new ByteArrayOutputStream();
+  }
+
+  /**
+   * Test case to verify that every image in the directory is run through the script with the
+   * placeholders replaced, and that the throughput of the run is reported.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testRunOverDirectory() throws IOException {
+    BatchRunner batchRunner = new BatchRunner(List.of("load ${input} image",
+        "# flip every image", "horizontal-flip image flipped",
+        "save ${outdir}/${name}.ppm flipped"), new FileHandlerProviderImpl(), 2);
+
+    batchRunner.run(input, output, new ViewImpl(new PrintStream(outputStream)));
+
+    float[][][] flipped = new float[2][3][];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        flipped[i][j] = pixels[i][2 - j];
+      }
+    }
+    PpmFileHandler ppmFileHandler = new PpmFileHandler();
+    for (int k = 0; k < 4; k++) {
+      assertArrayEquals(flipped,
+          ppmFileHandler.loadImage(output.resolve("image" + k + ".ppm").toString()));
+    }
+    assertFalse(Files.exists(output.resolve("notes.ppm")));
+    assertTrue(outputStream.toString().startsWith("Processed 4 images (0 failed) in "));
+  }
+
+  /**
+   * Test case to verify that an image the script fails on is reported, while the other images are
+   * still processed.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testRunReportsFailures() throws IOException {
+    Files.writeString(input.resolve("broken.png"), "not a png");
+    BatchRunner batchRunner = new BatchRunner(List.of("load ${input} image",
+        "save ${output} image"), new FileHandlerProviderImpl(), 3);
+
+    batchRunner.run(input, output, new ViewImpl(new PrintStream(outputStream)));
+
+    String[] lines = outputStream.toString().split("\n");
+    assertEquals("broken.png: Line 1: Invalid file", lines[0]);
+    assertTrue(lines[1].startsWith("Processed 4 images (1 failed) in "));
+    assertFalse(Files.exists(output.resolve("broken.png")));
+    assertTrue(Files.exists(output.resolve("image3.png")));
+  }
+
+  /**
+   * Test case to verify that an invalid script is rejected when it is compiled, before any image is
+   * processed.
+   */
+  @Test
+  public void testInvalidScriptRejectedBeforeRun() {
+    try {
+      new BatchRunner(List.of("load ${input} image", "brighten bright image brighter",
+          "save ${output} brighter"), new FileHandlerProviderImpl(), 2);
+      fail("An invalid script should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 2: brightness command expects a number following the command",
+          e.getMessage());
+    }
+    assertFalse(Files.exists(output));
+  }
+
+  /**
+   * Test case to verify that a script that does not refer to its input is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testScriptWithoutInput() {
+    new BatchRunner(List.of("load image.png image"), new FileHandlerProviderImpl(), 2);
+  }
+}
@@ -55,4 +55,39 @@ public class BufferedImageHandlerTest {
     assertEquals(Color.GREEN.getRGB(), resultImage.getRGB(1, 0));
     assertEquals(Color.BLUE.getRGB(), resultImage.getRGB(2, 0));
   }
-}
\ No newline at end of file
+
+  /**
+   * test that pixels are read with the same values from the directly accessed image types, from a
+   * sub image that shares the array of its parent and from an indexed image that is read through
+   * getRGB.
+   */
+  @Test
+  public void testGetImagePixelsForImageTypes() {
+    BufferedImageHandler handler = new BufferedImageHandler();
+    float[][][] expectedPixels = {
+        {{255, 0, 0}, {0, 255, 0}, {0, 0, 255}},
+        {{255, 255, 255}, {0, 0, 0}, {255, 255, 0}}
+    };
+    int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_BYTE_INDEXED};
+    for (int type : types) {
+      BufferedImage image = new BufferedImage(5, 4, type);
+      for (int i = 0; i < 2; i++) {
+        for (int j = 0; j < 3; j++) {
+          float[] pixel = expectedPixels[i][j];
+          image.setRGB(j + 1, i + 2,
+              new Color((int) pixel[0], (int) pixel[1], (int) pixel[2]).getRGB());
+        }
+      }
+      assertArrayEquals(expectedPixels,
+          handler.getImagePixels(image.getSubimage(1, 2, 3, 2)));
+    }
+
+    BufferedImage greyImage = new BufferedImage(2, 1, BufferedImage.TYPE_BYTE_GRAY);
+    greyImage.getRaster().setSample(0, 0, 0, 40);
+    greyImage.getRaster().setSample(1, 0, 0, 200);
+    assertArrayEquals(new float[][][]{{{40, 40, 40}, {200, 200, 200}}},
+        handler.getImagePixels(greyImage));
+  }
+}
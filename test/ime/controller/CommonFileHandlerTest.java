@@ -2,11 +2,20 @@ package ime.controller;
 
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import ime.model.ImageRowSource;
+import java.awt.Rectangle;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -15,13 +24,18 @@ import org.junit.Test;
  */
 public class CommonFileHandlerTest {
 
+  private Path directory;
+
   private FileHandler fileHandler;
 
   /**
    * Set up the test environment by initializing the {@link CommonFileHandler}.
+   *
+   * @throws IOException If the directory of the images could not be created.
    */
   @Before
-  public void setUp() {
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("common");
     fileHandler = new CommonFileHandler();
   }
 
@@ -72,6 +86,103 @@ public class CommonFileHandlerTest {
     assertArrayEquals(pixels, loaded);
   }
 
+  /**
+   * Test case to verify that an image saved from a row source is loaded back as a row source with
+   * the same values.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveAndOpenImageRows() throws IOException {
+    float[][][] pixels = new float[][][]{
+        {{0, 50, 0}, {0, 150, 0}, {255, 255, 255}},
+        {{0, 25, 0}, {0, 75, 0}, {10, 20, 30}}
+    };
+    fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("rowsImage.png"));
+    try (ImageRowSource source = fileHandler.openImage(resolve("rowsImage.png"))) {
+      assertArrayEquals(pixels, ArrayImageRowSource.readAll(source));
+    }
+  }
+
+  /**
+   * Test case to verify that the format, dimensions and channel count of an image are read from
+   * its header.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testProbeImage() throws IOException {
+    fileHandler.saveImage(new float[4][3][3], resolve("probeImage.png"));
+    ImageInfo info = fileHandler.probeImage(resolve("probeImage.png"));
+    assertEquals("png", info.getFormat());
+    assertEquals(3, info.getWidth());
+    assertEquals(4, info.getHeight());
+    assertEquals(3, info.getChannelCount());
+    assertThrows(IOException.class, () -> fileHandler.probeImage("invalidImage.jpg"));
+  }
+
+  /**
+   * Test case to verify that only the selected region of an image is decoded, keeping every second
+   * pixel of every second row of it, and that a region outside the image is rejected.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testOpenImageRegionAndScale() throws IOException {
+    float[][][] pixels = new float[5][6][3];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 6; j++) {
+        pixels[i][j] = new float[]{i * 50, j * 40, 10};
+      }
+    }
+    fileHandler.saveImage(pixels, resolve("regionImage.png"));
+    LoadOptions options = new LoadOptions(2, new Rectangle(1, 1, 10, 3));
+    try (ImageRowSource source = fileHandler.openImage(resolve("regionImage.png"), options)) {
+      float[][][] expected = {
+          {pixels[1][1], pixels[1][3], pixels[1][5]},
+          {pixels[3][1], pixels[3][3], pixels[3][5]}
+      };
+      assertArrayEquals(expected, ArrayImageRowSource.readAll(source));
+    }
+    assertThrows(IllegalArgumentException.class,
+        () -> fileHandler.openImage(resolve("regionImage.png"),
+            new LoadOptions(1, new Rectangle(6, 0, 2, 2))));
+  }
+
+  /**
+   * Test case to verify that the JPG quality and PNG compression level change the size of the
+   * saved files, and that paths with more than one dot are saved in the format of their extension.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveImageWithOptions() throws IOException {
+    float[][][] pixels = new float[64][64][3];
+    for (int i = 0; i < 64; i++) {
+      for (int j = 0; j < 64; j++) {
+        pixels[i][j] = new float[]{(i * j) % 256, (i * 7 + j * 3) % 256, (i ^ j) * 4 % 256};
+      }
+    }
+    File jpgFile = new File(resolve("qualityImage.jpg"));
+    fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("qualityImage.jpg"),
+        new SaveOptions(95, -1));
+    long highQualityLength = jpgFile.length();
+    fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("qualityImage.jpg"),
+        new SaveOptions(5, -1));
+    assertTrue(jpgFile.length() < highQualityLength);
+
+    File pngFile = new File(resolve("levelImage.png"));
+    fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("levelImage.png"),
+        new SaveOptions(-1, 0));
+    long storedLength = pngFile.length();
+    fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("levelImage.png"),
+        new SaveOptions(-1, 9));
+    assertTrue(pngFile.length() < storedLength);
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("levelImage.png")));
+    assertThrows(IllegalArgumentException.class, () -> new SaveOptions(101, -1));
+    assertThrows(IllegalArgumentException.class, () -> new SaveOptions(-1, 10));
+  }
+
   /**
    * Test case to verify that the {@code saveImage} method throws an {@link IOException} when the
    * specified directory is invalid.
@@ -89,4 +200,23 @@ public class CommonFileHandlerTest {
     assertThrows(IOException.class,
         () -> fileHandler.saveImage(imagePixel, "test/invalid/test.jpg"));
   }
+
+  /**
+   * Remove the directory of the images written by the tests.
+   *
+   * @throws IOException If the directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /* Returns the path of a file in the directory of the images written by the tests. */
+  private String resolve(String fileName) {
+    return directory.resolve(fileName).toString();
+  }
 }
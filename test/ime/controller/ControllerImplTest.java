@@ -1,14 +1,31 @@
 package ime.controller;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import ime.controller.commands.Blur;
+import ime.controller.commands.Brighten;
+import ime.controller.commands.CommandDependencies;
+import ime.controller.commands.Load;
+import ime.controller.commands.RgbSplit;
+import ime.controller.commands.Run;
+import ime.controller.commands.Save;
+import ime.model.ImageRepositoryImpl;
 import ime.view.View;
 import ime.view.ViewImpl;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -149,27 +166,18 @@ public class ControllerImplTest {
             + "\nhistogram invalidImageName destImage" + "\nexit"), view, mockImgRepo,
         mockFileHandlerProvider, false);
     controller.execute();
-    assertEquals(
-        mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BLUR, "invalidImageName", "destImage")
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.SHARPEN, "invalidImageName",
-            "destImage") + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.H_FLIP,
-            "invalidImageName", "destImage") + mockImgRepo.getLoggerMessageForOperation(
-            MockImgRepo.V_FLIP, "invalidImageName", "destImage")
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.INTENSITY, "invalidImageName",
-            "destImage") + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.VALUE,
-            "invalidImageName", "destImage") + mockImgRepo.getLoggerMessageForOperation(
-            MockImgRepo.LUMA, "invalidImageName", "destImage")
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.RED_COMP, "invalidImageName",
-            "destImage") + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.GREEN_COMP,
-            "invalidImageName", "destImage") + mockImgRepo.getLoggerMessageForOperation(
-            MockImgRepo.BLUE_COMP, "invalidImageName", "destImage")
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.SEPIA, "invalidImageName",
-            "destImage") + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS,
-            "invalidImageName", "destImage") + mockImgRepo.getLoggerMessageForOperation(
-            MockImgRepo.LEVELS_ADJUST, "invalidImageName", "destImage")
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COLOR_CORRECT,
-            "invalidImageName", "destImage") + mockImgRepo.getLoggerMessageForOperation(
-            MockImgRepo.HISTOGRAM, "invalidImageName", "destImage"), mockImgRepo.getLogger());
+    // every image is removed after its last use, and destImage before every command replacing it
+    StringBuilder expectedLog = new StringBuilder();
+    for (String operation : List.of(MockImgRepo.BLUR, MockImgRepo.SHARPEN, MockImgRepo.H_FLIP,
+        MockImgRepo.V_FLIP, MockImgRepo.INTENSITY, MockImgRepo.VALUE, MockImgRepo.LUMA,
+        MockImgRepo.RED_COMP, MockImgRepo.GREEN_COMP, MockImgRepo.BLUE_COMP, MockImgRepo.SEPIA,
+        MockImgRepo.COMPRESS, MockImgRepo.LEVELS_ADJUST, MockImgRepo.COLOR_CORRECT)) {
+      expectedLog.append(mockImgRepo.getLoggerMessageForOperation(operation, "invalidImageName",
+          "destImage")).append(removed("destImage"));
+    }
+    expectedLog.append(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.HISTOGRAM,
+        "invalidImageName", "destImage")).append(removed("invalidImageName", "destImage"));
+    assertEquals(expectedLog.toString(), mockImgRepo.getLogger());
 
     assertEquals("Source Name invalid\n" + "Source Name invalid\n" + "Source Name invalid\n"
         + "Source Name invalid\n" + "Source Name invalid\n" + "Source Name invalid\n"
@@ -303,12 +311,16 @@ public class ControllerImplTest {
     mockImgRepo.getLogger();
     assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 10)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LEVELS_ADJUST, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 0)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.SEPIA, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 20)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BLUR, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 20)
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.SHARPEN, "src", "dest"),
+            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.SHARPEN, "src", "dest")
+            + removed("src", "dest"),
         mockImgRepo.getLogger());
     assertEquals(
         "Successfully Previewed\n" + "Successfully Previewed\n" + "Successfully Previewed\n"
@@ -352,12 +364,16 @@ public class ControllerImplTest {
     mockImgRepo.getLogger();
     assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 10)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COLOR_CORRECT, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 10)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LUMA, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 10)
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.VALUE, "src", "dest")
+            + removed("dest")
             + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW, "src", "dest", 10)
-            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.INTENSITY, "src", "dest"),
+            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.INTENSITY, "src", "dest")
+            + removed("src", "dest"),
         mockImgRepo.getLogger());
     assertEquals(
         "Successfully Previewed\n" + "Successfully Previewed\n" + "Successfully Previewed\n"
@@ -401,6 +417,82 @@ public class ControllerImplTest {
         + "valid\nPlease enter the command to run:", outputStream.toString().trim());
   }
 
+  /**
+   * test block compression on a valid image.
+   */
+  @Test
+  public void testValidCompressInBlocks() {
+    mockImgRepo.setFailureFlag(false);
+    ImageProcessingController controller = new ControllerImpl(new Scanner(
+        "compress 22 valid destImage block 64" + "\ncompress 22 valid destImage block big"
+            + "\ncompress 22 valid destImage blocks 64" + "\nexit"), view,
+        mockImgRepo, mockFileHandlerProvider, false);
+    controller.execute();
+    assertEquals(
+        mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS_BLOCKS, "valid",
+            "destImage", 64) + removed("valid", "destImage"), mockImgRepo.getLogger());
+    assertEquals("compress operation completed successfully for valid & put in destImage "
+        + "using blocks of size 64\n"
+        + "block size expected following block\n"
+        + "Unknown option blocks for compress. Supported options are split, block and wavelet",
+        outputStream.toString().trim());
+  }
+
+  /**
+   * test compression with a chosen wavelet, alone and together with the block option.
+   */
+  @Test
+  public void testValidCompressWithWavelet() {
+    mockImgRepo.setFailureFlag(false);
+    ImageProcessingController controller = new ControllerImpl(new Scanner(
+        "compress 0 valid destImage wavelet cdf53" + "\ncompress 10 valid destImage wavelet db4"
+            + "\ncompress 10 valid destImage block 8 wavelet cdf97"
+            + "\ncompress 10 valid destImage wavelet" + "\nexit"), view,
+        mockImgRepo, mockFileHandlerProvider, false);
+    controller.execute();
+    assertEquals(
+        mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS_WAVELET + " cdf53", "valid",
+            "destImage") + removed("destImage")
+            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS_BLOCKS, "valid",
+            "destImage", 8) + removed("valid", "destImage"), mockImgRepo.getLogger());
+    assertEquals("compress operation completed successfully for valid & put in destImage\n"
+        + "Unknown wavelet db4. Supported wavelets are haar, cdf53 and cdf97\n"
+        + "compress operation completed successfully for valid & put in destImage "
+        + "using blocks of size 8\n"
+        + "Invalid number of tokens passed for the given command",
+        outputStream.toString().trim());
+  }
+
+  /**
+   * test compression preview and compression to a target PSNR on a valid image.
+   */
+  @Test
+  public void testValidCompressPreviewAndPsnr() {
+    mockImgRepo.setFailureFlag(false);
+    ImageProcessingController controller = new ControllerImpl(new Scanner(
+        "compress 22 valid destImage split 40" + "\ncompress-psnr 32.5 valid destImage"
+            + "\ncompress-psnr 40 valid destImage wavelet cdf97"
+            + "\ncompress-psnr high valid destImage"
+            + "\ncompress-psnr 40 valid destImage level cdf97" + "\nexit"), view,
+        mockImgRepo, mockFileHandlerProvider, false);
+    controller.execute();
+    assertEquals(
+        mockImgRepo.getLoggerMessageForOperation(MockImgRepo.PREVIEW_COMPRESS, "valid",
+            "destImage", 40) + removed("destImage")
+            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS_PSNR, "valid",
+            "destImage", 32.5f) + removed("destImage")
+            + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.COMPRESS_PSNR + " cdf97",
+            "valid", "destImage", 40f) + removed("valid", "destImage"), mockImgRepo.getLogger());
+    assertEquals("Successfully Previewed\n"
+        + "compress-psnr operation completed successfully for valid & put in destImage "
+        + "with compression percentage: 50\n"
+        + "compress-psnr operation completed successfully for valid & put in destImage "
+        + "with compression percentage: 50\n"
+        + "number expected following compress-psnr command\n"
+        + "Unknown option level for compress-psnr. Supported option is wavelet",
+        outputStream.toString().trim());
+  }
+
   /**
    * test on valid image.
    */
@@ -542,4 +634,181 @@ public class ControllerImplTest {
         + "Please enter the command to run:", outputStream.toString().trim());
   }
 
-}
\ No newline at end of file
+  /**
+   * test load with a region and a scale, which keeps only the selected pixels of the image.
+   */
+  @Test
+  public void testLoadRegionAndScale() {
+    mockImgRepo.setFailureFlag(false);
+    mockFileHandler.setFailureFlag(false);
+    String commandList = "load --scale 1/2 --region 1,0,1,2 test/resources/testImage.ppm destImage"
+        + "\nload --size 2 test/resources/testImage.ppm destImage"
+        + "\nload --scale 2 test/resources/testImage.ppm destImage"
+        + "\nload --region 2,0,1,1 test/resources/testImage.ppm destImage\nexit";
+    ImageProcessingController controller = new ControllerImpl(new Scanner(commandList), view,
+        mockImgRepo, mockFileHandlerProvider, true);
+
+    controller.execute();
+
+    assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LOAD, "destImage"),
+        mockImgRepo.getLogger());
+    assertEquals(new float[][][]{{{200, 150, 175}}}, mockImgRepo.getLastLoadedFloat());
+    assertEquals("Please enter the command to run: \n" + "Loaded successfully.\n"
+        + "Please enter the command to run: \n"
+        + "Unknown option --size for load. Supported options are --scale and --region\n"
+        + "Please enter the command to run: \n"
+        + "Scale should be of the form 1/n for a positive n\n"
+        + "Please enter the command to run: \n" + "Region lies outside the image\n"
+        + "Please enter the command to run:", outputStream.toString().trim());
+  }
+
+  /**
+   * test info on an image file, which reports its header without loading it into the repository.
+   */
+  @Test
+  public void testInfo() {
+    mockFileHandler.setFailureFlag(false);
+    ImageProcessingController controller = new ControllerImpl(new Scanner(
+        "info test/resources/testImage.ppm\ninfo\nexit"), view, mockImgRepo,
+        mockFileHandlerProvider, true);
+
+    controller.execute();
+
+    assertEquals("", mockImgRepo.getLogger());
+    assertEquals("Please enter the command to run: \n"
+        + "test/resources/testImage.ppm: ppm 2x2, 3 channels\n"
+        + "Please enter the command to run: \n"
+        + "Invalid number of tokens passed for the given command\n"
+        + "Please enter the command to run:", outputStream.toString().trim());
+  }
+
+  /**
+   * test save with encoder settings, and with settings that are unknown or out of range.
+   */
+  @Test
+  public void testSaveWithOptions() {
+    mockImgRepo.setFailureFlag(false);
+    mockFileHandler.setFailureFlag(false);
+    mockFileHandler.clearLogger();
+    String commandList = "save --quality 80 --level 6 test/resources/testImage.ppm destImage"
+        + "\nsave --speed 2 test/resources/testImage.ppm destImage"
+        + "\nsave --quality 101 test/resources/testImage.ppm destImage"
+        + "\nsave --level x test/resources/testImage.ppm destImage"
+        + "\nsave --encoding raw test/resources/testImage.ppm destImage\nexit";
+    ImageProcessingController controller = new ControllerImpl(new Scanner(commandList), view,
+        mockImgRepo, mockFileHandlerProvider, true);
+
+    controller.execute();
+
+    assertEquals("saveImage called test/resources/testImage.ppm passed\n",
+        mockFileHandler.getLogger());
+    assertEquals("Please enter the command to run: \n" + "Saved successfully.\n"
+        + "Please enter the command to run: \n"
+        + "Unknown option --speed for save. Supported options are --quality, --level and "
+        + "--encoding\n"
+        + "Please enter the command to run: \n" + "Quality should be between 0 and 100\n"
+        + "Please enter the command to run: \n"
+        + "Compression level should be between 0 and 9\n"
+        + "Please enter the command to run: \n" + "Encoding should be plain or binary\n"
+        + "Please enter the command to run:", outputStream.toString().trim());
+  }
+
+  /**
+   * test that saves in a script are queued and that their failures are reported in the place of
+   * their messages, before the script ends.
+   */
+  @Test
+  public void testScriptSavesInBackground() {
+    mockImgRepo.setFailureFlag(false);
+    mockFileHandler.setFailureFlag(true);
+    mockFileHandler.clearLogger();
+    String commandList = "save test/resources/first.ppm destImage"
+        + "\nsave test/resources/second.ppm destImage";
+    ImageProcessingController controller = new ControllerImpl(new Scanner(commandList), view,
+        mockImgRepo, mockFileHandlerProvider, false);
+
+    controller.execute();
+
+    String[] saves = mockFileHandler.getLogger().split("\n");
+    Arrays.sort(saves);
+    assertArrayEquals(new String[]{"saveImage called test/resources/first.ppm passed",
+        "saveImage called test/resources/second.ppm passed"}, saves);
+    assertEquals("Could not save test/resources/first.ppm: file handler failed\n"
+        + "Could not save test/resources/second.ppm: file handler failed\n"
+        + "Exiting with no more commands", outputStream.toString().trim());
+  }
+
+  /**
+   * test the images and files that script commands read and write, which decide the commands
+   * that a script may run concurrently.
+   */
+  @Test
+  public void testScriptCommandDependencies() {
+    CommandDependencies load = new Load(mockFileHandlerProvider).getDependencies(
+        "load --scale 1/2 test/resources/my image.ppm dest".split(" "));
+    assertEquals(List.of("test/resources/my image.ppm"), load.getFilesRead());
+    assertEquals(List.of("dest"), load.getImagesWritten());
+
+    CommandDependencies save = new Save(mockFileHandlerProvider).getDependencies(
+        "save --quality 80 out.jpg src".split(" "));
+    assertEquals(List.of("src"), save.getImagesRead());
+    assertEquals(List.of("out.jpg"), save.getFilesWritten());
+
+    CommandDependencies split = new RgbSplit().getDependencies("rgb-split src r g b".split(" "));
+    assertEquals(List.of("src"), split.getImagesRead());
+    assertEquals(List.of("r", "g", "b"), split.getImagesWritten());
+
+    CommandDependencies brighten = new Brighten().getDependencies(
+        "brighten 10 src dest".split(" "));
+    assertEquals(List.of("src"), brighten.getImagesRead());
+    assertEquals(List.of("dest"), brighten.getImagesWritten());
+
+    assertEquals(CommandDependencies.NONE, new Blur().getDependencies("blur src".split(" ")));
+    assertTrue(new Run(view, mockFileHandlerProvider).getDependencies(
+        "run script.txt".split(" ")).isBarrier());
+  }
+
+  /**
+   * Test case to verify that a script removes every image after the last command using it, and
+   * that a script run from it keeps its images for the commands after the run, which is where the
+   * removing starts since the images used by the run are not known.
+   *
+   * @throws IOException If the script or image files could not be written.
+   */
+  @Test
+  public void testScriptReleasesImagesAfterLastUse() throws IOException {
+    Path directory = Files.createTempDirectory("script");
+    try {
+      Path nested = directory.resolve("nested.txt");
+      Files.write(nested, List.of("load test/resources/testImage.ppm nestedImage"));
+      Path saved = directory.resolve("saved.ppm");
+      ImageRepositoryImpl imageRepository = new ImageRepositoryImpl();
+      new ControllerImpl(new Scanner("run " + nested + "\n"
+          + "load test/resources/testImage.ppm image\nbrighten 10 image bright\n"
+          + "save " + saved + " bright\nhorizontal-flip nestedImage flipped"), view,
+          imageRepository, new FileHandlerProviderImpl(), false).execute();
+      assertTrue(Files.exists(saved));
+      for (String imageName : List.of("nestedImage", "image", "bright", "flipped")) {
+        assertFalse(imageName, imageRepository.isImagePresent(imageName));
+      }
+      assertTrue(outputStream.toString().contains(
+          "horizontal-flip operation completed successfully for nestedImage & put in flipped"));
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /* Returns what the repository logs when a script removes the given images after their last
+   use. */
+  private String removed(String... imageNames) {
+    StringBuilder log = new StringBuilder();
+    for (String imageName : imageNames) {
+      log.append(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.REMOVE_IMAGE, imageName));
+    }
+    return log.toString();
+  }
+}
@@ -40,6 +40,21 @@ public class FeaturesImplTest {
   }
 
 
+  /**
+   * toggling back and forth between images that have not changed renders each of them only once.
+   */
+  @Test
+  public void testToggleReusesRenderedImages() {
+    mockImgRepo.setFailureFlag(false);
+    mockImgRepo.setFixedImageVersion(true);
+    features.toggle();
+    features.toggle();
+    features.toggle();
+    features.toggle();
+    assertEquals("getImage called and previewImage passed\n"
+        + "getImage called and guiImage passed\n", mockImgRepo.getLogger());
+  }
+
   /**
    * invoke load when repo fails.
    */
@@ -226,7 +241,7 @@ public class FeaturesImplTest {
         + "preview has been disabled\n"
         + "0 input is received Enter value between 0 - 100 for compression factor\n"
         + "Apply has been enabled\n"
-        + "preview has been disabled\n"
+        + "preview has been enabled\n"
         + "image has been set\n"
         + "histogram has been set\n"
         + "toggle has been disabled\n", mockGUIView.getLogger());
@@ -356,7 +371,7 @@ public class FeaturesImplTest {
   public void testChooseCompression() {
     features.chooseCompression();
     String expected = "0 input is received Enter value between 0 - 100 for compression factor\n"
-        + "Apply has been enabled\n" + "preview has been disabled\n";
+        + "Apply has been enabled\n" + "preview has been enabled\n";
     assertEquals(expected, mockGUIView.getLogger());
   }
 
@@ -611,7 +626,7 @@ public class FeaturesImplTest {
    */
   @Test
   public void testChooseCompressionApply() {
-    assertApplyOperation(() -> features.chooseCompression(), false, "compress");
+    assertApplyOperation(() -> features.chooseCompression(), true, "compress");
   }
 
   /**
@@ -730,7 +745,7 @@ public class FeaturesImplTest {
         + "message displayed Invalid value. Please try again\n"
         + "0 input is received Enter value between 0 - 100 for compression factor\n"
         + "Apply has been enabled\n"
-        + "preview has been disabled\n", mockGUIView.getLogger());
+        + "preview has been enabled\n", mockGUIView.getLogger());
   }
 
   /**
@@ -811,10 +826,20 @@ public class FeaturesImplTest {
     String expected = "Apply has been disabled\n" + "preview has been disabled\n" + "load success\n"
         + "image has been set\n" + "histogram has been set\n"
         + "0 input is received Enter value between 0 - 100 for compression factor\n"
-        + "Apply has been enabled\n" + "preview has been disabled\n"
+        + "Apply has been enabled\n" + "preview has been enabled\n"
         + "1 input is received Enter value between 0 - 100 for preview percentage\n"
-        + "message displayed This operation can not be previewed.\n";
-    assertPreviewWorks(() -> features.chooseCompression(), expected, "compression", false);
+        + "image has been set\n" + "toggle has been enabled\n";
+    features.loadImage();
+    features.chooseCompression();
+    features.previewChosenOperation();
+    assertEquals(expected, mockGUIView.getLogger());
+    assertEquals("loadImage called and guiImage passed\n"
+            + "histogram called guiImage and hist passed\n"
+            + "getImage called and guiImage passed\n"
+            + "getImage called and hist passed\n"
+            + "preview compress called 1.0 and guiImage and previewImage passed\n"
+            + "getImage called and previewImage passed\n",
+        mockImgRepo.getLogger());
   }
 
   /**
@@ -1,9 +1,11 @@
 package ime.controller;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -35,6 +37,18 @@ public class FileHandlerProviderImplTest {
     assertTrue(fileHandler instanceof PpmFileHandler);
   }
 
+  /**
+   * Test case to verify that the {@code getFileHandler} method returns a {@link PpmFileHandler} for
+   * a .pgm file.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testGetFileHandlerForPGM() throws IOException {
+    FileHandler fileHandler = fileHandlerProvider.getFileHandler("testImage.pgm");
+    assertTrue(fileHandler instanceof PpmFileHandler);
+  }
+
   /**
    * Test case to verify that the {@code getFileHandler} method returns a {@link CommonFileHandler}
    * for a .jpg file.
@@ -57,6 +71,20 @@ public class FileHandlerProviderImplTest {
   public void testGetFileHandlerForPNG() throws IOException {
     FileHandler fileHandler = fileHandlerProvider.getFileHandler("testImage.png");
     assertTrue(fileHandler instanceof CommonFileHandler);
+    assertFalse(fileHandler instanceof PngFileHandler);
+  }
+
+  /**
+   * Test case to verify that a provider asked to encode PNG images in parallel returns a
+   * {@link PngFileHandler} for a .png file only.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testGetFileHandlerForParallelPNG() throws IOException {
+    FileHandlerProvider parallelProvider = new FileHandlerProviderImpl(null, true);
+    assertTrue(parallelProvider.getFileHandler("testImage.png") instanceof PngFileHandler);
+    assertFalse(parallelProvider.getFileHandler("testImage.jpg") instanceof PngFileHandler);
   }
 
   /**
@@ -82,4 +110,19 @@ public class FileHandlerProviderImplTest {
         fileHandlerProvider.getFileHandler("image"));
   }
 
-}
\ No newline at end of file
+
+  /**
+   * Test case to verify that a provider given a cache returns caching handlers for JPG and PNG
+   * files only.
+   *
+   * @throws IOException If the cache directory could not be created.
+   */
+  @Test
+  public void testGetFileHandlerWithCache() throws IOException {
+    FileHandlerProvider cachingProvider = new FileHandlerProviderImpl(
+        new RawImageCache(Files.createTempDirectory("cache"), 1 << 20));
+    assertTrue(cachingProvider.getFileHandler("testImage.png") instanceof CachingFileHandler);
+    assertTrue(cachingProvider.getFileHandler("testImage.jpg") instanceof CachingFileHandler);
+    assertTrue(cachingProvider.getFileHandler("testImage.ppm") instanceof PpmFileHandler);
+  }
+}
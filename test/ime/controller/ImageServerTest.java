@@ -0,0 +1,254 @@
+package ime.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import ime.model.ImageRepositoryImpl;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link ImageServer} class.
+ */
+public class ImageServerTest {
+
+  private Path scratchDirectory;
+  private Path rootDirectory;
+  private byte[] png;
+  private ImageServer server;
+
+  /**
+   * Set up the test environment by starting a server and encoding an image to be uploaded.
+   *
+   * @throws IOException If the image could not be encoded or the server could not be started.
+   */
+  @Before
+  public void setUp() throws IOException {
+    scratchDirectory = Files.createTempDirectory("server");
+    rootDirectory = Files.createTempDirectory("root");
+    Path image = scratchDirectory.resolve("upload.png");
+    float[][][] pixels = new float[2][3][];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        pixels[i][j] = new float[]{i * 100, j * 50, 200};
+      }
+    }
+    new CommonFileHandler().saveImage(pixels, image.toString());
+    png = Files.readAllBytes(image);
+    Files.delete(image);
+    server = new ImageServer(0, new ImageRepositoryImpl(), new FileHandlerProviderImpl(), 2, 4,
+        scratchDirectory, rootDirectory);
+    server.start();
+  }
+
+  /**
+   * Stop the server and remove its scratch and root directories. The scratch directory should
+   * have been left empty by the requests.
+   *
+   * @throws IOException If a directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+    Files.deleteIfExists(scratchDirectory);
+    try (Stream<Path> files = Files.walk(rootDirectory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Test case to verify that an uploaded image can be operated on with commands, and that the
+   * result can be downloaded in another format.
+   *
+   * @throws IOException If a request fails.
+   */
+  @Test
+  public void testUploadOperateAndDownload() throws IOException {
+    assertEquals(200, request(server, "PUT", "/images/photo?format=png", png).status);
+    Response commands = request(server, "POST", "/commands",
+        "brighten 10 photo bright\n\nhorizontal-flip bright flipped".getBytes(
+            StandardCharsets.UTF_8));
+    assertEquals(200, commands.status);
+    assertEquals(2, commands.body.split("\n").length);
+
+    Response download = request(server, "GET", "/images/flipped?format=jpg", null);
+    assertEquals(200, download.status);
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(download.bytes));
+    assertEquals(3, image.getWidth());
+    assertEquals(2, image.getHeight());
+  }
+
+  /**
+   * Test case to verify that invalid requests are answered with the status and message of what is
+   * wrong with them, and that a failing script stops at its failing line.
+   *
+   * @throws IOException If a request fails.
+   */
+  @Test
+  public void testInvalidRequests() throws IOException {
+    Response script = request(server, "POST", "/commands",
+        "blur missing blurred\nfoo".getBytes(StandardCharsets.UTF_8));
+    assertEquals(400, script.status);
+    assertEquals("Line 2: Command not found", script.body);
+
+    Response run = request(server, "POST", "/commands",
+        "blur missing blurred".getBytes(StandardCharsets.UTF_8));
+    assertEquals(400, run.status);
+    assertEquals("Line 1: image name invalid", run.body);
+
+    assertEquals(404, request(server, "GET", "/images/missing?format=png", null).status);
+    assertEquals(400, request(server, "GET", "/images/missing", null).status);
+    assertEquals(400, request(server, "PUT", "/images/photo?format=gif", png).status);
+    assertEquals(400, request(server, "PUT", "/images/photo?format=png",
+        new byte[]{1, 2, 3}).status);
+    assertEquals(405, request(server, "GET", "/commands", null).status);
+  }
+
+  /**
+   * Test case to verify that requests from other hosts are refused, and that scripts may only read
+   * and write files within the root directory.
+   *
+   * @throws IOException If a request fails.
+   */
+  @Test
+  public void testRequestsConfinedToMachineAndRoot() throws IOException {
+    assertEquals(403, requestWithHeaders("Host: attacker.example"));
+    assertEquals(403, requestWithHeaders("Host: localhost\r\nOrigin: http://attacker.example"));
+    assertEquals(404, requestWithHeaders("Host: localhost\r\nOrigin: http://localhost:3000"));
+
+    assertEquals(200, request(server, "PUT", "/images/photo?format=png", png).status);
+    Path saved = rootDirectory.resolve("photo.ppm");
+    assertEquals(200, request(server, "POST", "/commands", ("save " + saved + " photo")
+        .getBytes(StandardCharsets.UTF_8)).status);
+    assertTrue(Files.exists(saved));
+    Path outside = rootDirectory.resolve("../outside.ppm").normalize();
+    Response escape = request(server, "POST", "/commands",
+        ("save " + rootDirectory.resolve("../outside.ppm") + " photo\nload " + saved + " copy")
+            .getBytes(StandardCharsets.UTF_8));
+    assertEquals(400, escape.status);
+    assertTrue(escape.body, escape.body.startsWith("Line 1: Files should be within "));
+    assertFalse(Files.exists(outside));
+    assertEquals(400, request(server, "POST", "/commands",
+        "run script.txt".getBytes(StandardCharsets.UTF_8)).status);
+  }
+
+  /**
+   * Test case to verify that requests arriving while every worker is busy and the queue is full are
+   * turned away, and that the requests admitted still complete.
+   *
+   * @throws Exception If a request fails or the test is interrupted.
+   */
+  @Test
+  public void testBusyServerTurnsRequestsAway() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    FileHandlerProvider blockingProvider = fileName -> {
+      entered.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new FileHandlerProviderImpl().getFileHandler(fileName);
+    };
+    List<Integer> statuses = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> clients = new ArrayList<>();
+    try (ImageServer busyServer = new ImageServer(0, new ImageRepositoryImpl(), blockingProvider,
+        1, 1, scratchDirectory, rootDirectory)) {
+      busyServer.start();
+      for (int i = 0; i < 4; i++) {
+        Thread client = new Thread(() -> {
+          try {
+            statuses.add(request(busyServer, "PUT", "/images/photo?format=png", png).status);
+          } catch (IOException e) {
+            statuses.add(-1);
+          }
+        });
+        clients.add(client);
+        client.start();
+        if (i == 0) {
+          assertTrue(entered.await(10, TimeUnit.SECONDS));
+        }
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (statuses.size() < 2 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(List.of(503, 503), statuses);
+      release.countDown();
+      for (Thread client : clients) {
+        client.join();
+      }
+    }
+    Collections.sort(statuses);
+    assertArrayEquals(new Object[]{200, 200, 503, 503}, statuses.toArray());
+  }
+
+  /* Gets a missing image with the given headers over a socket, since HttpURLConnection does not
+   let the Host and Origin headers be set, and returns the status of the response. */
+  private int requestWithHeaders(String headers) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      socket.getOutputStream().write(("GET /images/missing?format=png HTTP/1.1\r\n" + headers
+          + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      String statusLine = new String(socket.getInputStream().readAllBytes(),
+          StandardCharsets.US_ASCII).split("\r\n")[0];
+      return Integer.parseInt(statusLine.split(" ")[1]);
+    }
+  }
+
+  private static Response request(ImageServer server, String method, String path, byte[] body)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://localhost:" + server.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    byte[] bytes = in == null ? new byte[0] : in.readAllBytes();
+    connection.disconnect();
+    return new Response(status, bytes);
+  }
+
+  private static final class Response {
+
+    private final int status;
+    private final byte[] bytes;
+    private final String body;
+
+    private Response(int status, byte[] bytes) {
+      this.status = status;
+      this.bytes = bytes;
+      this.body = new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -1,9 +1,12 @@
 package ime.controller;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.function.BiConsumer;
 
 import ime.model.ImageRepository;
+import ime.model.ImageRowSource;
+import ime.model.Wavelet;
 
 /**
  * A mock implementation of the {@link ImageRepository} interface used for testing purposes. This
@@ -14,6 +17,7 @@ public class MockImgRepo implements ImageRepository {
 
   public static final String LOAD = "loadImage";
   public static final String GET_IMAGE = "getImage";
+  public static final String REMOVE_IMAGE = "removeImage";
   public static final String SPLIT_IMAGE = "splitImage";
   public static final String COMBINE_IMAGE = "combine images";
   public static final String BRIGHTEN_IMAGE = "brightenImage";
@@ -30,6 +34,10 @@ public class MockImgRepo implements ImageRepository {
   public static final String SHARPEN = "sharpenImage";
   public static final String IMAGE_PRESENT = "imagePresent";
   public static final String COMPRESS = "compress";
+  public static final String PREVIEW_COMPRESS = "preview compress";
+  public static final String COMPRESS_BLOCKS = "compress blocks";
+  public static final String COMPRESS_WAVELET = "compress wavelet";
+  public static final String COMPRESS_PSNR = "compress psnr";
   public static final String LEVELS_ADJUST = "levels adjust";
   public static final String COLOR_CORRECT = "color correct";
   public static final String HISTOGRAM = "histogram";
@@ -40,6 +48,8 @@ public class MockImgRepo implements ImageRepository {
   private Boolean fail;
 
   private float[][][] lastLoadedFloat;
+  private boolean fixedImageVersion;
+  private long imageVersion;
 
   /**
    * Creates a new instance of the MockImgRepo.
@@ -65,6 +75,31 @@ public class MockImgRepo implements ImageRepository {
     lastLoadedFloat = image;
   }
 
+  /**
+   * Loads an image from the given row source, reading all of its rows, and associates it with the
+   * given name.
+   *
+   * @param source    The source of the rows of the image.
+   * @param imageName The name to associate with the loaded image.
+   * @throws IOException if a row could not be read from the source.
+   */
+  @Override
+  public void loadImage(ImageRowSource source, String imageName) throws IOException {
+    methodCallLogger.append(getLoggerMessageForOperation(LOAD, imageName));
+    if (fail) {
+      throw new IllegalArgumentException("Image Repository failed");
+    }
+    float[][][] image = new float[source.getHeight()][source.getWidth()][3];
+    float[] rowValues = new float[source.getWidth() * 3];
+    for (float[][] row : image) {
+      source.readRow(rowValues);
+      for (int j = 0; j < row.length; j++) {
+        System.arraycopy(rowValues, 3 * j, row[j], 0, 3);
+      }
+    }
+    lastLoadedFloat = image;
+  }
+
   /**
    * Retrieves the image tagged by the given name.
    *
@@ -81,6 +116,28 @@ public class MockImgRepo implements ImageRepository {
     return lastLoadedFloat;
   }
 
+  /**
+   * Opens the image tagged by the given name for reading its rows, which is logged as the image
+   * being retrieved.
+   *
+   * @param imageName The name of the image to be retrieved.
+   */
+  @Override
+  public ImageRowSource getImageRows(String imageName) throws IllegalArgumentException {
+    return new ArrayImageRowSource(getImage(imageName));
+  }
+
+  /**
+   * Returns a new version every time unless the version has been fixed, so that views are
+   * rendered again by default.
+   *
+   * @param imageName The name of the image.
+   */
+  @Override
+  public long getImageVersion(String imageName) throws IllegalArgumentException {
+    return fixedImageVersion ? 0 : imageVersion++;
+  }
+
   /**
    * Splits the source image into multiple color channels and associates them with the specified
    * destination image names.
@@ -346,6 +403,16 @@ public class MockImgRepo implements ImageRepository {
     return fail;
   }
 
+  /**
+   * Logs the removal of the image with the given name.
+   *
+   * @param imageName The name of the image to be removed.
+   */
+  @Override
+  public void removeImage(String imageName) {
+    methodCallLogger.append(getLoggerMessageForOperation(REMOVE_IMAGE, imageName));
+  }
+
   @Override
   public void compress(String imageNameSrc, String imageNameDest, int compressPercent)
           throws IllegalArgumentException {
@@ -356,6 +423,64 @@ public class MockImgRepo implements ImageRepository {
     }
   }
 
+  @Override
+  public void compress(String imageNameSrc, String imageNameDest, int compressPercent,
+                       Wavelet wavelet) throws IllegalArgumentException {
+    methodCallLogger.append(
+            getLoggerMessageForOperation(COMPRESS_WAVELET + " " + wavelet.getRepresentation(),
+                    imageNameSrc, imageNameDest));
+    if (fail) {
+      throw new IllegalArgumentException("compress failed");
+    }
+  }
+
+  @Override
+  public void compressInBlocks(String imageNameSrc, String imageNameDest, int compressPercent,
+                               int blockSize, Wavelet wavelet) throws IllegalArgumentException {
+    methodCallLogger.append(
+            getLoggerMessageForOperation(COMPRESS_BLOCKS, imageNameSrc, imageNameDest,
+                    blockSize));
+    if (fail) {
+      throw new IllegalArgumentException("compress blocks failed");
+    }
+  }
+
+  @Override
+  public void previewCompress(String imageNameSrc, String imageNameDest, int compressPercent,
+                              int verticalSplit, Wavelet wavelet)
+          throws IllegalArgumentException {
+    methodCallLogger.append(
+            getLoggerMessageForOperation(PREVIEW_COMPRESS, imageNameSrc, imageNameDest,
+                    verticalSplit));
+    if (fail) {
+      throw new IllegalArgumentException("preview compress failed");
+    }
+  }
+
+  @Override
+  public int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr)
+          throws IllegalArgumentException {
+    methodCallLogger.append(
+            getLoggerMessageForOperation(COMPRESS_PSNR, imageNameSrc, imageNameDest,
+                    (float) targetPsnr));
+    if (fail) {
+      throw new IllegalArgumentException("compress psnr failed");
+    }
+    return 50;
+  }
+
+  @Override
+  public int compressToPsnr(String imageNameSrc, String imageNameDest, double targetPsnr,
+                            Wavelet wavelet) throws IllegalArgumentException {
+    methodCallLogger.append(
+            getLoggerMessageForOperation(COMPRESS_PSNR + " " + wavelet.getRepresentation(),
+                    imageNameSrc, imageNameDest, (float) targetPsnr));
+    if (fail) {
+      throw new IllegalArgumentException("compress psnr failed");
+    }
+    return 50;
+  }
+
   @Override
   public void preview(String imageNameSrc, String imageNameDest,
                       BiConsumer<String, String> operation, int verticalSplit) {
@@ -432,6 +557,10 @@ public class MockImgRepo implements ImageRepository {
     return operation + " called and " + param1 + " passed\n";
   }
 
+  public void setFixedImageVersion(boolean fixedImageVersion) {
+    this.fixedImageVersion = fixedImageVersion;
+  }
+
   public float[][][] getLastLoadedFloat() {
     return lastLoadedFloat;
   }
@@ -0,0 +1,124 @@
+package ime.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link PngFileHandler} class.
+ */
+public class PngFileHandlerTest {
+
+  private Path directory;
+
+  private FileHandler fileHandler;
+
+  /**
+   * Set up the test environment by initializing the {@link PngFileHandler}.
+   *
+   * @throws IOException If the directory of the images could not be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("png");
+    fileHandler = new PngFileHandler();
+  }
+
+  /* An image with smooth gradients and some noise, so that every filter type gets chosen. */
+  private float[][][] createImage(int width, int height) {
+    float[][][] pixels = new float[height][width][3];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        pixels[i][j] = new float[]{(i + j) % 256, (i * 3) % 256, ((i * 31) ^ (j * 17)) % 256};
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Test case to verify that an image spanning several compressed chunks is saved as a valid PNG
+   * file that decodes to the same values.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveImage() throws IOException {
+    float[][][] pixels = createImage(300, 700);
+    fileHandler.saveImage(pixels, resolve("encodedImage.png"));
+    BufferedImage saved = ImageIO.read(new File(resolve("encodedImage.png")));
+    assertEquals(300, saved.getWidth());
+    assertEquals(700, saved.getHeight());
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("encodedImage.png")));
+  }
+
+  /**
+   * Test case to verify that every compression level gives a valid file, with higher levels giving
+   * smaller files than storing the data uncompressed.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveImageCompressionLevels() throws IOException {
+    float[][][] pixels = createImage(120, 500);
+    File file = new File(resolve("encodedImage.png"));
+    long storedLength = 0;
+    for (int level = 0; level <= 9; level++) {
+      fileHandler.saveImage(new ArrayImageRowSource(pixels), resolve("encodedImage.png"),
+          new SaveOptions(-1, level));
+      assertArrayEquals(pixels, fileHandler.loadImage(resolve("encodedImage.png")));
+      if (level == 0) {
+        storedLength = file.length();
+      } else {
+        assertTrue(file.length() < storedLength);
+      }
+    }
+  }
+
+  /**
+   * Test case to verify that a single pixel image is saved correctly and that saving to an invalid
+   * directory fails.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveSmallImage() throws IOException {
+    float[][][] pixels = {{{300, -5, 128}}};
+    fileHandler.saveImage(pixels, resolve("encodedImage.png"));
+    assertArrayEquals(new float[][][]{{{255, 0, 128}}},
+        fileHandler.loadImage(resolve("encodedImage.png")));
+    assertThrows(IOException.class,
+        () -> fileHandler.saveImage(pixels, "test/invalid/test.png"));
+  }
+
+  /**
+   * Remove the directory of the images written by the tests.
+   *
+   * @throws IOException If the directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /* Returns the path of a file in the directory of the images written by the tests. */
+  private String resolve(String fileName) {
+    return directory.resolve(fileName).toString();
+  }
+}
@@ -2,11 +2,21 @@ package ime.controller;
 
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import ime.model.ImageRowSource;
+import java.awt.Rectangle;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -15,13 +25,18 @@ import org.junit.Test;
  */
 public class PpmFileHandlerTest {
 
+  private Path directory;
+
   private FileHandler fileHandler;
 
   /**
    * Set up the test environment by initializing the {@link PpmFileHandler}.
+   *
+   * @throws IOException If the directory of the images could not be created.
    */
   @Before
-  public void setUp() {
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("ppm");
     fileHandler = new PpmFileHandler();
   }
 
@@ -85,4 +100,238 @@ public class PpmFileHandlerTest {
     };
     assertThrows(IOException.class, () -> fileHandler.saveImage(image, "test/invalid/test.ppm"));
   }
+
+  /**
+   * Test case to verify that comments are skipped wherever they appear in the file, including
+   * right after a number and between the samples of a pixel.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testLoadImageWithComments() throws IOException {
+    writeFile(resolve("commentedImage.ppm"), "# leading comment\nP3 # type\n2 #width\n"
+        + "2\n255\n0 50# mid pixel\n0 0 150 0\r\n# full line\n0 25 0\t0 75 0");
+    float[][][] expected = {
+        {{0, 50, 0}, {0, 150, 0}},
+        {{0, 25, 0}, {0, 75, 0}}
+    };
+    float[][][] pixels = fileHandler.loadImage(resolve("commentedImage.ppm"));
+    assertTrue(Arrays.deepEquals(expected, pixels));
+  }
+
+  /**
+   * Test case to verify that files with a wrong magic number, a truncated pixel section or a
+   * malformed number are rejected with an {@link IOException}.
+   *
+   * @throws IOException If an IO exception occurs while writing the test files.
+   */
+  @Test
+  public void testLoadImageMalformed() throws IOException {
+    writeFile(resolve("malformedImage.ppm"), "P7\n1 1\n255\n0 0 0");
+    assertThrows(IOException.class,
+        () -> fileHandler.loadImage(resolve("malformedImage.ppm")));
+    writeFile(resolve("malformedImage.ppm"), "P3\n2 1\n255\n0 0 0 1");
+    assertThrows(IOException.class,
+        () -> fileHandler.loadImage(resolve("malformedImage.ppm")));
+    writeFile(resolve("malformedImage.ppm"), "P3\n1 1\n255\n0 1x 0");
+    assertThrows(IOException.class,
+        () -> fileHandler.loadImage(resolve("malformedImage.ppm")));
+  }
+
+  /**
+   * Test case to verify that images saved in the binary RGB (P6) and greyscale (P5) variants load
+   * back with the same values, greyscale ones having equal red, green and blue values.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveAndLoadBinary() throws IOException {
+    float[][][] pixels = new float[][][]{
+        {{0, 50, 0}, {255, 150, 7}, {1, 2, 3}},
+        {{0, 25, 0}, {0, 75, 0}, {128, 128, 128}}
+    };
+    new PpmFileHandler(PpmFormat.P6).saveImage(pixels, resolve("binaryImage.ppm"));
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("binaryImage.ppm")));
+
+    float[][][] grey = new float[][][]{
+        {{0, 0, 0}, {255, 255, 255}},
+        {{17, 17, 17}, {200, 200, 200}}
+    };
+    new PpmFileHandler(PpmFormat.P5).saveImage(grey, resolve("binaryImage.pgm"));
+    assertArrayEquals(grey, fileHandler.loadImage(resolve("binaryImage.pgm")));
+  }
+
+  /**
+   * Test case to verify that a handler saves in its plain variant unless the save options ask for
+   * the binary one.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveBinaryOptIn() throws IOException {
+    float[][][] pixels = new float[][][]{{{0, 50, 0}, {255, 150, 7}}};
+    try (ImageRowSource source = new ArrayImageRowSource(pixels)) {
+      fileHandler.saveImage(source, resolve("image.ppm"), SaveOptions.DEFAULT);
+    }
+    try (ImageRowSource source = new ArrayImageRowSource(pixels)) {
+      fileHandler.saveImage(source, resolve("binaryImage.ppm"), new SaveOptions(-1, -1, true));
+    }
+    try (ImageRowSource source = new ArrayImageRowSource(pixels)) {
+      new PpmFileHandler(PpmFormat.P2).saveImage(source, resolve("binaryImage.pgm"),
+          new SaveOptions(-1, -1, true));
+    }
+
+    assertEquals("P3", fileHandler.probeImage(resolve("image.ppm")).getFormat());
+    assertEquals("P6", fileHandler.probeImage(resolve("binaryImage.ppm")).getFormat());
+    assertEquals("P5", fileHandler.probeImage(resolve("binaryImage.pgm")).getFormat());
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("binaryImage.ppm")));
+  }
+
+  /**
+   * Test case to verify that an image spanning many formatting chunks is saved in the plain RGB
+   * (P3) and greyscale (P2) variants with every row in order.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testSaveLargePlainImage() throws IOException {
+    float[][][] pixels = new float[300][250][3];
+    for (int i = 0; i < 300; i++) {
+      for (int j = 0; j < 250; j++) {
+        pixels[i][j] = new float[]{(i * 7 + j) % 256, (i + j * 3) % 256, (i * j) % 256};
+      }
+    }
+    fileHandler.saveImage(pixels, resolve("plainImage.ppm"));
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("plainImage.ppm")));
+
+    new PpmFileHandler(PpmFormat.P2).saveImage(pixels, resolve("plainImage.pgm"));
+    float[][][] grey = fileHandler.loadImage(resolve("plainImage.pgm"));
+    for (int i = 0; i < 300; i++) {
+      for (int j = 0; j < 250; j++) {
+        float luma = (int) (0.2126f * pixels[i][j][0] + 0.7152f * pixels[i][j][1]
+            + 0.0722f * pixels[i][j][2]);
+        assertArrayEquals(new float[]{luma, luma, luma}, grey[i][j], 0);
+      }
+    }
+  }
+
+  /**
+   * Test case to verify that the rows of a binary file are supplied one at a time from the mapped
+   * file, with the same values as loading the whole file.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testOpenBinaryImage() throws IOException {
+    float[][][] pixels = new float[5][4][3];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 4; j++) {
+        pixels[i][j] = new float[]{i * 50, j * 60, (i + j) * 20};
+      }
+    }
+    new PpmFileHandler(PpmFormat.P6).saveImage(pixels, resolve("binaryImage.ppm"));
+    try (ImageRowSource source = fileHandler.openImage(resolve("binaryImage.ppm"))) {
+      assertEquals(4, source.getWidth());
+      assertEquals(5, source.getHeight());
+      float[] rowValues = new float[12];
+      for (int i = 0; i < 5; i++) {
+        source.readRow(rowValues);
+        for (int j = 0; j < 4; j++) {
+          assertArrayEquals(pixels[i][j], Arrays.copyOfRange(rowValues, 3 * j, 3 * j + 3), 0);
+        }
+      }
+      assertThrows(IOException.class, () -> source.readRow(rowValues));
+    }
+  }
+
+  /**
+   * Test case to verify that the format, dimensions and channel count of a file are read from its
+   * header.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testProbeImage() throws IOException {
+    new PpmFileHandler(PpmFormat.P5).saveImage(new float[5][4][3], resolve("binaryImage.ppm"));
+    ImageInfo info = fileHandler.probeImage(resolve("binaryImage.ppm"));
+    assertEquals("P5 4x5, 1 channel", info.toString());
+    assertEquals(1, info.getChannelCount());
+    assertThrows(IOException.class, () -> fileHandler.probeImage("invalidImage.ppm"));
+  }
+
+  /**
+   * Test case to verify that a region of a binary file can be loaded at a reduced scale.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testOpenBinaryImageRegionAndScale() throws IOException {
+    float[][][] pixels = new float[5][4][3];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 4; j++) {
+        pixels[i][j] = new float[]{i * 50, j * 60, (i + j) * 20};
+      }
+    }
+    new PpmFileHandler(PpmFormat.P6).saveImage(pixels, resolve("binaryImage.ppm"));
+    LoadOptions options = new LoadOptions(3, new Rectangle(0, 1, 4, 4));
+    try (ImageRowSource source = fileHandler.openImage(resolve("binaryImage.ppm"),
+        options)) {
+      float[][][] expected = {
+          {pixels[1][0], pixels[1][3]},
+          {pixels[4][0], pixels[4][3]}
+      };
+      assertArrayEquals(expected, ArrayImageRowSource.readAll(source));
+    }
+  }
+
+  /**
+   * Test case to verify that 16-bit binary files are loaded with their samples scaled to the
+   * 0-255 range, and that truncated pixel data is rejected.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testLoadBinarySixteenBit() throws IOException {
+    byte[] header = "P6\n2 1\n65535\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] data = {0, 0, (byte) 0xff, (byte) 0xff, (byte) 0x80, (byte) 0x80,
+        (byte) 0xff, (byte) 0xff, 0, 0, 0, (byte) 0xff};
+    try (FileOutputStream outputStream = new FileOutputStream(resolve("wideImage.ppm"))) {
+      outputStream.write(header);
+      outputStream.write(data);
+    }
+    float[][][] loaded = fileHandler.loadImage(resolve("wideImage.ppm"));
+    assertArrayEquals(new float[]{0, 255, 128}, loaded[0][0], 0.01f);
+    assertArrayEquals(new float[]{255, 0, 255f / 257}, loaded[0][1], 0.01f);
+
+    try (FileOutputStream outputStream = new FileOutputStream(resolve("wideImage.ppm"))) {
+      outputStream.write(header);
+      outputStream.write(data, 0, 7);
+    }
+    assertThrows(IOException.class, () -> fileHandler.loadImage(resolve("wideImage.ppm")));
+  }
+
+  private void writeFile(String filename, String content) throws IOException {
+    try (FileOutputStream outputStream = new FileOutputStream(filename)) {
+      outputStream.write(content.getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  /**
+   * Remove the directory of the images written by the tests.
+   *
+   * @throws IOException If the directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /* Returns the path of a file in the directory of the images written by the tests. */
+  private String resolve(String fileName) {
+    return directory.resolve(fileName).toString();
+  }
 }
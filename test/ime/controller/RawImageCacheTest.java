@@ -0,0 +1,166 @@
+package ime.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import ime.model.ImageRowSource;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link RawImageCache} class, through the
+ * {@link CachingFileHandler} that loads images through it.
+ */
+public class RawImageCacheTest {
+
+  private Path imageDirectory;
+  private Path directory;
+  private RawImageCache cache;
+  private float[][][] pixels;
+
+  /**
+   * Set up the test environment by creating an empty cache and saving an image to be loaded.
+   *
+   * @throws IOException If the cache directory or image could not be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    imageDirectory = Files.createTempDirectory("images");
+    directory = Files.createTempDirectory("cache");
+    cache = new RawImageCache(directory, 1 << 20);
+    pixels = new float[3][4][3];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        pixels[i][j] = new float[]{i * 80, j * 60, 255 - i * j * 20};
+      }
+    }
+    new CommonFileHandler().saveImage(pixels, resolve("cachedImage.png"));
+  }
+
+  /**
+   * Test case to verify that an image is cached once it has been loaded, and that later loads
+   * read the same values from the cache, including loads of a region.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testLoadFromCache() throws IOException {
+    FileHandler fileHandler = new CachingFileHandler(new CommonFileHandler(), cache);
+    assertNull(cache.open(resolve("cachedImage.png")));
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("cachedImage.png")));
+    try (ImageRowSource cached = cache.open(resolve("cachedImage.png"))) {
+      assertNotNull(cached);
+      assertArrayEquals(pixels, ArrayImageRowSource.readAll(cached));
+    }
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("./cachedImage.png")));
+    try (ImageRowSource region = fileHandler.openImage(resolve("cachedImage.png"),
+        new LoadOptions(2, new Rectangle(1, 0, 3, 3)))) {
+      assertArrayEquals(new float[][][]{{pixels[0][1], pixels[0][3]}, {pixels[2][1], pixels[2][3]}},
+          ArrayImageRowSource.readAll(region));
+    }
+  }
+
+  /**
+   * Test case to verify that a cached image is not used once the file it was decoded from has
+   * changed, and that an image that was only partly read is not cached.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testInvalidation() throws IOException {
+    FileHandler fileHandler = new CachingFileHandler(new CommonFileHandler(), cache);
+    try (ImageRowSource source = fileHandler.openImage(resolve("cachedImage.png"))) {
+      source.readRow(new float[12]);
+    }
+    assertNull(cache.open(resolve("cachedImage.png")));
+
+    fileHandler.loadImage(resolve("cachedImage.png"));
+    File file = new File(resolve("cachedImage.png"));
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    assertNull(cache.open(resolve("cachedImage.png")));
+  }
+
+  /**
+   * Test case to verify that the least recently used images are deleted once the cache grows
+   * beyond its bound.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testEviction() throws IOException {
+    new CommonFileHandler().saveImage(pixels, resolve("otherCachedImage.png"));
+    new CachingFileHandler(new CommonFileHandler(), cache)
+        .loadImage(resolve("cachedImage.png"));
+    long entrySize;
+    try (Stream<Path> entries = Files.list(directory)) {
+      Path entry = entries.findFirst().orElseThrow();
+      entrySize = Files.size(entry);
+      setOld(entry);
+    }
+    RawImageCache smallCache = new RawImageCache(directory, entrySize * 3 / 2);
+    new CachingFileHandler(new CommonFileHandler(), smallCache)
+        .loadImage(resolve("otherCachedImage.png"));
+    assertNull(smallCache.open(resolve("cachedImage.png")));
+    assertNotNull(smallCache.open(resolve("otherCachedImage.png")));
+    try (Stream<Path> entries = Files.list(directory)) {
+      assertEquals(1, entries.count());
+    }
+  }
+
+  /**
+   * Test case to verify that an image is still loaded when it cannot be written to the cache.
+   *
+   * @throws IOException If an IO exception occurs during the test.
+   */
+  @Test
+  public void testLoadWhenCacheCannotStore() throws IOException {
+    Files.delete(directory);
+    FileHandler fileHandler = new CachingFileHandler(new CommonFileHandler(), cache);
+    assertArrayEquals(pixels, fileHandler.loadImage(resolve("cachedImage.png")));
+    assertTrue(Files.notExists(directory));
+  }
+
+  private static void setOld(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Remove the directories of the images written by the tests and of the cache.
+   *
+   * @throws IOException If a directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    for (Path written : new Path[]{imageDirectory, directory}) {
+      if (!Files.exists(written)) {
+        continue;
+      }
+      try (Stream<Path> files = Files.walk(written)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /* Returns the path of a file in the directory of the images written by the tests. */
+  private String resolve(String fileName) {
+    return imageDirectory.resolve(fileName).toString();
+  }
+}
@@ -0,0 +1,130 @@
+package ime.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link SaveQueue} class.
+ */
+public class SaveQueueTest {
+
+  private SaveQueue saveQueue;
+
+  /**
+   * Set up the test environment by initializing a queue with two background threads.
+   */
+  @Before
+  public void setUp() {
+    saveQueue = new SaveQueue(2);
+  }
+
+  /**
+   * Stop the background threads of the queue.
+   */
+  @After
+  public void tearDown() {
+    saveQueue.close();
+  }
+
+  /**
+   * Test case to verify that failures are reported in the order the saves were submitted, even
+   * when a later save fails first.
+   */
+  @Test
+  public void testFlushReportsFailuresInOrder() {
+    CountDownLatch laterSaveFailed = new CountDownLatch(1);
+    saveQueue.submit("first.png", () -> {
+      laterSaveFailed.await();
+      throw new IOException("disk full");
+    });
+    saveQueue.submit("second.png", () -> null);
+    saveQueue.submit("third.png", () -> {
+      laterSaveFailed.countDown();
+      throw new IOException("no such directory");
+    });
+    assertEquals(List.of("Could not save first.png: disk full",
+        "Could not save third.png: no such directory"), saveQueue.flush());
+    assertTrue(saveQueue.flush().isEmpty());
+  }
+
+  /**
+   * Test case to verify that the failure of a save can be awaited right after submitting it, and
+   * is then not reported again when the queue is flushed.
+   */
+  @Test
+  public void testWhenSavedReportsFailureOnce() {
+    saveQueue.submit("first.png", () -> {
+      throw new IOException("disk full");
+    });
+    saveQueue.submit("second.png", () -> null);
+    assertEquals("Could not save first.png: disk full", saveQueue.whenSaved("first.png").join());
+    assertNull(saveQueue.whenSaved("first.png").join());
+    assertNull(saveQueue.whenSaved("./second.png").join());
+    assertTrue(saveQueue.flush().isEmpty());
+  }
+
+  /**
+   * Test case to verify that saves to the same path are written one after the other, and that
+   * waiting for a path returns only once its saves are done.
+   */
+  @Test
+  public void testSavesToSamePathRunInOrder() {
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 5; i++) {
+      String image = "image" + i;
+      saveQueue.submit("same.png", () -> {
+        Thread.sleep(5);
+        written.add(image);
+        return null;
+      });
+    }
+    saveQueue.waitFor("same.png");
+    assertEquals(List.of("image0", "image1", "image2", "image3", "image4"), written);
+    assertTrue(saveQueue.flush().isEmpty());
+  }
+
+  /**
+   * Test case to verify that every thread waiting for a path, however the path is written, returns
+   * only once the save to it is done.
+   *
+   * @throws InterruptedException If the test is interrupted while waiting for the waiters.
+   */
+  @Test
+  public void testWaitersOfSameFileWaitForSave() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean written = new AtomicBoolean();
+    saveQueue.submit("same.png", () -> {
+      release.await();
+      written.set(true);
+      return null;
+    });
+    List<Boolean> seen = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> waiters = new ArrayList<>();
+    for (String path : List.of("same.png", "./other/../same.png")) {
+      Thread waiter = new Thread(() -> {
+        saveQueue.waitFor(path);
+        seen.add(written.get());
+      });
+      waiters.add(waiter);
+      waiter.start();
+    }
+    Thread.sleep(50);
+    release.countDown();
+    for (Thread waiter : waiters) {
+      waiter.join();
+    }
+    assertEquals(List.of(true, true), seen);
+    assertTrue(saveQueue.flush().isEmpty());
+  }
+}
@@ -0,0 +1,268 @@
+package ime.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import ime.controller.commands.Brighten;
+import ime.controller.commands.Command;
+import ime.controller.commands.HorizontalFlip;
+import ime.controller.commands.Load;
+import ime.controller.commands.RedComponent;
+import ime.controller.commands.Run;
+import ime.controller.commands.Save;
+import ime.view.ViewImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link ScriptPlan} class.
+ */
+public class ScriptPlanTest {
+
+  private Map<CommandEnum, Command> commands;
+  private MockFileHandler mockFileHandler;
+
+  /**
+   * Set up the test environment with the commands that the scripts use.
+   */
+  @Before
+  public void setUp() {
+    mockFileHandler = new MockFileHandler();
+    mockFileHandler.setFailureFlag(false);
+    MockFileHandlerProvider mockFileHandlerProvider = new MockFileHandlerProvider(mockFileHandler);
+    mockFileHandlerProvider.setFailureFlag(false);
+    commands = Map.of(CommandEnum.load, new Load(mockFileHandlerProvider),
+        CommandEnum.save, new Save(mockFileHandlerProvider), CommandEnum.brighten, new Brighten(),
+        CommandEnum.horizontalFlip, new HorizontalFlip(), CommandEnum.red_component,
+        new RedComponent(), CommandEnum.run, new Run(new ViewImpl(System.out),
+            mockFileHandlerProvider));
+  }
+
+  /**
+   * Test case to verify that a compiled plan runs against different repositories and parameters,
+   * with comments and everything after exit left out.
+   */
+  @Test
+  public void testRunPlanRepeatedly() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("# brighten and flip", "load ${input} image",
+        "", "brighten 10 image bright", "horizontal-flip bright flipped", "exit",
+        "blur flipped blurred"), commands);
+    assertEquals(3, plan.size());
+
+    for (String input : List.of("first.ppm", "second.ppm")) {
+      MockImgRepo mockImgRepo = new MockImgRepo();
+      mockImgRepo.setFailureFlag(false);
+      List<String> messages = new ArrayList<>();
+      plan.run(mockImgRepo, Map.of("input", "test/resources/" + input), messages::add);
+
+      assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LOAD, "image")
+          + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "image",
+          "bright", 10f)
+          + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.H_FLIP, "bright", "flipped"),
+          mockImgRepo.getLogger());
+      assertEquals(List.of("Loaded successfully.",
+          "brighten operation completed successfully for image & put in bright with constant "
+              + "value: 10",
+          "horizontal-flip operation completed successfully for bright & put in flipped"),
+          messages);
+    }
+    assertEquals("loadImage called test/resources/first.ppm passed\n"
+        + "loadImage called test/resources/second.ppm passed\n", mockFileHandler.getLogger());
+  }
+
+  /**
+   * Test case to verify that an invalid line is reported with its number when the script is
+   * compiled.
+   */
+  @Test
+  public void testCompileInvalidScript() {
+    assertCompileFails(List.of("load image.ppm image", "brighten up image bright"),
+        "Line 2: brightness command expects a number following the command");
+    assertCompileFails(List.of("", "load image.ppm image", "flip image flipped"),
+        "Line 3: Command not found");
+    assertCompileFails(List.of("horizontal-flip image"),
+        "Line 1: Invalid number of tokens passed for the given command");
+  }
+
+  /**
+   * Test case to verify that a run stops at the first command that fails, reporting its line.
+   */
+  @Test
+  public void testRunStopsAtFailure() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("brighten 10 image bright",
+        "horizontal-flip bright flipped"), commands);
+    MockImgRepo mockImgRepo = new MockImgRepo();
+    mockImgRepo.setFailureFlag(true);
+    try {
+      plan.run(mockImgRepo, Map.of(), message -> fail("No command should succeed"));
+      fail("The run should fail");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 1: Source Name invalid", e.getMessage());
+    }
+    assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "image",
+        "bright", 10f), mockImgRepo.getLogger());
+  }
+
+  /**
+   * Test case to verify that a line with parameters has its options and number of tokens checked
+   * when the plan is compiled and its values checked on each run, and that a command the plan was
+   * not given is reported with its line.
+   */
+  @Test
+  public void testParametersCheckedWhenRun() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("brighten ${amount} image bright"), commands);
+    MockImgRepo mockImgRepo = new MockImgRepo();
+    mockImgRepo.setFailureFlag(false);
+    plan.run(mockImgRepo, Map.of("amount", "25"), message -> { });
+    assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "image",
+        "bright", 25f), mockImgRepo.getLogger());
+    try {
+      plan.run(new MockImgRepo(), Map.of("amount", "lots"), message -> { });
+      fail("The run should fail");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 1: brightness command expects a number following the command",
+          e.getMessage());
+    }
+    assertCompileFails(List.of("load ${input} image", "brighten ${amount} image"),
+        "Line 2: Invalid number of tokens passed for the given command");
+    assertCompileFails(List.of("save --speed 2 ${output} image"),
+        "Line 1: Unknown option --speed for save. Supported options are --quality, --level and "
+            + "--encoding");
+    assertCompileFails(List.of("load image.ppm image", "sepia image toned"),
+        "Line 2: The sepia command is not supported in this script");
+  }
+
+  /**
+   * Test case to verify that a file that could not be read fails a run whose commands are asked
+   * to fail on such files, and is only reported in the message of the command otherwise.
+   */
+  @Test
+  public void testFileFailures() {
+    mockFileHandler.setFailureFlag(true);
+    MockFileHandlerProvider provider = new MockFileHandlerProvider(mockFileHandler);
+    provider.setFailureFlag(false);
+    List<String> lines = List.of("load missing.ppm image");
+    List<String> messages = new ArrayList<>();
+    ScriptPlan.compile(lines, AbstractController.createCommands(provider, null, null, false))
+        .run(new MockImgRepo(), Map.of(), messages::add);
+    assertEquals(List.of("Invalid file"), messages);
+    try {
+      ScriptPlan.compile(lines, AbstractController.createCommands(provider, null, null, true))
+          .run(new MockImgRepo(), Map.of(), message -> fail("The load should fail"));
+      fail("The run should fail");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 1: Invalid file", e.getMessage());
+    }
+  }
+
+  private void assertCompileFails(List<String> lines, String message) {
+    try {
+      ScriptPlan.compile(lines, commands);
+      fail("The script should not compile");
+    } catch (IllegalArgumentException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+  /**
+   * Test case to verify that commands whose results are overwritten or never used are skipped, and
+   * that the report lists them.
+   */
+  @Test
+  public void testWithoutDeadResults() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("load image.ppm image",
+        "red-component image red", "brighten 10 image bright", "horizontal-flip image flipped",
+        "brighten 20 bright bright", "horizontal-flip image flipped", "save out.ppm bright",
+        "red-component bright unused"), commands).withoutDeadResults();
+
+    assertEquals(List.of("Line 1: load image.ppm image",
+        "Line 2: red-component image red (skipped, its result is never used)",
+        "Line 3: brighten 10 image bright",
+        "Line 4: horizontal-flip image flipped (skipped, its result is never used)",
+        "Line 5: brighten 20 bright bright",
+        "Line 6: horizontal-flip image flipped (skipped, its result is never used)",
+        "Line 7: save out.ppm bright",
+        "Line 8: red-component bright unused (skipped, its result is never used)"),
+        plan.getReport());
+    assertEquals(4, plan.size());
+
+    MockImgRepo mockImgRepo = new MockImgRepo();
+    mockImgRepo.setFailureFlag(false);
+    plan.run(mockImgRepo, Map.of(), message -> {
+    });
+    assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LOAD, "image")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "image",
+        "bright", 10f)
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "bright",
+        "bright", 20f)
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.GET_IMAGE, "bright"),
+        mockImgRepo.getLogger());
+  }
+
+  /**
+   * Test case to verify that a command whose effects are not known keeps every image before it.
+   */
+  @Test
+  public void testDeadResultsBeforeRunAreKept() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("load image.ppm image",
+        "red-component image red", "run other-script.txt", "red-component image unused"),
+        commands).withoutDeadResults();
+
+    assertEquals(List.of("Line 1: load image.ppm image", "Line 2: red-component image red",
+        "Line 3: run other-script.txt",
+        "Line 4: red-component image unused (skipped, its result is never used)"),
+        plan.getReport());
+  }
+
+  /**
+   * Test case to verify that every image is removed right after the command that uses it last, and
+   * that images used by a later command are kept.
+   */
+  @Test
+  public void testReleasingImagesAfterLastUse() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("load image.ppm image",
+        "brighten 10 image bright", "horizontal-flip bright flipped", "save out.ppm flipped",
+        "red-component image red", "save red.ppm red"), commands).releasingImagesAfterLastUse();
+
+    assertEquals(List.of("Line 1: load image.ppm image",
+        "Line 2: brighten 10 image bright",
+        "Line 3: horizontal-flip bright flipped (then removes bright)",
+        "Line 4: save out.ppm flipped (then removes flipped)",
+        "Line 5: red-component image red (then removes image)",
+        "Line 6: save red.ppm red (then removes red)"), plan.getReport());
+
+    MockImgRepo mockImgRepo = new MockImgRepo();
+    mockImgRepo.setFailureFlag(false);
+    plan.run(mockImgRepo, Map.of(), message -> {
+    });
+    assertEquals(mockImgRepo.getLoggerMessageForOperation(MockImgRepo.LOAD, "image")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.BRIGHTEN_IMAGE, "image",
+        "bright", 10f)
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.H_FLIP, "bright", "flipped")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.REMOVE_IMAGE, "bright")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.GET_IMAGE, "flipped")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.REMOVE_IMAGE, "flipped")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.RED_COMP, "image", "red")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.REMOVE_IMAGE, "image")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.GET_IMAGE, "red")
+        + mockImgRepo.getLoggerMessageForOperation(MockImgRepo.REMOVE_IMAGE, "red"),
+        mockImgRepo.getLogger());
+  }
+
+  /**
+   * Test case to verify that no image is removed before a command whose effects are not known.
+   */
+  @Test
+  public void testNoReleaseBeforeRun() {
+    ScriptPlan plan = ScriptPlan.compile(List.of("load image.ppm image",
+        "brighten 10 image bright", "run other-script.txt", "save out.ppm bright"), commands)
+        .releasingImagesAfterLastUse();
+
+    assertEquals(List.of("Line 1: load image.ppm image", "Line 2: brighten 10 image bright",
+        "Line 3: run other-script.txt", "Line 4: save out.ppm bright (then removes bright)"),
+        plan.getReport());
+  }
+}
@@ -0,0 +1,152 @@
+package ime.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import ime.controller.commands.CommandDependencies;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link ScriptScheduler} class.
+ */
+public class ScriptSchedulerTest {
+
+  private List<String> messages;
+  private ScriptScheduler scheduler;
+
+  /**
+   * Set up the test environment by initializing a scheduler with two threads.
+   */
+  @Before
+  public void setUp() {
+    messages = Collections.synchronizedList(new ArrayList<>());
+    scheduler = new ScriptScheduler(2, messages::add);
+  }
+
+  /**
+   * Stop the threads of the scheduler.
+   */
+  @After
+  public void tearDown() {
+    scheduler.close();
+  }
+
+  /**
+   * Test case to verify that a command runs while an earlier command it does not depend on is
+   * still running, and that the messages are still passed on in the order of the script.
+   */
+  @Test
+  public void testIndependentCommandsRunConcurrently() {
+    CountDownLatch secondStarted = new CountDownLatch(1);
+    AtomicBoolean secondRanMeanwhile = new AtomicBoolean();
+    scheduler.schedule(writes("first"), () -> {
+      secondRanMeanwhile.set(await(secondStarted));
+      return "first";
+    });
+    scheduler.schedule(writes("second"), () -> {
+      secondStarted.countDown();
+      return "second";
+    });
+    scheduler.finish();
+
+    assertTrue(secondRanMeanwhile.get());
+    assertEquals(List.of("first", "second"), messages);
+  }
+
+  /**
+   * Test case to verify that a command that reads an image waits for the command writing it, and
+   * that a command overwriting an image waits for the commands reading it. While a command is held
+   * back, an independent command scheduled after the waiting ones runs on the free thread, which
+   * a waiting command that did not wait would have taken first.
+   */
+  @Test
+  public void testDependentCommandsRunInOrder() {
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch writeReleased = new CountDownLatch(1);
+    CountDownLatch readStarted = new CountDownLatch(1);
+    CountDownLatch readReleased = new CountDownLatch(1);
+    scheduler.schedule(writes("image"), () -> {
+      await(writeReleased);
+      order.add("write");
+      return null;
+    });
+    scheduler.schedule(reads("image", "copy"), () -> {
+      order.add("read");
+      readStarted.countDown();
+      await(readReleased);
+      return "read";
+    });
+    scheduler.schedule(writes("image"), () -> {
+      order.add("overwrite");
+      return "overwrite";
+    });
+
+    assertTrue(runIndependently("first other"));
+    assertEquals(List.of(), order);
+    writeReleased.countDown();
+    assertTrue(await(readStarted));
+    assertTrue(runIndependently("second other"));
+    assertEquals(List.of("write", "read"), order);
+    readReleased.countDown();
+    scheduler.finish();
+
+    assertEquals(List.of("write", "read", "overwrite"), order);
+    assertEquals(List.of("read", "overwrite"), messages);
+  }
+
+  /**
+   * Test case to verify that a barrier runs only after every command before it has finished.
+   */
+  @Test
+  public void testBarrierWaitsForEarlierCommands() {
+    CountDownLatch otherRan = new CountDownLatch(1);
+    scheduler.schedule(writes("image"), () -> {
+      await(otherRan);
+      return "write";
+    });
+    scheduler.schedule(writes("other"), () -> {
+      otherRan.countDown();
+      return "other";
+    });
+    scheduler.schedule(CommandDependencies.BARRIER, () -> {
+      messages.add("barrier running");
+      return "barrier";
+    });
+
+    assertEquals(List.of("write", "other", "barrier running", "barrier"), messages);
+  }
+
+  /* Schedules a command writing only the given image and waits for it to run. */
+  private boolean runIndependently(String image) {
+    CountDownLatch ran = new CountDownLatch(1);
+    scheduler.schedule(writes(image), () -> {
+      ran.countDown();
+      return null;
+    });
+    return await(ran);
+  }
+
+  private static CommandDependencies writes(String image) {
+    return new CommandDependencies(List.of(), List.of(image), List.of(), List.of());
+  }
+
+  private static CommandDependencies reads(String image, String destination) {
+    return new CommandDependencies(List.of(image), List.of(destination), List.of(), List.of());
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
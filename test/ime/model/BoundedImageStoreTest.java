@@ -0,0 +1,250 @@
+package ime.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test class for testing the {@link BoundedImageStore} class.
+ */
+public class BoundedImageStoreTest {
+
+  private static final long IMAGE_BYTES = 2 * 2
+      * (BoundedImageStore.PIXEL_BYTES + BoundedImageStore.REFERENCE_BYTES);
+  private static final long SPILLED_BYTES = 2 * 2 * 3 * Float.BYTES;
+
+  private Path scratchDirectory;
+
+  /**
+   * Set up the test environment by creating a directory for the scratch file.
+   *
+   * @throws IOException if the directory could not be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    scratchDirectory = Files.createTempDirectory("scratch");
+  }
+
+  /**
+   * Remove the directory of the scratch file.
+   *
+   * @throws IOException if the directory could not be removed.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(scratchDirectory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        file.toFile().delete();
+      }
+    }
+    Files.deleteIfExists(scratchDirectory);
+  }
+
+  /**
+   * Test case to verify that the least recently used images are spilled once the images take up
+   * more than the budget, and are read back with exactly the same values.
+   */
+  @Test
+  public void testLeastRecentlyUsedImagesSpilled() {
+    BoundedImageStore store = new BoundedImageStore(2 * IMAGE_BYTES, scratchDirectory);
+    store.put("first", createImage(0.5f));
+    store.put("second", createImage(1.25f));
+    assertEquals(2 * IMAGE_BYTES, store.getResidentBytes());
+
+    store.get("first");
+    store.put("third", createImage(2));
+    assertEquals(2 * IMAGE_BYTES, store.getResidentBytes());
+    assertTrue(store.containsKey("second"));
+
+    assertPixels(1.25f, store.get("second"));
+    assertPixels(0.5f, store.get("first"));
+    assertPixels(2, store.get("third"));
+    assertEquals(2 * IMAGE_BYTES, store.getResidentBytes());
+  }
+
+  /**
+   * Test case to verify that the most recently used image stays in memory even when it alone is
+   * larger than the budget, and that removed images are gone whether spilled or not.
+   */
+  @Test
+  public void testNewestImageKeptAndRemovedImagesGone() {
+    BoundedImageStore store = new BoundedImageStore(0, scratchDirectory);
+    store.put("first", createImage(1));
+    store.put("second", createImage(2));
+    assertEquals(IMAGE_BYTES, store.getResidentBytes());
+
+    store.remove("first");
+    store.remove("second");
+    assertFalse(store.containsKey("first"));
+    assertNull(store.get("second"));
+    assertEquals(0, store.getResidentBytes());
+  }
+
+  /**
+   * Test case to verify that once the store is closed, the images spilled before can not be read
+   * back and no more images are spilled.
+   *
+   * @throws IOException if the scratch file could not be closed.
+   */
+  @Test
+  public void testClosedStoreKeepsImagesInMemory() throws IOException {
+    BoundedImageStore store = new BoundedImageStore(0, scratchDirectory);
+    store.put("first", createImage(1));
+    store.put("second", createImage(2));
+    assertEquals(SPILLED_BYTES, store.getScratchSize());
+
+    store.close();
+    assertThrows(IllegalArgumentException.class, () -> store.get("first"));
+    store.put("third", createImage(3));
+    assertEquals(2 * IMAGE_BYTES, store.getResidentBytes());
+    assertEquals(SPILLED_BYTES, store.getScratchSize());
+    assertPixels(2, store.get("second"));
+  }
+
+  /**
+   * Test case to verify that an image is not spilled while the images stay within the budget, so
+   * that no scratch file is created.
+   *
+   * @throws IOException if the directory could not be listed.
+   */
+  @Test
+  public void testNoScratchFileWithinBudget() throws IOException {
+    BoundedImageStore store = new BoundedImageStore(2 * IMAGE_BYTES, scratchDirectory);
+    store.put("first", createImage(1));
+    store.put("first", createImage(2));
+    store.put("second", createImage(3));
+
+    try (Stream<Path> files = Files.list(scratchDirectory)) {
+      assertEquals(0, files.count());
+    }
+    assertPixels(2, store.get("first"));
+  }
+
+  /**
+   * Test case to verify that pixels shared by several images, and an image stored under several
+   * names, are counted once.
+   */
+  @Test
+  public void testSharedPixelsCountedOnce() {
+    BoundedImageStore store = new BoundedImageStore(100 * IMAGE_BYTES, scratchDirectory);
+    Image image = createImage(1);
+    store.put("image", image);
+    store.put("flipped", image.flipHorizontally());
+    long rowBytes = 2 * 2 * BoundedImageStore.REFERENCE_BYTES;
+    assertEquals(IMAGE_BYTES + rowBytes, store.getResidentBytes());
+
+    store.put("same", image);
+    assertEquals(IMAGE_BYTES + rowBytes, store.getResidentBytes());
+
+    store.remove("image");
+    assertEquals(IMAGE_BYTES + rowBytes, store.getResidentBytes());
+    store.remove("same");
+    assertEquals(IMAGE_BYTES, store.getResidentBytes());
+    store.remove("flipped");
+    assertEquals(0, store.getResidentBytes());
+  }
+
+  /**
+   * Test case to verify that the regions freed next to each other in the scratch file are merged,
+   * so that a larger image is spilled into them rather than at the end of the file.
+   */
+  @Test
+  public void testFreedExtentsMerged() {
+    BoundedImageStore store = new BoundedImageStore(0, scratchDirectory);
+    Image wide = createImage(3).append(createImage(4));
+    store.put("first", createImage(1));
+    store.put("second", createImage(2));
+    store.put("third", createImage(3));
+    store.put("wide", wide);
+    store.remove("first");
+    store.remove("second");
+    store.put("fourth", createImage(4));
+
+    assertEquals(3 * SPILLED_BYTES, store.getScratchSize());
+    assertPixels(3, store.get("third"));
+    Image readBack = store.get("wide");
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 4; j++) {
+        assertArrayEquals(wide.getPixelValues(i, j), readBack.getPixelValues(i, j), 0);
+      }
+    }
+  }
+
+  /**
+   * Test case to verify that an image held only by its name and the caller is modified in place
+   * and given a new version.
+   */
+  @Test
+  public void testOwnedImageModifiedInPlace() {
+    BoundedImageStore store = new BoundedImageStore(Long.MAX_VALUE, scratchDirectory);
+    Image image = createImage(1);
+    store.put("image", image);
+    store.put("other", createImage(2));
+    BoundedImageStore.StoredImage stored = store.acquire("image");
+    assertTrue(store.modify("image", stored.getVersion(), modified -> modified.brightenInPlace(1)));
+    store.release(image);
+
+    assertSame(image, store.get("image"));
+    assertNotEquals(stored.getVersion(), store.getStored("image").getVersion());
+    assertPixels(createImage(1).brighten(1), image);
+    assertPixels(2, store.get("other"));
+    assertEquals(2 * IMAGE_BYTES, store.getResidentBytes());
+  }
+
+  /**
+   * Test case to verify that an image is not modified in place while another name or caller holds
+   * it, while another image shares its pixels, or once a new image is stored under its name.
+   */
+  @Test
+  public void testSharedImageNotModified() {
+    BoundedImageStore store = new BoundedImageStore(Long.MAX_VALUE, scratchDirectory);
+    Image image = createImage(1);
+    store.put("image", image);
+    long version = store.acquire("image").getVersion();
+
+    store.put("same", image);
+    assertFalse(store.modify("image", version, modified -> modified.brightenInPlace(1)));
+    store.remove("same");
+    store.put("flipped", image.flipHorizontally());
+    assertFalse(store.modify("image", version, modified -> modified.brightenInPlace(1)));
+    store.remove("flipped");
+    store.acquire("image");
+    assertFalse(store.modify("image", version, modified -> modified.brightenInPlace(1)));
+    store.release(image);
+    assertFalse(store.modify("image", version + 1, modified -> modified.brightenInPlace(1)));
+    assertPixels(1, image);
+
+    assertTrue(store.modify("image", version, modified -> modified.brightenInPlace(1)));
+    assertPixels(createImage(1).brighten(1), image);
+  }
+
+  private static Image createImage(float value) {
+    return new ImagePixelImpl(new float[][][]{{{value, value + 1, value + 2}, {value, 0, 255}},
+        {{255, value, 0}, {value, value, value}}}, ImageType.RGB);
+  }
+
+  private static void assertPixels(float value, Image image) {
+    assertPixels(createImage(value), image);
+  }
+
+  private static void assertPixels(Image expected, Image image) {
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 2; j++) {
+        assertArrayEquals(expected.getPixelValues(i, j), image.getPixelValues(i, j), 0);
+      }
+    }
+  }
+}
@@ -618,6 +618,149 @@ public class ImagePixelImplTest {
     assertThrows(IllegalArgumentException.class, () -> image.compress(110));
   }
 
+  /**
+   * test that compressing the same image at different percentages gives the same result as
+   * compressing a fresh copy of the image.
+   */
+  @Test
+  public void testCompressionRepeatedPercentages() {
+    Image first = image.compress(70);
+    image.compress(30);
+    Image again = image.compress(70);
+    Image fresh = new ImagePixelImpl(testPixels, imageType).compress(70);
+    for (int i = 0; i < fresh.getHeight(); i++) {
+      for (int j = 0; j < fresh.getWidth(); j++) {
+        assertArrayEquals(fresh.getPixelValues(i, j), first.getPixelValues(i, j), 0);
+        assertArrayEquals(fresh.getPixelValues(i, j), again.getPixelValues(i, j), 0);
+      }
+    }
+  }
+
+  /**
+   * test that the percentage found for a target PSNR is the largest one meeting the target.
+   */
+  @Test
+  public void testCompressionPercentForPsnr() {
+    float[][][] gradient = new float[8][8][3];
+    for (int i = 0; i < 8; i++) {
+      for (int j = 0; j < 8; j++) {
+        gradient[i][j] = new float[]{i * 30, j * 30, (i + j) * 15};
+      }
+    }
+    Image gradientImage = new ImagePixelImpl(gradient, imageType);
+    int percent = gradientImage.getCompressionPercentForPsnr(30);
+    Assert.assertTrue(percent >= 0 && percent < 100);
+    Assert.assertTrue(getPsnr(gradientImage, gradientImage.compress(percent)) >= 30);
+    Assert.assertTrue(getPsnr(gradientImage, gradientImage.compress(percent + 1)) < 30);
+
+    assertEquals(100, image.getCompressionPercentForPsnr(1));
+  }
+
+  /**
+   * test that the PSNR target should be positive.
+   */
+  @Test
+  public void testCompressionPercentForPsnrInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> image.getCompressionPercentForPsnr(0));
+    assertThrows(IllegalArgumentException.class, () -> image.getCompressionPercentForPsnr(-5));
+  }
+
+  /**
+   * test block compression, which should match the whole image compression when the image is a
+   * single block.
+   */
+  @Test
+  public void testCompressInBlocks() {
+    float[][][] squarePixels = new float[4][4][3];
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 4; j++) {
+        squarePixels[i][j] = new float[]{i * 40, j * 40, (i + j) * 20};
+      }
+    }
+    Image squareImage = new ImagePixelImpl(squarePixels, imageType);
+    Image blockCompressed = squareImage.compressInBlocks(50, 4, Wavelet.HAAR);
+    Image compressed = squareImage.compress(50);
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 4; j++) {
+        assertArrayEquals(compressed.getPixelValues(i, j), blockCompressed.getPixelValues(i, j), 0);
+      }
+    }
+
+    assertExpectedImage(testPixels, image.compressInBlocks(0, 2, Wavelet.HAAR));
+    assertExpectedImage(new float[3][3][3], image.compressInBlocks(100, 2, Wavelet.HAAR));
+  }
+
+  /**
+   * test block compression with invalid block sizes and percentages.
+   */
+  @Test
+  public void testCompressInBlocksInvalid() {
+    assertThrows(IllegalArgumentException.class,
+        () -> image.compressInBlocks(50, 0, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class,
+        () -> image.compressInBlocks(50, 1, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class,
+        () -> image.compressInBlocks(50, 48, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class,
+        () -> image.compressInBlocks(-1, 64, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class,
+        () -> image.compressInBlocks(101, 64, Wavelet.HAAR));
+  }
+
+  /**
+   * test that the reversible CDF 5/3 wavelet reproduces the image exactly at 0 percent, and that
+   * the CDF 9/7 wavelet reproduces it up to rounding.
+   */
+  @Test
+  public void testCompressionWithWavelets() {
+    float[][][] gradient = new float[5][7][3];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 7; j++) {
+        gradient[i][j] = new float[]{i * 50, j * 35, (i * j) % 256};
+      }
+    }
+    Image gradientImage = new ImagePixelImpl(gradient, imageType);
+    assertExpectedImage(gradient, gradientImage.compress(0, Wavelet.CDF53), 0);
+    assertExpectedImage(gradient, gradientImage.compressInBlocks(0, 4, Wavelet.CDF53), 0);
+    assertExpectedImage(gradient, gradientImage.compress(0, Wavelet.CDF97));
+    assertExpectedImage(new float[5][7][3], gradientImage.compress(100, Wavelet.CDF97));
+    Image haar = gradientImage.compress(30);
+    Image haarByName = gradientImage.compress(30, Wavelet.HAAR);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 7; j++) {
+        assertArrayEquals(haar.getPixelValues(i, j), haarByName.getPixelValues(i, j), 0);
+      }
+    }
+    Assert.assertTrue(getPsnr(gradientImage, gradientImage.compress(50, Wavelet.CDF53)) > 20);
+  }
+
+  /**
+   * test that wavelets are looked up by their names.
+   */
+  @Test
+  public void testWaveletFromRepresentation() {
+    assertEquals(Wavelet.HAAR, Wavelet.fromRepresentation("haar"));
+    assertEquals(Wavelet.CDF53, Wavelet.fromRepresentation("cdf53"));
+    assertEquals(Wavelet.CDF97, Wavelet.fromRepresentation("cdf97"));
+    assertThrows(IllegalArgumentException.class, () -> Wavelet.fromRepresentation("db4"));
+  }
+
+  private double getPsnr(Image original, Image compressed) {
+    double squaredError = 0;
+    for (int i = 0; i < original.getHeight(); i++) {
+      for (int j = 0; j < original.getWidth(); j++) {
+        for (int k = 0; k < original.getChannelCount(); k++) {
+          double difference =
+                  original.getPixelValues(i, j)[k] - compressed.getPixelValues(i, j)[k];
+          squaredError += difference * difference;
+        }
+      }
+    }
+    double meanSquaredError = squaredError
+            / (original.getHeight() * original.getWidth() * original.getChannelCount());
+    return 10 * Math.log10(255 * 255 / meanSquaredError);
+  }
+
   private void assertExpectedImage(float[][][] expectedPixelValues, Image image, float delta) {
     assertEquals(expectedPixelValues.length, image.getHeight());
     assertEquals(expectedPixelValues[0].length, image.getWidth());
@@ -744,6 +887,25 @@ public class ImagePixelImplTest {
   }
 
 
+  /**
+   * test that images sharing the pixels they leave unchanged with the image they were computed
+   * from hold the right values, and leave that image unchanged.
+   */
+  @Test
+  public void testResultsSharingPixelsLeaveSourceUnchanged() {
+    Image flipped = image.flipHorizontally().flipVertically();
+    List<Image> parts = flipped.splitVertically(50);
+    Image appended = parts.get(0).append(parts.get(1).brighten(5));
+    Image unflipped = flipped.flipVertically().flipHorizontally();
+
+    assertImagesEqual(new ImagePixelImpl(testPixels, imageType), image);
+    assertImagesEqual(image, unflipped);
+    assertArrayEquals(testPixels[2][2], appended.getPixelValues(0, 0), 0);
+    assertArrayEquals(new float[]{25, 5, 25}, appended.getPixelValues(0, 2), 0);
+    assertArrayEquals(testPixels[0][1], appended.getPixelValues(2, 1), 0);
+    assertEquals(List.of(flipped), flipped.splitVertically(100).subList(0, 1));
+  }
+
   private void assertImagesEqual(Image expected, Image actual) {
     assertEquals(expected.getHeight(), actual.getHeight());
     assertEquals(expected.getWidth(), actual.getWidth());
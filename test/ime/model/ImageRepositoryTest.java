@@ -1,13 +1,19 @@
 package ime.model;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import ime.controller.ImageDrawer;
 import ime.controller.ImageDrawerImpl;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 /**
@@ -41,6 +47,174 @@ public class ImageRepositoryTest {
   }
 
 
+  /**
+   * test that an image loaded from a row source holds the values of its rows.
+   *
+   * @throws IOException if the source fails, which it does not.
+   */
+  @Test
+  public void testLoadFromRowSource() throws IOException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(new ImageRowSource() {
+      private int nextRow;
+
+      @Override
+      public int getWidth() {
+        return 2;
+      }
+
+      @Override
+      public int getHeight() {
+        return 2;
+      }
+
+      @Override
+      public void readRow(float[] rowValues) {
+        float[][] row = testPixels[nextRow++];
+        for (int j = 0; j < 2; j++) {
+          System.arraycopy(row[j], 0, rowValues, 3 * j, 3);
+        }
+      }
+
+      @Override
+      public void close() {
+        // nothing to release
+      }
+    }, "ImageName");
+    assertTrue(Arrays.deepEquals(testPixels, imageRepository.getImage("ImageName")));
+  }
+
+  /**
+   * test that the rows of a stored image are read back in order, and that an image has to be
+   * present to be read.
+   *
+   * @throws IOException if a row could not be read, which it can not.
+   */
+  @Test
+  public void testRemoveImage() throws IOException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    ImageRowSource source = imageRepository.getImageRows("ImageName");
+    imageRepository.removeImage("ImageName");
+    imageRepository.removeImage("MissingName");
+    assertFalse(imageRepository.isImagePresent("ImageName"));
+    float[] rowValues = new float[6];
+    source.readRow(rowValues);
+    assertArrayEquals(new float[]{1, 1, 1, 1, 1, 1}, rowValues, 0);
+  }
+
+  /**
+   * test that images spilled beyond the memory budget are read back for operations.
+   */
+  @Test
+  public void testOperationOnSpilledImage() {
+    ImageRepository imageRepository = new ImageRepositoryImpl(0,
+        Paths.get(System.getProperty("java.io.tmpdir")));
+    imageRepository.loadImage(testPixels, "ImageName");
+    imageRepository.loadImage(new float[][][]{{{9, 9, 9}}}, "OtherName");
+    imageRepository.brightenImage("ImageName", "Brightened", 10);
+    assertArrayEquals(testPixels, imageRepository.getImage("ImageName"));
+    assertArrayEquals(new float[][][]{{{11, 11, 11}, {11, 11, 11}}, {{12, 12, 12}, {12, 13, 14}}},
+        imageRepository.getImage("Brightened"));
+    assertArrayEquals(new float[][][]{{{9, 9, 9}}}, imageRepository.getImage("OtherName"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ImageRepositoryImpl(-1, Paths.get(".")));
+  }
+
+  @Test
+  public void testGetImageRows() throws IOException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    ImageRowSource source = imageRepository.getImageRows("ImageName");
+    assertEquals(2, source.getWidth());
+    assertEquals(2, source.getHeight());
+    float[] rowValues = new float[6];
+    source.readRow(rowValues);
+    assertArrayEquals(new float[]{1, 1, 1, 1, 1, 1}, rowValues, 0);
+    source.readRow(rowValues);
+    assertArrayEquals(new float[]{2, 2, 2, 2, 3, 4}, rowValues, 0);
+    assertThrows(IllegalArgumentException.class, () -> imageRepository.getImageRows("invalid"));
+  }
+
+  /**
+   * test that the version of an image name stays the same until the name is tagged to another
+   * image.
+   */
+  @Test
+  public void testGetImageVersion() {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    long version = imageRepository.getImageVersion("ImageName");
+    imageRepository.flipImageHorizontally("ImageName", "flipped");
+    assertEquals(version, imageRepository.getImageVersion("ImageName"));
+    imageRepository.flipImageHorizontally("ImageName", "ImageName");
+    assertTrue(version != imageRepository.getImageVersion("ImageName"));
+    assertTrue(imageRepository.getImageVersion("flipped")
+        != imageRepository.getImageVersion("ImageName"));
+    assertThrows(IllegalArgumentException.class,
+        () -> imageRepository.getImageVersion("invalid"));
+  }
+
+  /**
+   * test that an image modified under its own name gets a new version, and that an image is copied
+   * rather than modified while its rows are being read or another image shares its pixels.
+   *
+   * @throws IOException if the rows could not be read, which they can.
+   */
+  @Test
+  public void testUpdateOfSameNameKeepsHeldImages() throws IOException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    long version = imageRepository.getImageVersion("ImageName");
+    imageRepository.brightenImage("ImageName", "ImageName", 10);
+    assertTrue(version != imageRepository.getImageVersion("ImageName"));
+    assertArrayEquals(new float[][][]{{{11, 11, 11}, {11, 11, 11}}, {{12, 12, 12}, {12, 13, 14}}},
+        imageRepository.getImage("ImageName"));
+
+    float[] rowValues = new float[6];
+    try (ImageRowSource source = imageRepository.getImageRows("ImageName")) {
+      imageRepository.toRedChannelImage("ImageName", "ImageName");
+      source.readRow(rowValues);
+      assertArrayEquals(new float[]{11, 11, 11, 11, 11, 11}, rowValues, 0);
+    }
+    imageRepository.flipImageHorizontally("ImageName", "flipped");
+    imageRepository.toIntensityGreyScale("ImageName", "ImageName");
+    assertArrayEquals(new float[][][]{{{11, 0, 0}, {11, 0, 0}}, {{12, 0, 0}, {12, 0, 0}}},
+        imageRepository.getImage("flipped"));
+    assertArrayEquals(new float[][][]{{{11 / 3f, 11 / 3f, 11 / 3f}, {11 / 3f, 11 / 3f, 11 / 3f}},
+        {{4, 4, 4}, {4, 4, 4}}}, imageRepository.getImage("ImageName"));
+  }
+
+  /**
+   * test that operations updating the same image from several threads are never lost, whether the
+   * images are kept in memory or spilled beyond a budget.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test
+  public void testConcurrentUpdatesOfSameImage() throws InterruptedException {
+    for (long budget : new long[]{Long.MAX_VALUE, 0}) {
+      ImageRepository imageRepository = new ImageRepositoryImpl(budget,
+          Paths.get(System.getProperty("java.io.tmpdir")));
+      imageRepository.loadImage(new float[][][]{{{0, 0, 0}}}, "ImageName");
+      List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        String otherName = "Other" + i;
+        threads.add(new Thread(() -> {
+          for (int j = 0; j < 25; j++) {
+            imageRepository.brightenImage("ImageName", "ImageName", 1);
+            imageRepository.flipImageVertically("ImageName", otherName);
+          }
+        }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertArrayEquals(new float[][][]{{{100, 100, 100}}}, imageRepository.getImage("ImageName"));
+    }
+  }
+
   /**
    * test save wghen valid arguments are passed.
    */
@@ -348,6 +522,59 @@ public class ImageRepositoryTest {
         imageRepository.isImagePresent("flippedImage"));
   }
 
+  @Test
+  public void testCompressInBlocks() throws IllegalArgumentException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    imageRepository.compressInBlocks("ImageName", "compressedImage", 100, 64, Wavelet.HAAR);
+    assertTrue(Arrays.deepEquals(new float[2][2][3],
+        imageRepository.getImage("compressedImage")));
+
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.compressInBlocks("invalid", "compressedImage", 20, 64, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.compressInBlocks("ImageName", "compressedImage", 20, 63, Wavelet.HAAR));
+  }
+
+  @Test
+  public void testPreviewCompress() throws IllegalArgumentException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    imageRepository.previewCompress("ImageName", "previewedImage", 100, 50, Wavelet.HAAR);
+    float[][][] expected = new float[][][]{{{0, 0, 0}, {1, 1, 1,}}, {{0, 0, 0}, {2, 3, 4}}};
+    assertTrue(Arrays.deepEquals(expected, imageRepository.getImage("previewedImage")));
+
+    imageRepository.previewCompress("ImageName", "previewedImage", 100, 0, Wavelet.HAAR);
+    assertTrue(Arrays.deepEquals(testPixels, imageRepository.getImage("previewedImage")));
+    imageRepository.previewCompress("ImageName", "previewedImage", 100, 100, Wavelet.HAAR);
+    assertTrue(Arrays.deepEquals(new float[2][2][3],
+        imageRepository.getImage("previewedImage")));
+
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.previewCompress("ImageName", "previewedImage", 50, 101, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.previewCompress("ImageName", "previewedImage", 101, 50, Wavelet.HAAR));
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.previewCompress("invalid", "previewedImage", 50, 50, Wavelet.HAAR));
+  }
+
+  @Test
+  public void testCompressToPsnr() throws IllegalArgumentException {
+    ImageRepository imageRepository = new ImageRepositoryImpl();
+    imageRepository.loadImage(testPixels, "ImageName");
+    int compressPercent = imageRepository.compressToPsnr("ImageName", "compressedImage", 1);
+    assertEquals(100, compressPercent);
+    assertTrue(Arrays.deepEquals(new float[2][2][3],
+        imageRepository.getImage("compressedImage")));
+    imageRepository.compressToPsnr("ImageName", "losslessImage", 1000, Wavelet.CDF53);
+    assertTrue(Arrays.deepEquals(testPixels, imageRepository.getImage("losslessImage")));
+
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.compressToPsnr("invalid", "compressedImage", 30));
+    assertThrows(IllegalArgumentException.class, () ->
+        imageRepository.compressToPsnr("ImageName", "compressedImage", -30));
+  }
+
   @Test
   public void testPreview() throws IllegalArgumentException {
     ImageRepository imageRepository = new ImageRepositoryImpl();